@@ -1,6 +1,8 @@
 package healthcareab.project.healthcare_booking_app.config;
 
 import healthcareab.project.healthcare_booking_app.filters.JwtAuthenticationFilter;
+import healthcareab.project.healthcare_booking_app.filters.RateLimitFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -9,8 +11,6 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -24,9 +24,11 @@ import java.util.Arrays;
 @EnableMethodSecurity
 public class SecurityConfig {
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
 
-    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter, RateLimitFilter rateLimitFilter) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
     }
     // add jwt filter before standard filter
     // create AuthenticationManager which is the "boss" of the authentication process
@@ -47,6 +49,8 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 // define URL based rules
                 .authorizeHttpRequests(auth -> auth
+                        // the async dispatch only writes a deferred result, the original request was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/availability/**").hasAnyRole("ADMIN","PROVIDER","PATIENT")
                         .requestMatchers("/auth/**").permitAll()
                         // any other requests the user need to be logged
@@ -57,7 +61,9 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 // add jwt filter before standard filter
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // rate limit per ip, and per user once the jwt filter has authenticated the request
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
         return  http.build();
     }
 
@@ -66,7 +72,8 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:5173"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Cookie"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Cookie", "Idempotency-Key", "If-None-Match"));
+        configuration.setExposedHeaders(Arrays.asList("Idempotent-Replayed", "ETag"));
 
         configuration.setAllowCredentials(true);
 
@@ -75,9 +82,4 @@ public class SecurityConfig {
 
         return source;
     }
-
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
-    }
 }
@@ -3,29 +3,90 @@ package healthcareab.project.healthcare_booking_app.controllers;
 import healthcareab.project.healthcare_booking_app.dto.AppointmentRequest;
 
 import healthcareab.project.healthcare_booking_app.dto.AppointmentResponse;
+import healthcareab.project.healthcare_booking_app.dto.PageResponse;
 
 import healthcareab.project.healthcare_booking_app.services.AppointmentService;
+import healthcareab.project.healthcare_booking_app.services.IdempotencyService;
+import healthcareab.project.healthcare_booking_app.utils.NdjsonWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/appointment")
 public class AppointmentController {
     private final AppointmentService appointmentService;
+    private final NdjsonWriter ndjsonWriter;
+    private final IdempotencyService idempotencyService;
     
-    public AppointmentController(AppointmentService appointmentService) {
+    public AppointmentController(AppointmentService appointmentService, NdjsonWriter ndjsonWriter,
+                                 IdempotencyService idempotencyService) {
         this.appointmentService = appointmentService;
+        this.ndjsonWriter = ndjsonWriter;
+        this.idempotencyService = idempotencyService;
     }
     
+    // completes asynchronously when the booking waits for its group commit on a booking lane,
+    // a retry with the same Idempotency-Key gets the first response back instead of booking again
     @PostMapping("/create")
-    public ResponseEntity<AppointmentResponse> createAppointment(@Valid @RequestBody AppointmentRequest request) {
-        AppointmentResponse response = appointmentService.createAppointment(request);
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    public CompletableFuture<ResponseEntity<?>> createAppointment(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody AppointmentRequest request) {
+        return idempotencyService.execute(idempotencyKey, "appointment.create", request,
+                () -> appointmentService.createAppointmentAsync(request)
+                        .thenApply(response -> new ResponseEntity<>(response, HttpStatus.CREATED)));
+    }
+    
+    @PutMapping("/{id}/cancel")
+    public ResponseEntity<AppointmentResponse> cancelAppointment(@PathVariable String id) {
+        return ResponseEntity.ok(appointmentService.cancelAppointment(id));
+    }
+    
+    // the current patient's appointments, one page at a time; from and to are optional and inclusive
+    @GetMapping("/mine")
+    public ResponseEntity<PageResponse<AppointmentResponse>> getMyAppointments(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(appointmentService.getMyAppointments(from, to, cursor, limit));
+    }
+    
+    // the current provider's agenda, or any provider's for an admin
+    @GetMapping("/agenda")
+    @PreAuthorize("hasAnyRole('PROVIDER','ADMIN')")
+    public ResponseEntity<PageResponse<AppointmentResponse>> getProviderAgenda(
+            @RequestParam(required = false) String providerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(appointmentService.getProviderAgenda(providerId, from, to, cursor, limit));
+    }
+    
+    // appointments in the range as newline delimited json, written row by row from the database cursor
+    @GetMapping("/stream")
+    public void streamAppointments(
+            @RequestParam(required = false) String providerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws IOException {
+        ndjsonWriter.write(appointmentService.streamAppointments(providerId, from, to), response);
     }
 }
\ No newline at end of file
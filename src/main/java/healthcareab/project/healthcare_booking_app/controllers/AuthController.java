@@ -5,8 +5,13 @@ import healthcareab.project.healthcare_booking_app.dto.AuthResponse;
 import healthcareab.project.healthcare_booking_app.dto.RegisterRequest;
 import healthcareab.project.healthcare_booking_app.dto.RegisterResponse;
 import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
 import healthcareab.project.healthcare_booking_app.services.AuthService;
+import healthcareab.project.healthcare_booking_app.services.RateLimitService;
+import healthcareab.project.healthcare_booking_app.services.TokenRevocationService;
 import healthcareab.project.healthcare_booking_app.utils.JwtUtil;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpHeaders;
@@ -28,11 +33,16 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
     private final AuthService authService;
+    private final RateLimitService rateLimitService;
+    private final TokenRevocationService tokenRevocationService;
 
-    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil, AuthService authService) {
+    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil, AuthService authService,
+                          RateLimitService rateLimitService, TokenRevocationService tokenRevocationService) {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.authService = authService;
+        this.rateLimitService = rateLimitService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @PostMapping("/register")
@@ -54,6 +64,8 @@ public class AuthController {
 
     @PostMapping("/login")
     public ResponseEntity<?> login (@Valid @RequestBody AuthRequest authRequest) {
+        // checked before the password is verified, so guessing against one account is cheap to refuse
+        rateLimitService.checkLoginUsername(authRequest.getUsername());
 
         try {
             Authentication authentication = authenticationManager.authenticate(
@@ -63,6 +75,7 @@ public class AuthController {
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+            User user = loadUser(userDetails);
 
             String jwt = jwtUtil.generateToken(userDetails);
             ResponseCookie jwtCookie = ResponseCookie.from("jwt", jwt)
@@ -75,12 +88,11 @@ public class AuthController {
 
             AuthResponse authResponse = new AuthResponse(
                     "Login successful",
-                    userDetails.getUsername(),
-                    authService.findByUsername(userDetails.getUsername()).getRoles(),
-                    authService.findByUsername(userDetails.getUsername()).getEmail(),
-                    authService.findByUsername(userDetails.getUsername()).getFirstName(),
-                    authService.findByUsername(userDetails.getUsername()).getLastName()
-
+                    user.getUsername(),
+                    user.getRoles(),
+                    user.getEmail(),
+                    user.getFirstName(),
+                    user.getLastName()
             );
 
             return ResponseEntity.ok()
@@ -95,7 +107,17 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(HttpServletResponse response) {
+    public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse response) {
+        // revoke the token itself, clearing the cookie alone leaves a copied token valid until it expires
+        String jwt = JwtUtil.resolveToken(request);
+        if (jwt != null) {
+            try {
+                tokenRevocationService.revoke(jwtUtil.verifyToken(jwt));
+            } catch (JwtException | IllegalArgumentException e) {
+                // an invalid or expired token cannot be used anyway
+            }
+        }
+
         ResponseCookie jwtCookie = ResponseCookie.from("jwt", "")
                 .httpOnly(true)
                 .secure(false) // VIKTIGT! ändra i production
@@ -120,7 +142,7 @@ public class AuthController {
         }
 
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        User user = authService.findByUsername(userDetails.getUsername());
+        User user = loadUser(userDetails);
 
         return ResponseEntity.ok(new AuthResponse(
                 "Authenticated",
@@ -131,4 +153,12 @@ public class AuthController {
                 user.getLastName()
         ));
     }
+
+    // use the user document loaded during authentication, and only fetch it when the principal does not carry it
+    private User loadUser(UserDetails userDetails) {
+        if (userDetails instanceof AuthenticatedUser authenticatedUser && authenticatedUser.getUser() != null) {
+            return authenticatedUser.getUser();
+        }
+        return authService.findByUsername(userDetails.getUsername());
+    }
 }
@@ -2,50 +2,125 @@ package healthcareab.project.healthcare_booking_app.controllers;
 
 import healthcareab.project.healthcare_booking_app.dto.AvailabilityRequest;
 import healthcareab.project.healthcare_booking_app.dto.AvailabilityResponse;
+import healthcareab.project.healthcare_booking_app.dto.AvailabilityTemplateRequest;
+import healthcareab.project.healthcare_booking_app.dto.AvailabilityTemplateResponse;
+import healthcareab.project.healthcare_booking_app.dto.FreeSlotResponse;
+import healthcareab.project.healthcare_booking_app.dto.PageResponse;
 import healthcareab.project.healthcare_booking_app.models.Availability;
 import healthcareab.project.healthcare_booking_app.services.AvailabilityService;
+import healthcareab.project.healthcare_booking_app.services.IdempotencyService;
+import healthcareab.project.healthcare_booking_app.utils.NdjsonWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/availability")
 public class AvailabilityController {
 
     private final AvailabilityService availabilityService;
+    private final NdjsonWriter ndjsonWriter;
+    private final IdempotencyService idempotencyService;
 
-    public AvailabilityController(AvailabilityService availabilityService) {
+    public AvailabilityController(AvailabilityService availabilityService, NdjsonWriter ndjsonWriter,
+                                  IdempotencyService idempotencyService) {
         this.availabilityService = availabilityService;
+        this.ndjsonWriter = ndjsonWriter;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/create")
     @PreAuthorize("hasAnyRole('PROVIDER','ADMIN')")
-    public ResponseEntity<AvailabilityResponse> createAvailability(
+    public ResponseEntity<?> createAvailability(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody AvailabilityRequest request) {
 
-        Availability availability = availabilityService.createAvailability(
-                request.getDate(),
-                request.getStartTime(),
-                request.getEndTime()
-        );
+        return idempotencyService.executeNow(idempotencyKey, "availability.create", request, () -> {
+            Availability availability = availabilityService.createAvailability(
+                    request.getDate(),
+                    request.getStartTime(),
+                    request.getEndTime()
+            );
 
-        AvailabilityResponse response = AvailabilityResponse.fromEntity(availability);
+            AvailabilityResponse response = AvailabilityResponse.fromEntity(availability);
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        });
+    }
+
+    // weekly schedule, e.g. Monday to Friday 08:00-12:00, expanded into /all and /free for the days asked for
+    @PostMapping("/templates")
+    @PreAuthorize("hasAnyRole('PROVIDER','ADMIN')")
+    public ResponseEntity<AvailabilityTemplateResponse> createTemplate(
+            @Valid @RequestBody AvailabilityTemplateRequest request) {
+
+        AvailabilityTemplateResponse response = AvailabilityTemplateResponse.fromEntity(
+                availabilityService.createTemplate(
+                        request.getDaysOfWeek(),
+                        request.getStartTime(),
+                        request.getEndTime(),
+                        request.getValidFrom(),
+                        request.getValidUntil()
+                ));
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @GetMapping("/templates")
+    @PreAuthorize("hasAnyRole('PROVIDER','ADMIN')")
+    public ResponseEntity<List<AvailabilityTemplateResponse>> getTemplates() {
+        List<AvailabilityTemplateResponse> responses = availabilityService.getTemplatesForCurrentProvider().stream()
+                .map(AvailabilityTemplateResponse::fromEntity)
+                .collect(Collectors.toList());
+
+        return ResponseEntity.ok(responses);
+    }
+
+    @DeleteMapping("/templates/{id}")
+    @PreAuthorize("hasAnyRole('PROVIDER','ADMIN')")
+    public ResponseEntity<String> deleteTemplate(@PathVariable String id) {
+        availabilityService.deleteTemplate(id);
+        return ResponseEntity.status(HttpStatus.NO_CONTENT)
+                .body("Availability template deleted successfully");
+    }
+
+    // returns the whole range, or one page of it when a cursor or limit is given.
+    // A poll with the ETag of the last answer gets 304 while none of the days changed, without reading them
     @GetMapping("/all")
-    public ResponseEntity<List<AvailabilityResponse>> getAvailability(
+    public ResponseEntity<?> getAvailability(
             @RequestParam(required = false) String providerId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+
+        String etag = providerId == null || providerId.isBlank()
+                ? availabilityService.getAvailabilityEtagForCurrentProvider(from, to, cursor, limit)
+                : availabilityService.getAvailabilityEtag(providerId, from, to, cursor, limit);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        if (cursor != null || limit != null) {
+            PageResponse<Availability> page = providerId == null || providerId.isBlank()
+                    ? availabilityService.getAvailabilityPageForCurrentProvider(from, to, cursor, limit)
+                    : availabilityService.getAvailabilityPageForProvider(providerId, from, to, cursor, limit);
+            return ResponseEntity.ok(page.map(AvailabilityResponse::fromEntity));
+        }
 
         List<Availability> availabilities;
 
@@ -64,6 +139,40 @@ public class AvailabilityController {
         return ResponseEntity.ok(responses);
     }
 
+    // free time ranges of a provider on one day, read from the in-memory slot bitmap
+    @GetMapping("/free")
+    public ResponseEntity<List<FreeSlotResponse>> getFreeSlots(
+            @RequestParam String providerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            WebRequest webRequest) {
+        String etag = availabilityService.getFreeSlotsEtag(providerId, date);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok(availabilityService.getFreeSlots(providerId, date));
+    }
+
+    // pushes availability changes and bookings of the providers as they happen, e.g. ?providerIds=a,b
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailabilityEvents(@RequestParam List<String> providerIds) {
+        return availabilityService.subscribeToChanges(providerIds);
+    }
+
+    // same range as /all as newline delimited json, written row by row from the database cursor
+    @GetMapping("/stream")
+    public void streamAvailability(
+            @RequestParam(required = false) String providerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws IOException {
+
+        Stream<Availability> availabilities = providerId == null || providerId.isBlank()
+                ? availabilityService.streamAvailabilitiesForCurrentProvider(from, to)
+                : availabilityService.streamAvailabilitiesForProvider(providerId, from, to);
+
+        ndjsonWriter.write(availabilities.map(AvailabilityResponse::fromEntity), response);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('PROVIDER','ADMIN')")
     public ResponseEntity<AvailabilityResponse> updateAvailability(
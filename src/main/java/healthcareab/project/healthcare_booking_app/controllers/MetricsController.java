@@ -0,0 +1,52 @@
+package healthcareab.project.healthcare_booking_app.controllers;
+
+import healthcareab.project.healthcare_booking_app.services.AvailabilityCacheService;
+import healthcareab.project.healthcare_booking_app.services.AvailabilityService;
+import healthcareab.project.healthcare_booking_app.services.PasswordHashingService;
+import healthcareab.project.healthcare_booking_app.services.RateLimitService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/metrics")
+@PreAuthorize("hasRole('ADMIN')")
+public class MetricsController {
+    private final PasswordHashingService passwordHashingService;
+    private final RateLimitService rateLimitService;
+    private final AvailabilityCacheService availabilityCacheService;
+    private final AvailabilityService availabilityService;
+
+    public MetricsController(PasswordHashingService passwordHashingService, RateLimitService rateLimitService,
+                             AvailabilityCacheService availabilityCacheService,
+                             AvailabilityService availabilityService) {
+        this.passwordHashingService = passwordHashingService;
+        this.rateLimitService = rateLimitService;
+        this.availabilityCacheService = availabilityCacheService;
+        this.availabilityService = availabilityService;
+    }
+
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingMetrics() {
+        return ResponseEntity.ok(passwordHashingService.getMetrics());
+    }
+
+    @GetMapping("/rate-limits")
+    public ResponseEntity<Map<String, Object>> getRateLimitMetrics() {
+        return ResponseEntity.ok(rateLimitService.getMetrics());
+    }
+
+    @GetMapping("/availability-cache")
+    public ResponseEntity<Map<String, Object>> getAvailabilityCacheMetrics() {
+        return ResponseEntity.ok(availabilityCacheService.getMetrics());
+    }
+
+    @GetMapping("/availability-reads")
+    public ResponseEntity<Map<String, Object>> getAvailabilityReadMetrics() {
+        return ResponseEntity.ok(availabilityService.getMetrics());
+    }
+}
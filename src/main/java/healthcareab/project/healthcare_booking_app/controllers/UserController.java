@@ -0,0 +1,83 @@
+package healthcareab.project.healthcare_booking_app.controllers;
+
+import healthcareab.project.healthcare_booking_app.dto.BulkRegisterResponse;
+import healthcareab.project.healthcare_booking_app.dto.RegisterRequest;
+import healthcareab.project.healthcare_booking_app.dto.UserResponse;
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.services.AuthService;
+import healthcareab.project.healthcare_booking_app.services.ProviderDirectoryService;
+import healthcareab.project.healthcare_booking_app.services.UserService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/users")
+public class UserController {
+    private static final int MAX_BULK_REGISTRATIONS = 1000;
+
+    private final AuthService authService;
+    private final UserService userService;
+    private final ProviderDirectoryService providerDirectoryService;
+
+    public UserController(AuthService authService, UserService userService, ProviderDirectoryService providerDirectoryService) {
+        this.authService = authService;
+        this.userService = userService;
+        this.providerDirectoryService = providerDirectoryService;
+    }
+
+    // public profiles of many users at once, e.g. GET /users?ids=a,b,c
+    @GetMapping
+    public ResponseEntity<List<UserResponse>> getUsers(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(userService.getUsersByIds(ids));
+    }
+
+    // same lookup for id lists too long for a url
+    @PostMapping("/lookup")
+    public ResponseEntity<List<UserResponse>> lookupUsers(@RequestBody List<String> ids) {
+        return ResponseEntity.ok(userService.getUsersByIds(ids));
+    }
+
+    // autocomplete by name or profession, e.g. GET /users/providers/search?q=anna card
+    @GetMapping("/providers/search")
+    public ResponseEntity<List<UserResponse>> searchProviders(@RequestParam String q,
+                                                              @RequestParam(defaultValue = "" + ProviderDirectoryService.DEFAULT_LIMIT) int limit,
+                                                              WebRequest webRequest) {
+        String etag = providerDirectoryService.etag(q, limit);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok(providerDirectoryService.search(q, limit));
+    }
+
+    // e.g. PUT /users/{id}/roles with ["PROVIDER"], the user's current tokens stop working
+    @PutMapping("/{id}/roles")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserResponse> updateRoles(@PathVariable String id, @RequestBody Set<Role> roles) {
+        return ResponseEntity.ok(UserResponse.fromEntity(userService.updateRoles(id, roles)));
+    }
+
+    @PostMapping("/providers/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkRegisterResponse> registerProviders(@RequestBody List<RegisterRequest> registerRequests) {
+        if (registerRequests.isEmpty() || registerRequests.size() > MAX_BULK_REGISTRATIONS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_BULK_REGISTRATIONS + " users can be registered per request");
+        }
+
+        BulkRegisterResponse response = authService.registerProviders(registerRequests);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+}
@@ -13,8 +13,16 @@ public class AppointmentResponse {
     private final LocalTime startTime;
     private final LocalTime endTime;
     private final AppointmentStatus status;
+    // display names, only filled in on appointment listings
+    private final String patientName;
+    private final String providerName;
     
     public AppointmentResponse(String id, String patientId, String providerId, LocalDate date, LocalTime startTime, LocalTime endTime, AppointmentStatus status) {
+        this(id, patientId, providerId, date, startTime, endTime, status, null, null);
+    }
+    
+    public AppointmentResponse(String id, String patientId, String providerId, LocalDate date, LocalTime startTime, LocalTime endTime, AppointmentStatus status,
+                               String patientName, String providerName) {
         this.id = id;
         this.patientId = patientId;
         this.providerId = providerId;
@@ -22,6 +30,8 @@ public class AppointmentResponse {
         this.startTime = startTime;
         this.endTime = endTime;
         this.status = status;
+        this.patientName = patientName;
+        this.providerName = providerName;
     }
     
     public String getId() {
@@ -52,5 +62,13 @@ public class AppointmentResponse {
         return status;
     }
     
+    public String getPatientName() {
+        return patientName;
+    }
+    
+    public String getProviderName() {
+        return providerName;
+    }
+    
     
 }
\ No newline at end of file
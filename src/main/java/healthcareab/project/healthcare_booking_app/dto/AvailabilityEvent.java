@@ -0,0 +1,50 @@
+package healthcareab.project.healthcare_booking_app.dto;
+
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AvailabilityEventType;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// pushed to subscribers of a provider, the times are only set for bookings and cancellations
+public class AvailabilityEvent {
+    private final long id;
+    private final AvailabilityEventType type;
+    private final String providerId;
+    private final LocalDate date;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+
+    public AvailabilityEvent(long id, AvailabilityEventType type, String providerId, LocalDate date,
+                             LocalTime startTime, LocalTime endTime) {
+        this.id = id;
+        this.type = type;
+        this.providerId = providerId;
+        this.date = date;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public AvailabilityEventType getType() {
+        return type;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+}
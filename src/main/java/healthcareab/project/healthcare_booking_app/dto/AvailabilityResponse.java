@@ -1,5 +1,6 @@
 package healthcareab.project.healthcare_booking_app.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import healthcareab.project.healthcare_booking_app.models.Availability;
 
 import java.time.LocalDate;
@@ -13,18 +14,27 @@ public class AvailabilityResponse {
     private LocalTime startTime;
     private LocalTime endTime;
     private Boolean isAvailable;
+    // only set on blocks that come from a recurring template, left out of the json otherwise
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String templateId;
 
     public AvailabilityResponse() {
     }
 
     public AvailabilityResponse(String id, String providerId, LocalDate date,
                                 LocalTime startTime, LocalTime endTime, Boolean isAvailable) {
+        this(id, providerId, date, startTime, endTime, isAvailable, null);
+    }
+
+    public AvailabilityResponse(String id, String providerId, LocalDate date,
+                                LocalTime startTime, LocalTime endTime, Boolean isAvailable, String templateId) {
         this.id = id;
         this.providerId = providerId;
         this.date = date;
         this.startTime = startTime;
         this.endTime = endTime;
         this.isAvailable = isAvailable;
+        this.templateId = templateId;
     }
 
     public static AvailabilityResponse fromEntity(Availability availability) {
@@ -34,7 +44,8 @@ public class AvailabilityResponse {
                 availability.getDate(),
                 availability.getStartTime(),
                 availability.getEndTime(),
-                availability.getIsAvailable()
+                availability.getIsAvailable(),
+                availability.getTemplateId()
         );
     }
 
@@ -62,6 +73,10 @@ public class AvailabilityResponse {
         return isAvailable;
     }
 
+    public String getTemplateId() {
+        return templateId;
+    }
+
     public void setId(String id) {
         this.id = id;
     }
@@ -85,4 +100,8 @@ public class AvailabilityResponse {
     public void setIsAvailable(Boolean isAvailable) {
         this.isAvailable = isAvailable;
     }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
 }
\ No newline at end of file
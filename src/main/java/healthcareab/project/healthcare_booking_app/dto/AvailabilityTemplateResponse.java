@@ -0,0 +1,76 @@
+package healthcareab.project.healthcare_booking_app.dto;
+
+import healthcareab.project.healthcare_booking_app.models.AvailabilityTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class AvailabilityTemplateResponse {
+
+    private String id;
+    private String providerId;
+    private Set<DayOfWeek> daysOfWeek;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private LocalDate validFrom;
+    private LocalDate validUntil;
+
+    public AvailabilityTemplateResponse() {
+    }
+
+    public AvailabilityTemplateResponse(String id, String providerId, Set<DayOfWeek> daysOfWeek,
+                                        LocalTime startTime, LocalTime endTime,
+                                        LocalDate validFrom, LocalDate validUntil) {
+        this.id = id;
+        this.providerId = providerId;
+        this.daysOfWeek = daysOfWeek;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.validFrom = validFrom;
+        this.validUntil = validUntil;
+    }
+
+    // days are listed Monday first
+    public static AvailabilityTemplateResponse fromEntity(AvailabilityTemplate template) {
+        return new AvailabilityTemplateResponse(
+                template.getId(),
+                template.getProviderId(),
+                new TreeSet<>(template.getDaysOfWeek()),
+                template.getStartTime(),
+                template.getEndTime(),
+                template.getValidFrom(),
+                template.getValidUntil()
+        );
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public Set<DayOfWeek> getDaysOfWeek() {
+        return daysOfWeek;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+
+    public LocalDate getValidFrom() {
+        return validFrom;
+    }
+
+    public LocalDate getValidUntil() {
+        return validUntil;
+    }
+}
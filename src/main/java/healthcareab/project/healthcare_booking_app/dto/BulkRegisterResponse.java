@@ -0,0 +1,37 @@
+package healthcareab.project.healthcare_booking_app.dto;
+
+import java.util.List;
+
+public class BulkRegisterResponse {
+    private final String message;
+    private final int requested;
+    private final List<String> registeredUsernames;
+    private final List<String> errors;
+
+    public BulkRegisterResponse(String message, int requested, List<String> registeredUsernames, List<String> errors) {
+        this.message = message;
+        this.requested = requested;
+        this.registeredUsernames = registeredUsernames;
+        this.errors = errors;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getRegistered() {
+        return registeredUsernames.size();
+    }
+
+    public List<String> getRegisteredUsernames() {
+        return registeredUsernames;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,21 @@
+package healthcareab.project.healthcare_booking_app.dto;
+
+import java.time.LocalTime;
+
+public class FreeSlotResponse {
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+
+    public FreeSlotResponse(LocalTime startTime, LocalTime endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+}
@@ -0,0 +1,27 @@
+package healthcareab.project.healthcare_booking_app.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+// one page of a keyset paginated list, nextCursor is null on the last page
+public class PageResponse<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public PageResponse(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public <R> PageResponse<R> map(Function<? super T, ? extends R> mapper) {
+        return new PageResponse<>(items.stream().<R>map(mapper).toList(), nextCursor);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
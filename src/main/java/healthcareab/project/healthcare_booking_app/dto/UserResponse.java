@@ -0,0 +1,60 @@
+package healthcareab.project.healthcare_booking_app.dto;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+
+import java.util.Set;
+
+// the public profile of a user, never carries the password hash or the email address
+public class UserResponse {
+    private final String id;
+    private final String username;
+    private final String firstName;
+    private final String lastName;
+    private final String profession;
+    private final Set<Role> roles;
+
+    public UserResponse(String id, String username, String firstName, String lastName, String profession, Set<Role> roles) {
+        this.id = id;
+        this.username = username;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.profession = profession;
+        this.roles = roles;
+    }
+
+    public static UserResponse fromEntity(User user) {
+        return new UserResponse(
+                user.getId(),
+                user.getUsername(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getProfession(),
+                user.getRoles()
+        );
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getProfession() {
+        return profession;
+    }
+
+    public Set<Role> getRoles() {
+        return roles;
+    }
+}
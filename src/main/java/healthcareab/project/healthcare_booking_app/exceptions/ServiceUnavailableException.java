@@ -0,0 +1,7 @@
+package healthcareab.project.healthcare_booking_app.exceptions;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
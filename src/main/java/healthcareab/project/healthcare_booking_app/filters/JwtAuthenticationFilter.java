@@ -1,11 +1,14 @@
 package healthcareab.project.healthcare_booking_app.filters;
 
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
 import healthcareab.project.healthcare_booking_app.services.CustomUserDetailsService;
+import healthcareab.project.healthcare_booking_app.services.TokenRevocationService;
+import healthcareab.project.healthcare_booking_app.services.TokenVersionService;
+import healthcareab.project.healthcare_booking_app.utils.JwtClaims;
 import healthcareab.project.healthcare_booking_app.utils.JwtUtil;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
@@ -15,7 +18,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
@@ -24,47 +26,56 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final TokenVersionService tokenVersionService;
+    private final TokenRevocationService tokenRevocationService;
 
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil,
+                                   CustomUserDetailsService userDetailsService,
+                                   TokenVersionService tokenVersionService,
+                                   TokenRevocationService tokenRevocationService) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.tokenVersionService = tokenVersionService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        String jwt = null;
-
-        // try to get the jwt from Authorization header
-        String bearerToken = request.getHeader("Authorization");
-        if(StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer")) {
-            jwt = bearerToken.substring(7);
-        }
-
-        // if jwt is not in header, try to get it from cookie
-        if(jwt == null && request.getCookies() != null) {
-            for (Cookie cookie : request.getCookies()) {
-                if("jwt".equals(cookie.getName())) {
-                    jwt = cookie.getValue();
-                    break;
-                }
-            }
-        }
+        // try to get the jwt from Authorization header, or from cookie
+        String jwt = JwtUtil.resolveToken(request);
 
         // if we have a jwt and the user is not authenticated
         if(jwt != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
-                // extract username from token
-                String username = jwtUtil.extractUsername(jwt);
+                // verify signature and expiry once, the claims are reused below
+                JwtClaims claims = jwtUtil.verifyToken(jwt);
 
-                // get user details from db
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = null;
+                if(tokenRevocationService.isRevoked(claims)) {
+                    // logged out tokens authenticate nobody, the bloom filter clears almost every token without a db lookup
+                    logger.debug("Rejected revoked JWT.");
+                } else if(claims.hasIdentityClaims()) {
+                    // build the principal from the signed claims, only the (cached) token version is checked against db
+                    if(tokenVersionService.isCurrent(claims.getUserId(), claims.getTokenVersion())) {
+                        userDetails = new AuthenticatedUser(
+                                claims.getUserId(), claims.getSubject(), claims.getRoles(), claims.getTokenVersion()
+                        );
+                    }
+                } else {
+                    // tokens without identity claims still need the user details from db. They were issued before
+                    // token versions existed, so any revocation of the user's tokens since then rejects them too
+                    AuthenticatedUser legacyUser = (AuthenticatedUser) userDetailsService.loadUserByUsername(claims.getSubject());
+                    if(tokenVersionService.isCurrent(legacyUser.getId(), JwtClaims.LEGACY_TOKEN_VERSION)) {
+                        userDetails = legacyUser;
+                    }
+                }
 
-                // validate token and create valid authentication if token is valid
-                if(jwtUtil.validateToken(jwt, userDetails)) {
+                // create valid authentication if the token belongs to the user
+                if(userDetails != null && claims.getSubject().equals(userDetails.getUsername())) {
                     UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities()
                     );
@@ -75,7 +86,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     // set authentication back into security context
                     SecurityContextHolder.getContext().setAuthentication(authenticationToken);
                 }
-            } catch (JwtException e) {
+            } catch (JwtException | IllegalArgumentException e) {
                 logger.error("JWT validation failed.", e);
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
@@ -0,0 +1,58 @@
+package healthcareab.project.healthcare_booking_app.filters;
+
+import healthcareab.project.healthcare_booking_app.exceptions.TooManyRequestsException;
+import healthcareab.project.healthcare_booking_app.services.RateLimitService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// runs right after JwtAuthenticationFilter so authenticated requests can be limited per user as well as per ip
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final String LOGIN_PATH = "/auth/login";
+
+    private final RateLimitService rateLimitService;
+
+    public RateLimitFilter(RateLimitService rateLimitService) {
+        this.rateLimitService = rateLimitService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String clientIp = request.getRemoteAddr();
+        try {
+            if (LOGIN_PATH.equals(request.getServletPath()) && "POST".equals(request.getMethod())) {
+                // the per username limit is applied in AuthController once the body has been read
+                rateLimitService.checkLoginIp(clientIp);
+            } else {
+                rateLimitService.checkRequestIp(clientIp);
+
+                Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+                if (authentication != null && authentication.isAuthenticated()
+                        && !(authentication instanceof AnonymousAuthenticationToken)) {
+                    rateLimitService.checkRequestUser(authentication.getName());
+                }
+            }
+        } catch (TooManyRequestsException e) {
+            response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
@@ -4,12 +4,22 @@ package healthcareab.project.healthcare_booking_app.models;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.AppointmentStatus;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 
 @Document(collection="appointment")
+// appointments are listed per patient and per provider, in date and time order with the id breaking ties,
+// and an availability block can back at most one booked appointment, whichever path booked it
+@CompoundIndexes({
+        @CompoundIndex(name = "patient_date_start_id", def = "{ 'patientId': 1, 'date': 1, 'startTime': 1, '_id': 1 }"),
+        @CompoundIndex(name = "provider_date_start_id", def = "{ 'providerId': 1, 'date': 1, 'startTime': 1, '_id': 1 }"),
+        @CompoundIndex(name = "booked_availability", def = "{ 'availabilityId': 1 }", unique = true,
+                partialFilter = "{ 'availabilityId': { '$exists': true }, 'status': 'BOOKED' }")
+})
 public class Appointment {
     
     @Id
@@ -34,6 +44,9 @@ public class Appointment {
     @NotNull(message = "A appointment status is required")
     private AppointmentStatus status;
     
+    // the availability block this appointment was booked in
+    private String availabilityId;
+    
     
     public String getId() {
         return id;
@@ -90,4 +103,12 @@ public class Appointment {
     public void setStatus(AppointmentStatus status) {
         this.status = status;
     }
+    
+    public String getAvailabilityId() {
+        return availabilityId;
+    }
+    
+    public void setAvailabilityId(String availabilityId) {
+        this.availabilityId = availabilityId;
+    }
 }
\ No newline at end of file
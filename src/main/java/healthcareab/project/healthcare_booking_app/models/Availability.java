@@ -2,12 +2,20 @@ package healthcareab.project.healthcare_booking_app.models;
 
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 
 @Document(collection="availability")
+// every lookup filters on one provider and day, then on the time of day or whether the slot is free,
+// _id is last so that pages sorted by date, start time and id can be read straight from the index
+@CompoundIndexes({
+        @CompoundIndex(name = "provider_date_start_id", def = "{ 'providerId': 1, 'date': 1, 'startTime': 1, '_id': 1 }"),
+        @CompoundIndex(name = "provider_date_available", def = "{ 'providerId': 1, 'date': 1, 'isAvailable': 1 }")
+})
 public class Availability {
     @Id
     private String id;
@@ -26,6 +34,9 @@ public class Availability {
     
     private Boolean isAvailable = true;
     
+    // set when the block was stored from an occurrence of a recurring template, or split off such a block
+    private String templateId;
+    
     public Availability() {
     }
     
@@ -76,4 +87,12 @@ public class Availability {
     public void setIsAvailable(Boolean isAvailable) {
         this.isAvailable = isAvailable;
     }
+    
+    public String getTemplateId() {
+        return templateId;
+    }
+    
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
 }
\ No newline at end of file
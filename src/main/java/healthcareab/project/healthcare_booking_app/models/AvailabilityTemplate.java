@@ -0,0 +1,114 @@
+package healthcareab.project.healthcare_booking_app.models;
+
+import jakarta.validation.constraints.NotNull;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A weekly schedule stored as one document, e.g. Monday to Friday 08:00-12:00 for a quarter.
+ * Its occurrences are expanded when availability is read and only stored as availability documents
+ * once a day of it is booked or edited; from then on the stored documents are what counts for that day.
+ */
+@Document(collection = "availability_templates")
+public class AvailabilityTemplate {
+    @Id
+    private String id;
+
+    @Indexed
+    @NotNull(message = "A provider ID is required")
+    private String providerId;
+
+    private Set<DayOfWeek> daysOfWeek;
+
+    private LocalTime startTime;
+    private LocalTime endTime;
+
+    // first and last day the schedule applies to, both inclusive
+    private LocalDate validFrom;
+    private LocalDate validUntil;
+
+    // days whose occurrence has been stored as an availability document
+    private Set<LocalDate> materializedDates = new HashSet<>();
+
+    public AvailabilityTemplate() {
+    }
+
+    // true if the schedule has an occurrence on that day that has not been stored yet
+    public boolean isVirtualOn(LocalDate date) {
+        return !date.isBefore(validFrom)
+                && !date.isAfter(validUntil)
+                && daysOfWeek.contains(date.getDayOfWeek())
+                && (materializedDates == null || !materializedDates.contains(date));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public void setProviderId(String providerId) {
+        this.providerId = providerId;
+    }
+
+    public Set<DayOfWeek> getDaysOfWeek() {
+        return daysOfWeek;
+    }
+
+    public void setDaysOfWeek(Set<DayOfWeek> daysOfWeek) {
+        this.daysOfWeek = daysOfWeek;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public LocalDate getValidFrom() {
+        return validFrom;
+    }
+
+    public void setValidFrom(LocalDate validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    public LocalDate getValidUntil() {
+        return validUntil;
+    }
+
+    public void setValidUntil(LocalDate validUntil) {
+        this.validUntil = validUntil;
+    }
+
+    public Set<LocalDate> getMaterializedDates() {
+        return materializedDates;
+    }
+
+    public void setMaterializedDates(Set<LocalDate> materializedDates) {
+        this.materializedDates = materializedDates;
+    }
+}
@@ -0,0 +1,78 @@
+package healthcareab.project.healthcare_booking_app.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// the first response to a request sent with an Idempotency-Key, replayed to every retry with the same key
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    // digest of the operation, the user and the key the client sent
+    @Id
+    private String key;
+
+    // digest of the request body, a key can only be reused for the same request
+    private String requestDigest;
+
+    private int status;
+
+    // the response body as json
+    private String body;
+
+    // mongo deletes the document once this time has passed
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String key, String requestDigest, int status, String body, Instant expiresAt) {
+        this.key = key;
+        this.requestDigest = requestDigest;
+        this.status = status;
+        this.body = body;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getRequestDigest() {
+        return requestDigest;
+    }
+
+    public void setRequestDigest(String requestDigest) {
+        this.requestDigest = requestDigest;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,53 @@
+package healthcareab.project.healthcare_booking_app.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// a logged out jwt, stored by digest until the token would have expired anyway
+@Document(collection = "revoked_tokens")
+public class RevokedToken {
+    @Id
+    private String tokenDigest;
+
+    private String username;
+
+    // mongo deletes the document once this time has passed
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+
+    public RevokedToken() {
+    }
+
+    public RevokedToken(String tokenDigest, String username, Instant expiresAt) {
+        this.tokenDigest = tokenDigest;
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getTokenDigest() {
+        return tokenDigest;
+    }
+
+    public void setTokenDigest(String tokenDigest) {
+        this.tokenDigest = tokenDigest;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
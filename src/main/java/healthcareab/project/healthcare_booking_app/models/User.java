@@ -25,6 +25,8 @@ public class User {
             message = "Password must be at least 8 characters long and contain at least one uppercase letter, one number, and one special character")
     private String password;
 
+    // multikey, so the provider directory finds the providers without scanning every user
+    @Indexed
     private Set<Role> roles;
 
     @Indexed(unique = true)
@@ -36,6 +38,9 @@ public class User {
     private String lastName;
     private String profession;
 
+    // bumped to invalidate every token issued to this user so far
+    private long tokenVersion;
+
     public User() {
     }
 
@@ -114,4 +119,12 @@ public class User {
     public void setProfession(String profession) {
         this.profession = profession;
     }
+
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(long tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
 }
@@ -0,0 +1,104 @@
+package healthcareab.project.healthcare_booking_app.models.supportClasses;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Security principal for a logged-in user.
+ * Built either from a loaded {@link User} document (login) or from the signed claims of a JWT,
+ * in which case no user document is attached.
+ */
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+    private final String id;
+    private final String username;
+    private String password;
+    private final Set<Role> roles;
+    private final long tokenVersion;
+    private final User user;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(User user) {
+        this(user.getId(), user.getUsername(), user.getPassword(), user.getRoles(), user.getTokenVersion(), user);
+    }
+
+    public AuthenticatedUser(String id, String username, Set<Role> roles, long tokenVersion) {
+        this(id, username, null, roles, tokenVersion, null);
+    }
+
+    private AuthenticatedUser(String id, String username, String password, Set<Role> roles, long tokenVersion, User user) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.roles = roles == null || roles.isEmpty() ? Set.of() : Set.copyOf(roles);
+        this.tokenVersion = tokenVersion;
+        this.user = user;
+        this.authorities = this.roles.stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.name()))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Set<Role> getRoles() {
+        return roles;
+    }
+
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
+    // the loaded user document, or null when the principal was built from token claims
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+}
@@ -0,0 +1,9 @@
+package healthcareab.project.healthcare_booking_app.models.supportClasses;
+
+public enum AvailabilityEventType {
+    AVAILABILITY_CHANGED,
+    // a recurring template was added or removed, sent without a date since it can touch many days
+    AVAILABILITY_TEMPLATE_CHANGED,
+    APPOINTMENT_BOOKED,
+    APPOINTMENT_CANCELLED
+}
@@ -0,0 +1,57 @@
+package healthcareab.project.healthcare_booking_app.models.supportClasses;
+
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A booking of startTime to endTime inside a free availability block. The block document itself becomes the
+ * booked piece, whatever is left before and after the booking stays bookable as new free pieces.
+ * A piece's id is derived from the block and its range, so every copy of the same split names the same documents.
+ */
+public record SlotSplit(Availability block, LocalTime startTime, LocalTime endTime) {
+
+    public List<Availability> freePieces() {
+        List<Availability> pieces = new ArrayList<>(2);
+        if (block.getStartTime().isBefore(startTime)) {
+            pieces.add(piece(block.getStartTime(), startTime));
+        }
+        if (endTime.isBefore(block.getEndTime())) {
+            pieces.add(piece(endTime, block.getEndTime()));
+        }
+        return pieces;
+    }
+
+    private Availability piece(LocalTime pieceStart, LocalTime pieceEnd) {
+        Availability piece = new Availability();
+        piece.setId(pieceId(pieceStart, pieceEnd));
+        piece.setProviderId(block.getProviderId());
+        piece.setDate(block.getDate());
+        piece.setStartTime(pieceStart);
+        piece.setEndTime(pieceEnd);
+        piece.setIsAvailable(true);
+        piece.setTemplateId(block.getTemplateId());
+        return piece;
+    }
+
+    // blocks of a provider never overlap (rejected when written), so no other live document can have the same block and range
+    private String pieceId(LocalTime pieceStart, LocalTime pieceEnd) {
+        if (block.getId() == null) {
+            return null;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest((block.getId() + '/' + pieceStart + '/' + pieceEnd).getBytes(StandardCharsets.UTF_8));
+            return new ObjectId(Arrays.copyOf(hash, 12)).toHexString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
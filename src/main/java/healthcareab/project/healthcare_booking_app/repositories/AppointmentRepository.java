@@ -3,13 +3,19 @@ package healthcareab.project.healthcare_booking_app.repositories;
 import healthcareab.project.healthcare_booking_app.models.Appointment;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 
 @Repository
-public interface AppointmentRepository extends MongoRepository<Appointment, String> {
+public interface AppointmentRepository extends MongoRepository<Appointment, String>, AppointmentRepositoryCustom {
+    // conditional, so an appointment is only cancelled once
+    @Query("{ '_id': ?0, 'status': { '$ne': 'CANCELLED' } }")
+    @Update("{ '$set': { 'status': 'CANCELLED' } }")
+    long cancel(String id);
+
     /**
      * Checks whether a provider has availability that fully covers
      * the requested appointment time on the given date.
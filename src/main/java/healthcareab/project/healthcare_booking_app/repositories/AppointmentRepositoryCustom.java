@@ -0,0 +1,40 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.Appointment;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public interface AppointmentRepositoryCustom {
+    /**
+     * Inserts all appointments with one unordered bulk write, so a rejected booking does not stop the rest of the batch.
+     * Returns the error message of every appointment that could not be inserted, keyed by its position in the list.
+     */
+    Map<Integer, String> insertAllUnordered(List<Appointment> appointments);
+
+    /**
+     * Returns at most {@code limit} appointments of the patient, sorted by date, start time and id,
+     * starting right after the cursor. Both dates are inclusive and either may be null for an open range.
+     * Only the fields of the listing are read, the availability id is left out.
+     */
+    List<Appointment> findPageByPatientId(String patientId, LocalDate from, LocalDate to, KeysetCursor after, int limit);
+
+    /**
+     * Same as {@link #findPageByPatientId}, for the agenda of a provider.
+     */
+    List<Appointment> findPageByProviderId(String providerId, LocalDate from, LocalDate to, KeysetCursor after, int limit);
+
+    /**
+     * Streams the patient's appointments from from to to (both inclusive, like the pages) through a database cursor
+     * read in small batches, sorted by date, start time and id. The caller has to close the stream.
+     */
+    Stream<Appointment> streamByPatientId(String patientId, LocalDate from, LocalDate to);
+
+    /**
+     * Same as {@link #streamByPatientId}, for the agenda of a provider.
+     */
+    Stream<Appointment> streamByProviderId(String providerId, LocalDate from, LocalDate to);
+}
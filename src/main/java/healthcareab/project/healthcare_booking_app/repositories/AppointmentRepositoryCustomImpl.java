@@ -0,0 +1,113 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import com.mongodb.bulk.BulkWriteError;
+import healthcareab.project.healthcare_booking_app.models.Appointment;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+public class AppointmentRepositoryCustomImpl implements AppointmentRepositoryCustom {
+    private static final int STREAM_BATCH_SIZE = 200;
+
+    private final MongoTemplate mongoTemplate;
+
+    public AppointmentRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Map<Integer, String> insertAllUnordered(List<Appointment> appointments) {
+        Map<Integer, String> failures = new TreeMap<>();
+        if (appointments.isEmpty()) {
+            return failures;
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class)
+                    .insert(appointments)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                failures.put(error.getIndex(), error.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public List<Appointment> findPageByPatientId(String patientId, LocalDate from, LocalDate to, KeysetCursor after, int limit) {
+        List<Appointment> appointments = findPage("patientId", patientId, "providerId", from, to, after, limit);
+        appointments.forEach(appointment -> appointment.setPatientId(patientId));
+        return appointments;
+    }
+
+    @Override
+    public List<Appointment> findPageByProviderId(String providerId, LocalDate from, LocalDate to, KeysetCursor after, int limit) {
+        List<Appointment> appointments = findPage("providerId", providerId, "patientId", from, to, after, limit);
+        appointments.forEach(appointment -> appointment.setProviderId(providerId));
+        return appointments;
+    }
+
+    @Override
+    public Stream<Appointment> streamByPatientId(String patientId, LocalDate from, LocalDate to) {
+        return stream("patientId", patientId, from, to);
+    }
+
+    @Override
+    public Stream<Appointment> streamByProviderId(String providerId, LocalDate from, LocalDate to) {
+        return stream("providerId", providerId, from, to);
+    }
+
+    // read through a cursor in small batches, for writing long ranges out row by row
+    private Stream<Appointment> stream(String ownerField, String ownerId, LocalDate from, LocalDate to) {
+        Query query = Query.query(ownerAndDates(ownerField, ownerId, from, to))
+                .with(Sort.by("date", "startTime", "_id"))
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+        return mongoTemplate.stream(query, Appointment.class);
+    }
+
+    // the owner's id is the same on every row, so only the other party's id is read
+    private List<Appointment> findPage(String ownerField, String ownerId, String otherPartyField,
+                                       LocalDate from, LocalDate to, KeysetCursor after, int limit) {
+        Criteria criteria = ownerAndDates(ownerField, ownerId, from, to);
+
+        // everything sorted after the cursor: a later day, a later start on the same day, or a higher id on a tie
+        if (after != null) {
+            criteria = criteria.orOperator(
+                    Criteria.where("date").gt(after.getDate()),
+                    Criteria.where("date").is(after.getDate()).and("startTime").gt(after.getStartTime()),
+                    Criteria.where("date").is(after.getDate()).and("startTime").is(after.getStartTime())
+                            .and("_id").gt(after.getId())
+            );
+        }
+
+        // matches the owner/date/startTime/_id index, so the sort and the limit are served from the index
+        Query query = Query.query(criteria)
+                .with(Sort.by("date", "startTime", "_id"))
+                .limit(limit);
+        query.fields().include(otherPartyField, "date", "startTime", "endTime", "status");
+        return mongoTemplate.find(query, Appointment.class);
+    }
+
+    // both dates inclusive, a null date leaves that end of the range open
+    private static Criteria ownerAndDates(String ownerField, String ownerId, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where(ownerField).is(ownerId);
+        if (from != null && to != null) {
+            criteria = criteria.and("date").gte(from).lte(to);
+        } else if (from != null) {
+            criteria = criteria.and("date").gte(from);
+        } else if (to != null) {
+            criteria = criteria.and("date").lte(to);
+        }
+        return criteria;
+    }
+}
@@ -1,6 +1,7 @@
 package healthcareab.project.healthcare_booking_app.repositories;
 
 import healthcareab.project.healthcare_booking_app.models.Availability;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -9,14 +10,30 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface AvailabilityRepository extends MongoRepository<Availability, String> {
+public interface AvailabilityRepository extends MongoRepository<Availability, String>, AvailabilityRepositoryCustom {
     List<Availability> findByProviderIdAndDateBetween(
             String providerId,
             LocalDate from,
             LocalDate to
     );
+
+    // sorted by mongo using the providerId/date/startTime index instead of in memory
+    List<Availability> findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(
+            String providerId,
+            LocalDate from,
+            LocalDate to
+    );
+
+    // read through a cursor in small batches, for writing long ranges out row by row
+    @Meta(cursorBatchSize = 200)
+    Stream<Availability> streamByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(
+            String providerId,
+            LocalDate from,
+            LocalDate to
+    );
     
     
     /**
@@ -46,4 +63,12 @@ public interface AvailabilityRepository extends MongoRepository<Availability, St
 }
 """)
     Optional<Availability> findAvailableSlot(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime);
+
+    // start and end of every free block of the provider on that day, to build the day's slot bitmap
+    @Query(value = "{ 'providerId': ?0, 'date': ?1, 'isAvailable': true }", fields = "{ 'date': 1, 'startTime': 1, 'endTime': 1, 'templateId': 1 }")
+    List<Availability> findFreeBlocks(String providerId, LocalDate date);
+
+    // blocks of the provider, free or booked, from first to last (both inclusive) that share time with startTime to endTime
+    @Query(value = "{ 'providerId': ?0, 'date': { $gte: ?1, $lte: ?2 }, 'startTime': { $lt: ?4 }, 'endTime': { $gt: ?3 } }", fields = "{ 'date': 1 }")
+    List<Availability> findOverlapping(String providerId, LocalDate first, LocalDate last, LocalTime startTime, LocalTime endTime);
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.SlotSplit;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface AvailabilityRepositoryCustom {
+    /**
+     * Returns at most {@code limit} availabilities of the provider between the two dates (exclusive, like
+     * {@code findByProviderIdAndDateBetween}), sorted by date, start time and id, starting right after the cursor.
+     * A null cursor starts from the beginning of the range.
+     */
+    List<Availability> findPageByProviderIdAndDateBetween(String providerId, LocalDate from, LocalDate to,
+                                                          KeysetCursor after, int limit);
+
+    /**
+     * Claims a free block covering the time range, shrinking it to the booked range, and inserts what is left
+     * before and after the booking as free pieces in the same ordered bulk write, which stops before the inserts
+     * if the block was claimed by someone else first.
+     * Returns the block as it was before the claim, or empty if no free block covers the range anymore.
+     */
+    Optional<Availability> claimAvailableSlot(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime);
+
+    /**
+     * Undoes a claim whose booking could not be stored: removes its free pieces and gives the block its
+     * original range back. Only the booked range is freed if a piece was booked in the meantime.
+     */
+    void restoreSlot(SlotSplit split);
+
+    /**
+     * Applies the splits of a whole batch of bookings in one ordered bulk write, each block's claim right before
+     * its free pieces. A block is only shrunk while it is still free and unchanged, and the pieces of a block
+     * that changed are never inserted. Returns the splits that were not applied because their block changed.
+     * If a piece cannot be inserted, every split of the batch is undone and the failure is rethrown.
+     */
+    List<SlotSplit> applySplits(List<SlotSplit> splits);
+
+    /**
+     * Frees a booked block again and merges it with the free pieces directly before and after it. The pieces
+     * are only merged once the block itself was freed.
+     * Returns the merged free block, or empty if the block no longer exists or is not booked.
+     */
+    Optional<Availability> releaseAndMerge(String id);
+}
@@ -0,0 +1,230 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.SlotSplit;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class AvailabilityRepositoryCustomImpl implements AvailabilityRepositoryCustom {
+    private static final String MISSED_CLAIM_ID = "missed-claim";
+
+    private final MongoTemplate mongoTemplate;
+
+    public AvailabilityRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<Availability> findPageByProviderIdAndDateBetween(String providerId, LocalDate from, LocalDate to,
+                                                                 KeysetCursor after, int limit) {
+        Criteria criteria = Criteria.where("providerId").is(providerId)
+                .and("date").gt(from).lt(to);
+
+        // everything sorted after the cursor: a later day, a later start on the same day, or a higher id on a tie
+        if (after != null) {
+            Criteria sameStart = Criteria.where("date").is(after.getDate()).and("startTime").is(after.getStartTime());
+            criteria = criteria.orOperator(
+                    Criteria.where("date").gt(after.getDate()),
+                    Criteria.where("date").is(after.getDate()).and("startTime").gt(after.getStartTime()),
+                    ObjectId.isValid(after.getId())
+                            ? sameStart.and("_id").gt(after.getId())
+                            // $gt only compares ids of the same type, and every ObjectId sorts after a string id
+                            : sameStart.orOperator(
+                                    Criteria.where("_id").gt(after.getId()),
+                                    Criteria.where("_id").type(JsonSchemaObject.Type.OBJECT_ID))
+            );
+        }
+
+        // matches the providerId/date/startTime/_id index, so the sort and the limit are served from the index
+        Query query = Query.query(criteria)
+                .with(Sort.by("date", "startTime", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Availability.class);
+    }
+
+    @Override
+    public Optional<Availability> claimAvailableSlot(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        Query query = Query.query(Criteria.where("providerId").is(providerId)
+                .and("date").is(date)
+                .and("startTime").lte(startTime)
+                .and("endTime").gte(endTime)
+                .and("isAvailable").is(true));
+
+        // a block changed by a concurrent booking after it was read is not split, the next free block is tried
+        Availability block;
+        while ((block = mongoTemplate.findOne(query, Availability.class)) != null) {
+            if (applySplits(List.of(new SlotSplit(block, startTime, endTime))).isEmpty()) {
+                return Optional.of(block);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void restoreSlot(SlotSplit split) {
+        List<Availability> freePieces = split.freePieces();
+        int removed = removeFreePieces(freePieces);
+
+        Availability block = split.block();
+        Query booked = Query.query(Criteria.where("_id").is(block.getId())
+                .and("isAvailable").is(false)
+                .and("startTime").is(split.startTime())
+                .and("endTime").is(split.endTime()));
+        Update update = new Update().set("isAvailable", true);
+        // widening the block over a piece that was booked meanwhile would offer that time twice
+        if (removed == freePieces.size()) {
+            update.set("startTime", block.getStartTime()).set("endTime", block.getEndTime());
+        }
+        mongoTemplate.updateFirst(booked, update, Availability.class);
+    }
+
+    @Override
+    public List<SlotSplit> applySplits(List<SlotSplit> splits) {
+        List<SlotSplit> missed = new ArrayList<>();
+        int next = 0;
+        while (next < splits.size()) {
+            // each claim goes right before the pieces of its block, and the ordered write stops at the first miss
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Availability.class);
+            List<Integer> splitOfOperation = new ArrayList<>();
+            for (int i = next; i < splits.size(); i++) {
+                SlotSplit split = splits.get(i);
+                bulkOperations.upsert(claimQuery(split), claimUpdate(split));
+                splitOfOperation.add(i);
+                for (Availability piece : split.freePieces()) {
+                    bulkOperations.insert(piece);
+                    splitOfOperation.add(i);
+                }
+            }
+            try {
+                bulkOperations.execute();
+                return missed;
+            } catch (BulkOperationException e) {
+                if (e.getErrors().isEmpty()) {
+                    throw e;
+                }
+                int failedOperation = e.getErrors().get(0).getIndex();
+                int failedSplit = splitOfOperation.get(failedOperation);
+                boolean claimMissed = failedOperation == 0 || splitOfOperation.get(failedOperation - 1) != failedSplit;
+                if (!claimMissed) {
+                    // a piece could not be inserted, every split written so far is undone before failing
+                    for (SlotSplit applied : splits.subList(0, failedSplit + 1)) {
+                        if (!missed.contains(applied)) {
+                            try {
+                                restoreSlot(applied);
+                            } catch (RuntimeException restoreFailure) {
+                                e.addSuppressed(restoreFailure);
+                            }
+                        }
+                    }
+                    throw e;
+                }
+                // the rest of the batch is written again after the block that changed
+                missed.add(splits.get(failedSplit));
+                next = failedSplit + 1;
+            }
+        }
+        return missed;
+    }
+
+    @Override
+    public Optional<Availability> releaseAndMerge(String id) {
+        Availability block = mongoTemplate.findById(id, Availability.class);
+        if (block == null || Boolean.TRUE.equals(block.getIsAvailable())) {
+            return Optional.empty();
+        }
+
+        // the block is freed first, so a concurrent release or change of it leaves the neighbours untouched
+        Query booked = Query.query(Criteria.where("_id").is(id)
+                .and("isAvailable").is(false)
+                .and("startTime").is(block.getStartTime())
+                .and("endTime").is(block.getEndTime()));
+        Availability released = mongoTemplate.findAndModify(booked, new Update().set("isAvailable", true),
+                FindAndModifyOptions.options().returnNew(true), Availability.class);
+        if (released == null) {
+            return Optional.empty();
+        }
+
+        // only pieces that are still free are taken over, a piece booked meanwhile stays where it is
+        Availability before = mongoTemplate.findAndRemove(
+                freePiece(released.getProviderId(), released.getDate())
+                        .addCriteria(Criteria.where("endTime").is(released.getStartTime())),
+                Availability.class);
+        if (before != null) {
+            released = widen(released, before, "startTime", before.getStartTime());
+        }
+        Availability after = mongoTemplate.findAndRemove(
+                freePiece(released.getProviderId(), released.getDate())
+                        .addCriteria(Criteria.where("startTime").is(released.getEndTime())),
+                Availability.class);
+        if (after != null) {
+            released = widen(released, after, "endTime", after.getEndTime());
+        }
+        return Optional.of(released);
+    }
+
+    // widens the freed block over a removed neighbour, or puts the neighbour back if the block was booked meanwhile
+    private Availability widen(Availability released, Availability neighbour, String field, LocalTime time) {
+        Query stillFree = Query.query(Criteria.where("_id").is(released.getId())
+                .and("isAvailable").is(true)
+                .and("startTime").is(released.getStartTime())
+                .and("endTime").is(released.getEndTime()));
+        Availability widened = mongoTemplate.findAndModify(stillFree, new Update().set(field, time),
+                FindAndModifyOptions.options().returnNew(true), Availability.class);
+        if (widened == null) {
+            mongoTemplate.insert(neighbour);
+            return released;
+        }
+        return widened;
+    }
+
+    // removes each piece only while it is still free, returns how many were removed
+    private int removeFreePieces(List<Availability> pieces) {
+        int removed = 0;
+        for (Availability piece : pieces) {
+            Query query = Query.query(Criteria.where("_id").is(piece.getId()).and("isAvailable").is(true));
+            if (mongoTemplate.findAndRemove(query, Availability.class) != null) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static Query claimQuery(SlotSplit split) {
+        Availability block = split.block();
+        return Query.query(Criteria.where("_id").is(block.getId())
+                .and("isAvailable").is(true)
+                .and("startTime").is(block.getStartTime())
+                .and("endTime").is(block.getEndTime()));
+    }
+
+    // used as an upsert so a miss is an error that stops the ordered write: the document either still exists,
+    // which is a duplicate key, or the insert would change the _id taken from the query, which mongo rejects
+    private static Update claimUpdate(SlotSplit split) {
+        return new Update()
+                .set("isAvailable", false)
+                .set("startTime", split.startTime())
+                .set("endTime", split.endTime())
+                .setOnInsert("_id", MISSED_CLAIM_ID);
+    }
+
+    private static Query freePiece(String providerId, LocalDate date) {
+        return Query.query(Criteria.where("providerId").is(providerId)
+                .and("date").is(date)
+                .and("isAvailable").is(true));
+    }
+}
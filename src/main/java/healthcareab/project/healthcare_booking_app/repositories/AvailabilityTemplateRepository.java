@@ -0,0 +1,23 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.AvailabilityTemplate;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface AvailabilityTemplateRepository extends MongoRepository<AvailabilityTemplate, String> {
+    List<AvailabilityTemplate> findByProviderId(String providerId);
+
+    // templates of the provider that apply to at least one day from first to last
+    @Query("{ 'providerId': ?0, 'validFrom': { $lte: ?2 }, 'validUntil': { $gte: ?1 } }")
+    List<AvailabilityTemplate> findOverlapping(String providerId, LocalDate first, LocalDate last);
+
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$addToSet': { 'materializedDates': ?1 } }")
+    void addMaterializedDate(String id, LocalDate date);
+}
@@ -0,0 +1,9 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IdempotencyRecordRepository extends MongoRepository<IdempotencyRecord, String> {
+}
@@ -0,0 +1,16 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.RevokedToken;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.stream.Stream;
+
+@Repository
+public interface RevokedTokenRepository extends MongoRepository<RevokedToken, String> {
+    // only the digests are needed to rebuild the in-memory filter
+    @Query(value = "{ 'expiresAt': { $gt: ?0 } }", fields = "{ '_id': 1 }")
+    Stream<RevokedToken> streamByExpiresAtAfter(Instant now);
+}
@@ -2,10 +2,41 @@ package healthcareab.project.healthcare_booking_app.repositories;
 
 import healthcareab.project.healthcare_booking_app.models.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface UserRepository  extends MongoRepository<User, String> {
+public interface UserRepository  extends MongoRepository<User, String>, UserRepositoryCustom {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
+
+    /**
+     * Loads only the token version of a user, used to check JWTs without fetching the full document.
+     */
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'tokenVersion': 1 }")
+    Optional<User> findTokenVersionById(String id);
+
+    // only the names of the users, to label a page of appointments with one query
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'firstName': 1, 'lastName': 1 }")
+    List<User> findNamesByIdIn(Collection<String> ids);
+
+    // public profiles of many users in one query, the password hash and email are never read
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'username': 1, 'firstName': 1, 'lastName': 1, 'profession': 1, 'roles': 1 }")
+    List<User> findProfilesByIdIn(Collection<String> ids);
+
+    // the searchable fields of every provider, read once on startup to fill the provider directory
+    @Query(value = "{ 'roles': 'PROVIDER' }", fields = "{ 'username': 1, 'firstName': 1, 'lastName': 1, 'profession': 1, 'roles': 1 }")
+    Stream<User> streamProviders();
+
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$inc': { 'tokenVersion': 1 } }")
+    void incrementTokenVersionById(String id);
+
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$set': { 'password': ?1 } }")
+    void updatePasswordById(String id, String password);
 }
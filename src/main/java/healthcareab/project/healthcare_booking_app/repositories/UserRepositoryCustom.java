@@ -0,0 +1,24 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public interface UserRepositoryCustom {
+    /**
+     * Inserts all users with unordered bulk writes, so one duplicate does not stop the rest of the batch.
+     * Returns the error message of every user that could not be inserted, keyed by its position in the list.
+     */
+    Map<Integer, String> insertAllUnordered(List<User> users);
+
+    /**
+     * Sets the roles and bumps the token version in one write, so no token can carry the new roles
+     * with the old version or the old roles with the new one. Returns the updated user, empty if it does not exist.
+     */
+    Optional<User> updateRolesAndIncrementTokenVersion(String id, Set<Role> roles);
+}
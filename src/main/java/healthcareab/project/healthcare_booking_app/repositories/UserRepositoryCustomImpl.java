@@ -0,0 +1,60 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import com.mongodb.bulk.BulkWriteError;
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    public UserRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Map<Integer, String> insertAllUnordered(List<User> users) {
+        Map<Integer, String> failures = new TreeMap<>();
+
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            List<User> batch = users.subList(from, Math.min(from + BATCH_SIZE, users.size()));
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)
+                        .insert(batch)
+                        .execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    failures.put(from + error.getIndex(), error.getMessage());
+                }
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public Optional<User> updateRolesAndIncrementTokenVersion(String id, Set<Role> roles) {
+        Update update = new Update()
+                .set("roles", roles)
+                .inc("tokenVersion", 1);
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(id)),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                User.class
+        ));
+    }
+}
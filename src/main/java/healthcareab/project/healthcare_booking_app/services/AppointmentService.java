@@ -2,28 +2,47 @@ package healthcareab.project.healthcare_booking_app.services;
 
 import healthcareab.project.healthcare_booking_app.dto.AppointmentRequest;
 import healthcareab.project.healthcare_booking_app.dto.AppointmentResponse;
+import healthcareab.project.healthcare_booking_app.dto.PageResponse;
 import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.exceptions.NotFoundException;
 import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
 import healthcareab.project.healthcare_booking_app.models.Appointment;
 import healthcareab.project.healthcare_booking_app.models.Availability;
 import healthcareab.project.healthcare_booking_app.models.User;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.AppointmentStatus;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AvailabilityEventType;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.SlotSplit;
 import healthcareab.project.healthcare_booking_app.repositories.AppointmentRepository;
 import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
 import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AppointmentService {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    
     private final AppointmentRepository appointmentRepository;
     private final AvailabilityService availabilityService;
     private final UserService userService;
     private final UserRepository userRepository;
     private final AvailabilityRepository availabilityRepository;
+    private final BookingLaneService bookingLaneService;
+    private final AvailabilityEventService availabilityEventService;
     
     
     public AppointmentService(
@@ -31,15 +50,171 @@ public class AppointmentService {
             AvailabilityService availabilityService,
             UserService userService,
             UserRepository userRepository,
-            AvailabilityRepository availabilityRepository) {
+            AvailabilityRepository availabilityRepository,
+            BookingLaneService bookingLaneService,
+            AvailabilityEventService availabilityEventService) {
         this.appointmentRepository = appointmentRepository;
         this.availabilityService = availabilityService;
         this.userService = userService;
         this.userRepository = userRepository;
         this.availabilityRepository = availabilityRepository;
+        this.bookingLaneService = bookingLaneService;
+        this.availabilityEventService = availabilityEventService;
     }
     
     public AppointmentResponse createAppointment(AppointmentRequest request) {
+        User patient = validateBooking(request);
+        
+        // claim the slot and mark the booked range as taken in one atomic step, only one of several concurrent
+        // bookings wins; the rest of the block stays bookable
+        Availability availability = availabilityRepository.claimAvailableSlot(
+                request.getProviderId(),
+                request.getDate(),
+                request.getStartTime(),
+                request.getEndTime()
+        ).orElseThrow(() -> new IllegalArgumentException("Selected time is not available"));
+        
+        try {
+            Appointment appointment = newAppointment(patient, request);
+            appointment.setAvailabilityId(availability.getId());
+            
+            Appointment savedAppointment = appointmentRepository.insert(appointment);
+            publish(AvailabilityEventType.APPOINTMENT_BOOKED, savedAppointment);
+            
+            return mapToResponse(savedAppointment);
+        } catch (RuntimeException e) {
+            // the appointment was not stored, so put the block back the way it was
+            try {
+                availabilityRepository.restoreSlot(new SlotSplit(availability, request.getStartTime(), request.getEndTime()));
+            } catch (RuntimeException restoreFailure) {
+                e.addSuppressed(restoreFailure);
+            }
+            if (e instanceof DuplicateKeyException) {
+                // a booking lane stored an appointment for this block first
+                throw new IllegalArgumentException("Selected time is not available");
+            }
+            throw e;
+        } finally {
+            availabilityService.availabilityChanged(availability.getProviderId(), availability.getDate());
+        }
+    }
+    
+    /**
+     * Cancels an appointment of the current patient, or on the current provider's agenda, or any as admin.
+     * The booked time is given back and merged with the free time directly around it.
+     */
+    public AppointmentResponse cancelAppointment(String id) {
+        User currentUser = userService.getCurrentUser();
+        
+        Appointment appointment = appointmentRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Appointment not found"));
+        
+        boolean isAdmin = currentUser.getRoles().contains(Role.ADMIN);
+        boolean isPatient = appointment.getPatientId().equals(currentUser.getId());
+        boolean isProvider = appointment.getProviderId().equals(currentUser.getId());
+        if (!isAdmin && !isPatient && !isProvider) {
+            throw new UnauthorizedException("You can only cancel your own appointments");
+        }
+        
+        // only one of several concurrent cancellations gets to release the slot
+        if (appointmentRepository.cancel(id) == 0) {
+            throw new IllegalArgumentException("Appointment is already cancelled");
+        }
+        appointment.setStatus(AppointmentStatus.CANCELLED);
+        
+        if (appointment.getAvailabilityId() != null) {
+            try {
+                availabilityRepository.releaseAndMerge(appointment.getAvailabilityId());
+            } finally {
+                availabilityService.availabilityChanged(appointment.getProviderId(), appointment.getDate());
+            }
+        }
+        publish(AvailabilityEventType.APPOINTMENT_CANCELLED, appointment);
+        return mapToResponse(appointment);
+    }
+    
+    /**
+     * Books an appointment, on the provider's booking lane when lanes are enabled and on the calling thread otherwise.
+     * The request is validated on the calling thread, so validation errors are thrown right away;
+     * a lane booking that loses its slot completes the future exceptionally instead.
+     */
+    public CompletableFuture<AppointmentResponse> createAppointmentAsync(AppointmentRequest request) {
+        if (!bookingLaneService.isEnabled()) {
+            return CompletableFuture.completedFuture(createAppointment(request));
+        }
+        User patient = validateBooking(request);
+        return bookingLaneService.submit(newAppointment(patient, request)).thenApply(appointment -> {
+            publish(AvailabilityEventType.APPOINTMENT_BOOKED, appointment);
+            return mapToResponse(appointment);
+        });
+    }
+    
+    /**
+     * Returns one page of the current patient's appointments, sorted by date and start time.
+     * The page's nextCursor is passed back to get the following page, it is null on the last page.
+     */
+    public PageResponse<AppointmentResponse> getMyAppointments(LocalDate from, LocalDate to, String cursor, Integer limit) {
+        User currentUser = userService.getCurrentUser();
+        if (!currentUser.getRoles().contains(Role.PATIENT)) {
+            throw new UnauthorizedException("Only patients have their own appointments");
+        }
+        int pageSize = pageSize(limit);
+        List<Appointment> appointments = appointmentRepository.findPageByPatientId(
+                currentUser.getId(), from, to, decodeCursor(cursor), pageSize + 1);
+        return toPage(appointments, pageSize, currentUser);
+    }
+    
+    /**
+     * Returns one page of a provider's agenda, sorted by date and start time.
+     * Providers get their own agenda, admins pick the provider.
+     */
+    public PageResponse<AppointmentResponse> getProviderAgenda(String providerId, LocalDate from, LocalDate to,
+                                                               String cursor, Integer limit) {
+        User currentUser = userService.getCurrentUser();
+        String agendaProviderId;
+        if (currentUser.getRoles().contains(Role.ADMIN) && providerId != null && !providerId.isBlank()) {
+            agendaProviderId = providerId;
+        } else if (currentUser.getRoles().contains(Role.PROVIDER)) {
+            agendaProviderId = currentUser.getId();
+        } else {
+            throw new UnauthorizedException("Only providers have an agenda");
+        }
+        int pageSize = pageSize(limit);
+        List<Appointment> appointments = appointmentRepository.findPageByProviderId(
+                agendaProviderId, from, to, decodeCursor(cursor), pageSize + 1);
+        return toPage(appointments, pageSize, currentUser);
+    }
+    
+    /**
+     * Streams the appointments from from to to (both inclusive) from a database cursor, sorted by date and start time.
+     * Patients get their own appointments and providers their own agenda, admins pick the provider.
+     * The caller has to close the stream.
+     */
+    public Stream<AppointmentResponse> streamAppointments(String providerId, LocalDate from, LocalDate to) {
+        User currentUser = userService.getCurrentUser();
+        Stream<Appointment> appointments;
+        
+        if (currentUser.getRoles().contains(Role.ADMIN) && providerId != null && !providerId.isBlank()) {
+            appointments = appointmentRepository.streamByProviderId(providerId, from, to);
+        } else if (currentUser.getRoles().contains(Role.PROVIDER)) {
+            appointments = appointmentRepository.streamByProviderId(currentUser.getId(), from, to);
+        } else if (currentUser.getRoles().contains(Role.PATIENT)) {
+            appointments = appointmentRepository.streamByPatientId(currentUser.getId(), from, to);
+        } else {
+            throw new IllegalArgumentException("A provider ID is required");
+        }
+        
+        return appointments.map(this::mapToResponse);
+    }
+    
+    // only the provider and time go out, subscribers never learn who booked
+    private void publish(AvailabilityEventType type, Appointment appointment) {
+        availabilityEventService.publish(type, appointment.getProviderId(), appointment.getDate(),
+                appointment.getStartTime(), appointment.getEndTime());
+    }
+    
+    // returns the patient making the booking
+    private User validateBooking(AppointmentRequest request) {
         // role check so only patient can create booking
         User patient = userService.getCurrentUser();
         
@@ -60,6 +235,7 @@ public class AppointmentService {
             throw new UnauthorizedException("Start time must be before end time");
         }
         
+        // cheap in-memory pre-check, turns away times that are clearly taken without touching the database
         boolean available = availabilityService.isTimeAvailable(
                 request.getProviderId(),
                 request.getDate(),
@@ -70,18 +246,13 @@ public class AppointmentService {
         if (!available) {
             throw new IllegalArgumentException("Selected time is not available");
         }
-   
-        // get availability slot and make as booked
-        Availability availability = availabilityService.getAvailableSlot(
-                request.getProviderId(),
-                request.getDate(),
-                request.getStartTime(),
-                request.getEndTime()
-        );
-        
-        availability.setIsAvailable(false);
-        availabilityRepository.save(availability);
         
+        // a template occurrence only exists as a document once stored, the claim below needs one to update
+        availabilityService.materializeTemplates(request.getProviderId(), request.getDate());
+        return patient;
+    }
+    
+    private Appointment newAppointment(User patient, AppointmentRequest request) {
         Appointment appointment = new Appointment();
         appointment.setPatientId(patient.getId());
         appointment.setProviderId(request.getProviderId());
@@ -89,14 +260,67 @@ public class AppointmentService {
         appointment.setStartTime(request.getStartTime());
         appointment.setEndTime(request.getEndTime());
         appointment.setStatus(AppointmentStatus.BOOKED);
+        return appointment;
+    }
+    
+    private static int pageSize(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+    
+    private static KeysetCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+    }
+    
+    // the query reads one extra item to know whether there is a next page
+    private PageResponse<AppointmentResponse> toPage(List<Appointment> appointments, int pageSize, User currentUser) {
+        List<Appointment> page = appointments.size() <= pageSize ? appointments : appointments.subList(0, pageSize);
+        String nextCursor = null;
+        if (appointments.size() > pageSize) {
+            Appointment last = page.get(pageSize - 1);
+            nextCursor = new KeysetCursor(last.getDate(), last.getStartTime(), last.getId()).encode();
+        }
         
+        Map<String, String> names = displayNames(page, currentUser);
+        List<AppointmentResponse> items = page.stream()
+                .map(appointment -> mapToResponse(appointment,
+                        names.get(appointment.getPatientId()),
+                        names.get(appointment.getProviderId())))
+                .toList();
+        return new PageResponse<>(items, nextCursor);
+    }
+    
+    // names of everyone on the page, read with a single $in query; the current user is already loaded
+    private Map<String, String> displayNames(List<Appointment> appointments, User currentUser) {
+        Map<String, String> names = new HashMap<>();
+        names.put(currentUser.getId(), displayName(currentUser));
         
-        Appointment savedAppointment = appointmentRepository.save(appointment);
-        
-        return mapToResponse(savedAppointment);
+        Set<String> missing = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            missing.add(appointment.getPatientId());
+            missing.add(appointment.getProviderId());
+        }
+        missing.removeAll(names.keySet());
+        if (!missing.isEmpty()) {
+            userRepository.findNamesByIdIn(missing).forEach(user -> names.put(user.getId(), displayName(user)));
+        }
+        return names;
+    }
+    
+    private static String displayName(User user) {
+        return Stream.of(user.getFirstName(), user.getLastName())
+                .filter(part -> part != null && !part.isBlank())
+                .collect(Collectors.joining(" "));
     }
     
     private AppointmentResponse mapToResponse(Appointment appointment) {
+        return mapToResponse(appointment, null, null);
+    }
+    
+    private AppointmentResponse mapToResponse(Appointment appointment, String patientName, String providerName) {
         return new AppointmentResponse(
                 appointment.getId(),
                 appointment.getPatientId(),
@@ -104,7 +328,9 @@ public class AppointmentService {
                 appointment.getDate(),
                 appointment.getStartTime(),
                 appointment.getEndTime(),
-                appointment.getStatus()
+                appointment.getStatus(),
+                patientName,
+                providerName
         );
     }
 }
\ No newline at end of file
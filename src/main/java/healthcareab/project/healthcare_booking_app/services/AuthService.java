@@ -1,45 +1,118 @@
 package healthcareab.project.healthcare_booking_app.services;
 
+import healthcareab.project.healthcare_booking_app.dto.BulkRegisterResponse;
 import healthcareab.project.healthcare_booking_app.dto.RegisterRequest;
 import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
 import healthcareab.project.healthcare_booking_app.exceptions.NameAlreadyBoundException;
 import healthcareab.project.healthcare_booking_app.models.User;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class AuthService {
+    // name of the unique index that rejected an insert, e.g. "... index: email dup key: { ... }"
+    private static final Pattern DUPLICATE_INDEX = Pattern.compile("index: (\\S+)");
+
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordEncoder;
+    private final Validator validator;
+    private final ProviderDirectoryService providerDirectoryService;
 
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AuthService(UserRepository userRepository, PasswordHashingService passwordEncoder, Validator validator,
+                       ProviderDirectoryService providerDirectoryService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.providerDirectoryService = providerDirectoryService;
     }
 
+    // single insert, the unique indexes on username and email reject duplicates
     public User registerUser(RegisterRequest registerRequest) {
-        if (existsByUsername(registerRequest.getUsername())) {
-            throw new NameAlreadyBoundException("Username already exists");
+        validateRegisterRequest(registerRequest);
+
+        User user = mapRequestToUser(registerRequest, passwordEncoder.encode(registerRequest.getPassword()));
+        User registered;
+        try {
+            registered = userRepository.insert(user);
+        } catch (DuplicateKeyException e) {
+            throw new NameAlreadyBoundException(duplicateMessage(e.getMessage()));
         }
+        providerDirectoryService.upsert(registered);
+        return registered;
+    }
 
-        if (existsByEmail(registerRequest.getEmail())) {
-            throw new NameAlreadyBoundException("Email already exists");
+    /**
+     * Onboards many providers at once: passwords are hashed in parallel and users are inserted with batched,
+     * unordered bulk writes. Invalid or duplicate rows are reported and do not stop the rest of the batch.
+     */
+    public BulkRegisterResponse registerProviders(List<RegisterRequest> registerRequests) {
+        List<String> errors = new ArrayList<>();
+        List<RegisterRequest> validRequests = new ArrayList<>();
+        List<Integer> validRows = new ArrayList<>();
+
+        for (int i = 0; i < registerRequests.size(); i++) {
+            RegisterRequest registerRequest = registerRequests.get(i);
+            if (registerRequest.getRoles() == null || registerRequest.getRoles().isEmpty()) {
+                registerRequest.setRoles(Set.of(Role.PROVIDER));
+            }
+
+            // rows are not covered by @Valid on the controller, so run the same constraints here
+            Set<ConstraintViolation<RegisterRequest>> violations = validator.validate(registerRequest);
+            if (!violations.isEmpty()) {
+                errors.add(errorRow(i, registerRequest, violations.iterator().next().getMessage()));
+                continue;
+            }
+            try {
+                validateRegisterRequest(registerRequest);
+                validRequests.add(registerRequest);
+                validRows.add(i);
+            } catch (IllegalArgumentException e) {
+                errors.add(errorRow(i, registerRequest, e.getMessage()));
+            }
         }
 
-        if (!registerRequest.getRoles().contains(Role.PROVIDER) && registerRequest.getProfession() != null) {
-            throw new IllegalArgumentException("Only personnel can have a profession");
+        List<String> encodedPasswords = passwordEncoder.encodeAll(
+                validRequests.stream().map(RegisterRequest::getPassword).toList()
+        );
+        List<User> users = new ArrayList<>(validRequests.size());
+        for (int i = 0; i < validRequests.size(); i++) {
+            User user = mapRequestToUser(validRequests.get(i), encodedPasswords.get(i));
+            // bulk inserts do not write the generated id back, assign it here so the directory can index the user
+            user.setId(new ObjectId().toHexString());
+            users.add(user);
         }
 
-        if (registerRequest.getUsername().isBlank() || registerRequest.getEmail().isBlank()) {
-            throw new IllegalArgumentException("Username and email cannot be blank");
+        Map<Integer, String> failedInserts = userRepository.insertAllUnordered(users);
+
+        List<String> registeredUsernames = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            if (failedInserts.containsKey(i)) {
+                errors.add(errorRow(validRows.get(i), validRequests.get(i), duplicateMessage(failedInserts.get(i))));
+            } else {
+                registeredUsernames.add(users.get(i).getUsername());
+                providerDirectoryService.upsert(users.get(i));
+            }
         }
 
-        return userRepository.save(mapRequestToUser(registerRequest));
+        return new BulkRegisterResponse(
+                "Registered " + registeredUsernames.size() + " of " + registerRequests.size() + " users",
+                registerRequests.size(),
+                registeredUsernames,
+                errors
+        );
     }
 
     public User findByUsername(String username) {
@@ -50,15 +123,44 @@ public class AuthService {
     public boolean existsByUsername(String username) {
         return userRepository.findByUsername(username).isPresent();
     }
-    
+
     public boolean existsByEmail(String email) {
         return userRepository.findByEmail(email).isPresent();
     }
 
-    private User mapRequestToUser(RegisterRequest registerRequest) {
+    private void validateRegisterRequest(RegisterRequest registerRequest) {
+        boolean isProvider = registerRequest.getRoles() != null && registerRequest.getRoles().contains(Role.PROVIDER);
+        if (!isProvider && registerRequest.getProfession() != null) {
+            throw new IllegalArgumentException("Only personnel can have a profession");
+        }
+
+        if (registerRequest.getUsername() == null || registerRequest.getUsername().isBlank()
+                || registerRequest.getEmail() == null || registerRequest.getEmail().isBlank()) {
+            throw new IllegalArgumentException("Username and email cannot be blank");
+        }
+
+        if (registerRequest.getPassword() == null || registerRequest.getPassword().isBlank()) {
+            throw new IllegalArgumentException("Password cannot be empty");
+        }
+    }
+
+    // translate the unique index that was violated into the message the api already uses
+    private String duplicateMessage(String errorMessage) {
+        Matcher matcher = DUPLICATE_INDEX.matcher(String.valueOf(errorMessage));
+        if (matcher.find() && matcher.group(1).startsWith("email")) {
+            return "Email already exists";
+        }
+        return "Username already exists";
+    }
+
+    private String errorRow(int index, RegisterRequest registerRequest, String message) {
+        return "Row " + index + " (" + registerRequest.getUsername() + "): " + message;
+    }
+
+    private User mapRequestToUser(RegisterRequest registerRequest, String encodedPassword) {
         User user = new User(
                 registerRequest.getUsername(),
-                passwordEncoder.encode(registerRequest.getPassword()),
+                encodedPassword,
                 registerRequest.getEmail(),
                 registerRequest.getFirstName(),
                 registerRequest.getLastName(),
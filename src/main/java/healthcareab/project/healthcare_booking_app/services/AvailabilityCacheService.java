@@ -0,0 +1,206 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.utils.ExpiringCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Keeps the availabilities of a provider per day, so patients browsing the same provider's week are answered
+ * from memory. Days missing from the cache are read with one range query, and a day is dropped as soon as
+ * availability of that provider and day is created, changed, deleted, booked or cancelled.
+ * The cached availabilities are shared between requests and must not be modified by callers.
+ * The same per-day versions give ETags, so a poll for an unchanged range is answered without reading anything.
+ */
+@Service
+public class AvailabilityCacheService {
+    // invalidations bump the version of the key's stripe, a load that raced with one is not cached
+    private static final int VERSION_STRIPES = 1024;
+    // longer ranges are not versioned, summing their versions would cost more than it saves
+    private static final int MAX_VERSIONED_DAYS = 366;
+
+    private final ExpiringCache<String, List<Availability>> days;
+    private final AtomicLongArray stripeVersions = new AtomicLongArray(VERSION_STRIPES);
+    private final Duration cacheTtl;
+    private final int maxCachedDays;
+    private final Clock clock;
+    // ETags of another instance, or of this one before a restart, never match one issued now
+    private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    @Autowired
+    public AvailabilityCacheService(@Value("${availability.cacheSize:50000}") int cacheSize,
+                                    @Value("${availability.cacheSeconds:60}") long cacheSeconds,
+                                    @Value("${availability.cacheMaxDays:62}") int maxCachedDays) {
+        this(cacheSize, Duration.ofSeconds(cacheSeconds), maxCachedDays, Clock.systemUTC());
+    }
+
+    AvailabilityCacheService(int cacheSize, Duration cacheTtl, int maxCachedDays, Clock clock) {
+        this.days = new ExpiringCache<>(cacheSize, clock);
+        this.cacheTtl = cacheTtl;
+        this.maxCachedDays = maxCachedDays;
+        this.clock = clock;
+    }
+
+    /**
+     * The provider's availabilities from the first to the last day, both inclusive, sorted by date and start time.
+     * The loader reads an inclusive day range sorted the same way, it is called at most once.
+     * Ranges longer than the configured number of days are not cached and go straight to the loader.
+     */
+    public List<Availability> get(String providerId, LocalDate first, LocalDate last,
+                                  BiFunction<LocalDate, LocalDate, List<Availability>> loader) {
+        long dayCount = last.toEpochDay() - first.toEpochDay() + 1;
+        if (dayCount <= 0) {
+            return List.of();
+        }
+        if (dayCount > maxCachedDays) {
+            bypassed.increment();
+            return loader.apply(first, last);
+        }
+
+        List<List<Availability>> perDay = new ArrayList<>((int) dayCount);
+        LocalDate firstMissing = null;
+        LocalDate lastMissing = null;
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            List<Availability> cached = days.get(key(providerId, day));
+            perDay.add(cached);
+            if (cached != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                if (firstMissing == null) {
+                    firstMissing = day;
+                }
+                lastMissing = day;
+            }
+        }
+
+        if (firstMissing != null) {
+            load(providerId, first, firstMissing, lastMissing, perDay, loader);
+        }
+
+        List<Availability> availabilities = new ArrayList<>();
+        perDay.forEach(availabilities::addAll);
+        return availabilities;
+    }
+
+    /**
+     * Strong ETag for the provider's days from first to last, inclusive. It changes whenever one of the days
+     * is invalidated, and at least once per cache period, which bounds how long a change made on another instance
+     * goes unnoticed, the same as for the cached days. Anything else the response depends on goes in variant.
+     * Returns null for ranges too long to version.
+     */
+    public String etag(String providerId, LocalDate first, LocalDate last, Object... variant) {
+        long version = version(providerId, first, last);
+        if (version < 0) {
+            return null;
+        }
+        long period = clock.millis() / Math.max(1, cacheTtl.toMillis());
+        int request = Objects.hash(providerId, first, last, Arrays.hashCode(variant));
+        return "\"" + instanceId + "-" + Long.toString(period, 36) + "-" + Long.toString(version, 36)
+                + "-" + Integer.toHexString(request) + "\"";
+    }
+
+    /**
+     * Goes up whenever one of the provider's days from first to last is invalidated, -1 for ranges too long to version.
+     * Versions only go up, so their sum goes up whenever any one of them does.
+     */
+    public long version(String providerId, LocalDate first, LocalDate last) {
+        long dayCount = last.toEpochDay() - first.toEpochDay() + 1;
+        if (dayCount > MAX_VERSIONED_DAYS) {
+            return -1;
+        }
+        long version = 0;
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            version += stripeVersions.get(stripe(key(providerId, day)));
+        }
+        return version;
+    }
+
+    // called whenever availability of the provider on that day is created, changed, deleted, booked or cancelled
+    public void invalidate(String providerId, LocalDate date) {
+        String key = key(providerId, date);
+        stripeVersions.incrementAndGet(stripe(key));
+        days.remove(key);
+        invalidations.increment();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cachedDays", days.size());
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("loads", loads.sum());
+        metrics.put("evictions", days.evictions());
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("bypassed", bypassed.sum());
+        return metrics;
+    }
+
+    // reads the days from the first to the last missing one with a single query and fills the gaps in perDay
+    private void load(String providerId, LocalDate first, LocalDate firstMissing, LocalDate lastMissing,
+                      List<List<Availability>> perDay, BiFunction<LocalDate, LocalDate, List<Availability>> loader) {
+        int offset = (int) (firstMissing.toEpochDay() - first.toEpochDay());
+        int count = (int) (lastMissing.toEpochDay() - firstMissing.toEpochDay() + 1);
+
+        long[] versions = new long[count];
+        for (int i = 0; i < count; i++) {
+            versions[i] = stripeVersions.get(stripe(key(providerId, firstMissing.plusDays(i))));
+        }
+
+        loads.increment();
+        Map<LocalDate, List<Availability>> loaded = new HashMap<>();
+        for (Availability availability : loader.apply(firstMissing, lastMissing)) {
+            loaded.computeIfAbsent(availability.getDate(), day -> new ArrayList<>()).add(availability);
+        }
+
+        for (int i = 0; i < count; i++) {
+            LocalDate day = firstMissing.plusDays(i);
+            List<Availability> fresh = List.copyOf(loaded.getOrDefault(day, List.of()));
+            if (perDay.get(offset + i) != null) {
+                // was cached, the loaded copy of this day is not needed
+                continue;
+            }
+            perDay.set(offset + i, fresh);
+
+            // a change that happened while loading may not be in what was read, so only cache an undisturbed load
+            String key = key(providerId, day);
+            int stripe = stripe(key);
+            if (stripeVersions.get(stripe) == versions[i]) {
+                days.put(key, fresh, clock.instant().plus(cacheTtl));
+                if (stripeVersions.get(stripe) != versions[i]) {
+                    days.remove(key);
+                }
+            }
+        }
+    }
+
+    private static String key(String providerId, LocalDate date) {
+        return providerId + "|" + date.toEpochDay();
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), VERSION_STRIPES);
+    }
+}
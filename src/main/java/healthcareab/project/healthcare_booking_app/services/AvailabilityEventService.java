@@ -0,0 +1,320 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.dto.AvailabilityEvent;
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.exceptions.ServiceUnavailableException;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AvailabilityEventType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process event bus that pushes availability and booking changes to server-sent event streams.
+ * Clients subscribe to the providers they show, and every write to one of those providers is queued for them.
+ * Open streams are async requests, so an idle stream holds no thread. Events are written by a small pool,
+ * each stream has a bounded buffer, and a stream that falls so far behind that its buffer fills up is closed;
+ * the browser reconnects and reloads what it shows.
+ * A write still blocked after the write timeout, e.g. to a client that stopped reading, closes its stream too,
+ * and a spare thread takes over the other streams until the stuck write returns.
+ */
+@Service
+public class AvailabilityEventService {
+    public static final int MAX_PROVIDERS_PER_STREAM = 50;
+    // marks a heartbeat in a stream's buffer, written as an sse comment so idle connections are not cut
+    private static final AvailabilityEvent HEARTBEAT = new AvailabilityEvent(0, null, null, null, null, null);
+    private static final long RECONNECT_MILLIS = 3000;
+    // at most this many spare threads stand in for writes stuck on clients that stopped reading
+    private static final int MAX_SPARE_WRITERS = 32;
+
+    // write states of a stream, a stream closed while it is written to is completed by the writing thread
+    private static final int IDLE = 0;
+    private static final int WRITING = 1;
+    private static final int CLOSING = 2;
+    private static final int STALLED = 3;
+    private static final int CLOSED = 4;
+
+    private final Map<String, Set<Subscription>> subscriptionsByProvider = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Subscription> writing = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger stalledWrites = new AtomicInteger();
+    private final ThreadPoolExecutor dispatcher;
+    private final ScheduledExecutorService heartbeats;
+    private final int dispatchThreads;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final Duration streamTimeout;
+    private final long writeTimeoutNanos;
+
+    @Autowired
+    public AvailabilityEventService(@Value("${availability.events.dispatchThreads:2}") int dispatchThreads,
+                                    @Value("${availability.events.bufferSize:256}") int bufferSize,
+                                    @Value("${availability.events.maxSubscribers:10000}") int maxSubscribers,
+                                    @Value("${availability.events.timeoutMinutes:30}") long timeoutMinutes,
+                                    @Value("${availability.events.heartbeatSeconds:25}") long heartbeatSeconds,
+                                    @Value("${availability.events.writeTimeoutSeconds:10}") long writeTimeoutSeconds) {
+        this(dispatchThreads, bufferSize, maxSubscribers, Duration.ofMinutes(timeoutMinutes),
+                Duration.ofSeconds(heartbeatSeconds), Duration.ofSeconds(writeTimeoutSeconds));
+    }
+
+    AvailabilityEventService(int dispatchThreads, int bufferSize, int maxSubscribers, Duration streamTimeout,
+                             Duration heartbeatInterval, Duration writeTimeout) {
+        this.dispatchThreads = dispatchThreads;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.streamTimeout = streamTimeout;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // a stream is queued at most once at a time, so the queue never holds more than one task per subscriber
+        this.dispatcher = new ThreadPoolExecutor(
+                dispatchThreads,
+                dispatchThreads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "availability-events-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.heartbeats = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "availability-events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeatMillis = heartbeatInterval.toMillis();
+        this.heartbeats.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        long checkMillis = Math.max(1, writeTimeout.toMillis() / 2);
+        this.heartbeats.scheduleAtFixedRate(this::closeStalledStreams, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // opens a stream of the changes to the given providers
+    public SseEmitter subscribe(Collection<String> providerIds) {
+        return subscribe(providerIds, new SseEmitter(streamTimeout.toMillis()));
+    }
+
+    SseEmitter subscribe(Collection<String> providerIds, SseEmitter emitter) {
+        Set<String> uniqueIds = new LinkedHashSet<>();
+        for (String providerId : providerIds) {
+            if (providerId != null && !providerId.isBlank()) {
+                uniqueIds.add(providerId.trim());
+            }
+        }
+        if (uniqueIds.isEmpty() || uniqueIds.size() > MAX_PROVIDERS_PER_STREAM) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_PROVIDERS_PER_STREAM + " providers can be followed per stream");
+        }
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new ServiceUnavailableException("Too many open event streams, try again later");
+        }
+
+        Subscription subscription = new Subscription(uniqueIds, emitter, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(() -> unsubscribe(subscription));
+        emitter.onError(failure -> unsubscribe(subscription));
+
+        subscriptions.add(subscription);
+        for (String providerId : uniqueIds) {
+            // added inside compute, so an unsubscribe dropping the provider's last follower cannot lose it
+            subscriptionsByProvider.compute(providerId, (id, followers) -> {
+                Set<Subscription> updated = followers == null ? ConcurrentHashMap.newKeySet() : followers;
+                updated.add(subscription);
+                return updated;
+            });
+        }
+        try {
+            emitter.send(SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("subscribed"));
+        } catch (IOException e) {
+            unsubscribe(subscription);
+        }
+        return emitter;
+    }
+
+    /**
+     * Queues the event for every stream following the provider. Never blocks the writer that published it:
+     * a stream whose buffer is full is closed instead of waited for.
+     */
+    public void publish(AvailabilityEventType type, String providerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        Set<Subscription> followers = subscriptionsByProvider.get(providerId);
+        if (followers == null || followers.isEmpty()) {
+            return;
+        }
+        AvailabilityEvent event = new AvailabilityEvent(sequence.incrementAndGet(), type, providerId, date, startTime, endTime);
+        for (Subscription subscription : followers) {
+            offer(subscription, event);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        dispatcher.shutdownNow();
+        subscriptions.forEach(this::complete);
+    }
+
+    void sendHeartbeats() {
+        subscriptions.forEach(subscription -> offer(subscription, HEARTBEAT));
+    }
+
+    private void offer(Subscription subscription, AvailabilityEvent event) {
+        if (subscription.closed.get()) {
+            return;
+        }
+        if (!subscription.buffer.offer(event)) {
+            // the client reads slower than changes happen, it reconnects and starts from a fresh state
+            unsubscribe(subscription);
+            complete(subscription);
+            return;
+        }
+        if (subscription.scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscription));
+        }
+    }
+
+    // writes everything buffered for one stream, only one thread drains a stream at a time so events stay in order
+    private void drain(Subscription subscription) {
+        try {
+            AvailabilityEvent event;
+            while (!subscription.closed.get() && (event = subscription.buffer.poll()) != null) {
+                if (event == HEARTBEAT) {
+                    send(subscription, SseEmitter.event().comment("heartbeat"));
+                } else {
+                    send(subscription, SseEmitter.event()
+                            .id(Long.toString(event.getId()))
+                            .name(event.getType().name())
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client went away, or the stream was completed while writing
+            unsubscribe(subscription);
+        } finally {
+            subscription.scheduled.set(false);
+        }
+        // an event offered after the loop ended but before the flag was cleared would be left behind otherwise
+        if (!subscription.closed.get() && !subscription.buffer.isEmpty()
+                && subscription.scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscription));
+        }
+    }
+
+    private void send(Subscription subscription, SseEmitter.SseEventBuilder event) throws IOException {
+        subscription.writeStartedAt = System.nanoTime();
+        if (!subscription.writeState.compareAndSet(IDLE, WRITING)) {
+            return;
+        }
+        writing.add(subscription);
+        try {
+            subscription.emitter.send(event);
+        } finally {
+            writing.remove(subscription);
+            if (!subscription.writeState.compareAndSet(WRITING, IDLE)) {
+                // the stream was closed while this write was in progress
+                if (subscription.writeState.getAndSet(CLOSED) == STALLED) {
+                    stalledWrites.decrementAndGet();
+                    resizeDispatcher();
+                }
+                subscription.emitter.complete();
+            }
+        }
+    }
+
+    // the emitter is locked while a write is in progress, so a stream being written to is completed by its writer
+    private void complete(Subscription subscription) {
+        while (true) {
+            int state = subscription.writeState.get();
+            if (state == IDLE && subscription.writeState.compareAndSet(IDLE, CLOSED)) {
+                subscription.emitter.complete();
+                return;
+            }
+            if (state == WRITING && subscription.writeState.compareAndSet(WRITING, CLOSING)) {
+                return;
+            }
+            if (state >= CLOSING) {
+                return;
+            }
+        }
+    }
+
+    // a write to a client that stopped reading blocks until the connection times out, which would hold a
+    // dispatch thread and starve every other stream, so the stream is closed and a spare thread takes over
+    void closeStalledStreams() {
+        long now = System.nanoTime();
+        for (Subscription subscription : writing) {
+            if (now - subscription.writeStartedAt > writeTimeoutNanos
+                    && (subscription.writeState.compareAndSet(WRITING, STALLED)
+                    || subscription.writeState.compareAndSet(CLOSING, STALLED))) {
+                unsubscribe(subscription);
+                stalledWrites.incrementAndGet();
+                resizeDispatcher();
+            }
+        }
+    }
+
+    private synchronized void resizeDispatcher() {
+        int size = dispatchThreads + Math.min(stalledWrites.get(), MAX_SPARE_WRITERS);
+        // the core size may never exceed the maximum, so the order depends on whether the pool grows
+        if (size >= dispatcher.getMaximumPoolSize()) {
+            dispatcher.setMaximumPoolSize(size);
+            dispatcher.setCorePoolSize(size);
+        } else {
+            dispatcher.setCorePoolSize(size);
+            dispatcher.setMaximumPoolSize(size);
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        if (!subscription.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriptions.remove(subscription);
+        for (String providerId : subscription.providerIds) {
+            subscriptionsByProvider.computeIfPresent(providerId, (id, followers) -> {
+                followers.remove(subscription);
+                return followers.isEmpty() ? null : followers;
+            });
+        }
+        subscription.buffer.clear();
+    }
+
+    // compared by identity, two streams following the same providers are still different subscriptions
+    private static final class Subscription {
+        private final Set<String> providerIds;
+        private final SseEmitter emitter;
+        private final BlockingQueue<AvailabilityEvent> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicInteger writeState = new AtomicInteger(IDLE);
+        private volatile long writeStartedAt;
+
+        private Subscription(Set<String> providerIds, SseEmitter emitter, BlockingQueue<AvailabilityEvent> buffer) {
+            this.providerIds = providerIds;
+            this.emitter = emitter;
+            this.buffer = buffer;
+        }
+    }
+}
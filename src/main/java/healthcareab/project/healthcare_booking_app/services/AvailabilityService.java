@@ -1,48 +1,71 @@
 package healthcareab.project.healthcare_booking_app.services;
 
+import healthcareab.project.healthcare_booking_app.dto.FreeSlotResponse;
+import healthcareab.project.healthcare_booking_app.dto.PageResponse;
 import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
 import healthcareab.project.healthcare_booking_app.exceptions.NotFoundException;
 import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
 import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.AvailabilityTemplate;
 import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AvailabilityEventType;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.Comparator;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 @Service
 public class AvailabilityService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+    // a template is expanded day by day on every read of its range, so it may not run forever
+    private static final int MAX_TEMPLATE_DAYS = 366;
+    
     private final AvailabilityRepository availabilityRepository;
     private final UserService userService;
+    private final SlotScheduleService slotScheduleService;
+    private final AvailabilityCacheService availabilityCacheService;
+    private final AvailabilityEventService availabilityEventService;
+    private final AvailabilityTemplateService availabilityTemplateService;
+    // database reads in progress, identical concurrent reads wait for the first one instead of querying again
+    private final Map<String, CompletableFuture<List<Availability>>> inFlightReads = new ConcurrentHashMap<>();
+    
+    private final LongAdder databaseReads = new LongAdder();
+    private final LongAdder coalescedReads = new LongAdder();
     
-    public AvailabilityService(AvailabilityRepository availabilityRepository, UserService userService) {
+    public AvailabilityService(AvailabilityRepository availabilityRepository, UserService userService,
+                               SlotScheduleService slotScheduleService, AvailabilityCacheService availabilityCacheService,
+                               AvailabilityEventService availabilityEventService,
+                               AvailabilityTemplateService availabilityTemplateService) {
         this.availabilityRepository = availabilityRepository;
         this.userService = userService;
+        this.slotScheduleService = slotScheduleService;
+        this.availabilityCacheService = availabilityCacheService;
+        this.availabilityEventService = availabilityEventService;
+        this.availabilityTemplateService = availabilityTemplateService;
     }
     
     public Availability createAvailability(LocalDate date, LocalTime startTime, LocalTime endTime) {
         userService.assertCurrentUserAuthenticated();
         User user = userService.getCurrentUser();
         
-        if(!startTime.isBefore(endTime)) {
-            throw new IllegalArgumentException("Start time must be before end time");
-        }
-        
-        LocalTime minTime = LocalTime.of(8, 0);
-        LocalTime maxTime = LocalTime.of(17, 0);
-        
-        if(startTime.isBefore(minTime)) {
-            throw new IllegalArgumentException("Start time must be at or after 08:00");
-        }
-        
-        if(endTime.isAfter(maxTime)) {
-            throw new IllegalArgumentException("End time must be at or before 17:00");
-        }
+        validateTimes(startTime, endTime);
+        assertNoOverlap(user.getId(), date, startTime, endTime, null);
         
         Availability availability = new Availability();
         availability.setProviderId(user.getId());
@@ -51,23 +74,204 @@ public class AvailabilityService {
         availability.setEndTime(endTime);
         availability.setIsAvailable(true);
         
-        return availabilityRepository.save(availability);
+        Availability saved = availabilityRepository.save(availability);
+        availabilityChanged(saved.getProviderId(), saved.getDate());
+        return saved;
+    }
+    
+    /**
+     * Adds a weekly schedule, e.g. Monday to Friday 08:00-12:00 from validFrom to validUntil (both inclusive).
+     * It is stored as one document and shows up in the provider's availability like single blocks do.
+     */
+    public AvailabilityTemplate createTemplate(Set<DayOfWeek> daysOfWeek, LocalTime startTime, LocalTime endTime,
+                                               LocalDate validFrom, LocalDate validUntil) {
+        userService.assertCurrentUserAuthenticated();
+        User user = userService.getCurrentUser();
+        
+        validateTimes(startTime, endTime);
+        
+        if (daysOfWeek == null || daysOfWeek.isEmpty()) {
+            throw new IllegalArgumentException("At least one day of the week is required");
+        }
+        
+        if (validUntil.isBefore(validFrom)) {
+            throw new IllegalArgumentException("Valid until must not be before valid from");
+        }
+        
+        if (ChronoUnit.DAYS.between(validFrom, validUntil) >= MAX_TEMPLATE_DAYS) {
+            throw new IllegalArgumentException("A template can cover at most " + MAX_TEMPLATE_DAYS + " days");
+        }
+        
+        AvailabilityTemplate template = new AvailabilityTemplate();
+        template.setProviderId(user.getId());
+        template.setDaysOfWeek(Set.copyOf(daysOfWeek));
+        template.setStartTime(startTime);
+        template.setEndTime(endTime);
+        template.setValidFrom(validFrom);
+        template.setValidUntil(validUntil);
+        
+        boolean overlapsStored = availabilityRepository.findOverlapping(user.getId(), validFrom, validUntil, startTime, endTime)
+                .stream()
+                .anyMatch(availability -> daysOfWeek.contains(availability.getDate().getDayOfWeek()));
+        if (overlapsStored || availabilityTemplateService.overlapsTemplate(template)) {
+            throw new IllegalArgumentException("Template overlaps an existing availability");
+        }
+        
+        AvailabilityTemplate saved = availabilityTemplateService.save(template);
+        templateChanged(saved);
+        return saved;
+    }
+    
+    public List<AvailabilityTemplate> getTemplatesForCurrentProvider() {
+        userService.assertCurrentUserAuthenticated();
+        User currentUser = userService.getCurrentUser();
+        return availabilityTemplateService.findByProviderId(currentUser.getId());
+    }
+    
+    // days already stored from the template stay, they may have been booked
+    public void deleteTemplate(String id) {
+        userService.assertCurrentUserAuthenticated();
+        User currentUser = userService.getCurrentUser();
+        
+        AvailabilityTemplate template = availabilityTemplateService.findById(id)
+                .orElseThrow(() -> new NotFoundException("Availability template not found"));
+        
+        boolean isAdmin = currentUser.getRoles().contains(Role.ADMIN);
+        boolean isProvider = template.getProviderId().equals(currentUser.getId());
+        
+        if (!isAdmin && !isProvider) {
+            throw new UnauthorizedException("You can only delete your own availability templates");
+        }
+        
+        availabilityTemplateService.delete(template);
+        templateChanged(template);
+    }
+    
+    /**
+     * Stores the provider's template occurrences on that day, so a booking can claim them like any other block.
+     * Nothing visible changes, the stored occurrences keep the ids they were shown with.
+     */
+    public void materializeTemplates(String providerId, LocalDate date) {
+        availabilityTemplateService.materialize(providerId, date);
     }
     
     public List<Availability> getAvailabilitiesForProvider(String providerId, LocalDate from, LocalDate to) {
-        List<Availability> availabilities = availabilityRepository.findByProviderIdAndDateBetween(providerId, from, to);
+        // Between leaves out from and to themselves, so the days answered are the ones in between.
+        // Days that are not cached are sorted first by date, then by startTime in the query
+        return availabilityCacheService.get(providerId, from.plusDays(1), to.minusDays(1),
+                (first, last) -> readCoalesced(providerId, first, last));
+    }
+    
+    public Map<String, Object> getMetrics() {
+        long database = databaseReads.sum();
+        long coalesced = coalescedReads.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("inFlightReads", inFlightReads.size());
+        metrics.put("databaseReads", database);
+        metrics.put("coalescedReads", coalesced);
+        metrics.put("coalescingRatio", database + coalesced == 0 ? 0.0 : (double) coalesced / (database + coalesced));
+        return metrics;
+    }
+    
+    /**
+     * Reads the provider's days from first to last, both inclusive. When the same range is already being read,
+     * waits for that read and shares its result. The range version is part of the key, so a read that started
+     * before a write to one of the days is never shared with a caller that came after the write.
+     */
+    private List<Availability> readCoalesced(String providerId, LocalDate first, LocalDate last) {
+        long version = availabilityCacheService.version(providerId, first, last);
+        if (version < 0) {
+            databaseReads.increment();
+            return read(providerId, first, last);
+        }
+        
+        String key = providerId + "|" + first + "|" + last + "|" + version;
+        CompletableFuture<List<Availability>> flight = new CompletableFuture<>();
+        CompletableFuture<List<Availability>> running = inFlightReads.putIfAbsent(key, flight);
+        if (running != null) {
+            coalescedReads.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
         
-        // Sort first by date, then by startTime
-        return availabilities.stream()
-                .sorted(Comparator.comparing(Availability::getDate)
-                        .thenComparing(Availability::getStartTime))
-                .collect(Collectors.toList());
+        databaseReads.increment();
+        try {
+            // shared by every caller that joined, so it must not be changed by any of them
+            List<Availability> availabilities = List.copyOf(read(providerId, first, last));
+            flight.complete(availabilities);
+            return availabilities;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightReads.remove(key, flight);
+        }
+    }
+    
+    // Between leaves out both ends, so widen the range by a day on each side.
+    // Template occurrences are expanded for exactly the days read, so only those days are ever built
+    private List<Availability> read(String providerId, LocalDate first, LocalDate last) {
+        return availabilityTemplateService.withTemplates(providerId, first, last,
+                availabilityRepository.findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(
+                        providerId, first.minusDays(1), last.plusDays(1)));
+    }
+    
+    // changes whenever any day of the range changes, e.g. for answering a poll with 304 Not Modified
+    public String getAvailabilityEtag(String providerId, LocalDate from, LocalDate to, Object... variant) {
+        return availabilityCacheService.etag(providerId, from.plusDays(1), to.minusDays(1), variant);
+    }
+    
+    public String getAvailabilityEtagForCurrentProvider(LocalDate from, LocalDate to, Object... variant) {
+        return getAvailabilityEtag(userService.getCurrentProviderId(), from, to, variant);
+    }
+    
+    public String getFreeSlotsEtag(String providerId, LocalDate date) {
+        return availabilityCacheService.etag(providerId, date, date, "free");
+    }
+    
+    /**
+     * Returns one page of the provider's availabilities, sorted by date and start time.
+     * The page's nextCursor is passed back to get the following page, it is null on the last page.
+     */
+    public PageResponse<Availability> getAvailabilityPageForProvider(String providerId, LocalDate from, LocalDate to,
+                                                                     String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        KeysetCursor after = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+        
+        // read one extra item to know whether there is a next page
+        List<Availability> stored = availabilityRepository.findPageByProviderIdAndDateBetween(
+                providerId, from, to, after, pageSize + 1);
+        // template occurrences are only expanded for the days this page can reach: from the cursor's day, and up
+        // to the day of the extra item when the stored availabilities already fill the page
+        LocalDate firstDay = after != null && after.getDate().isAfter(from) ? after.getDate() : from.plusDays(1);
+        LocalDate lastDay = stored.size() > pageSize ? stored.get(pageSize).getDate() : to.minusDays(1);
+        List<Availability> availabilities = availabilityTemplateService.pageWithTemplates(
+                providerId, firstDay, lastDay, stored, after, pageSize + 1);
+        if (availabilities.size() <= pageSize) {
+            return new PageResponse<>(availabilities, null);
+        }
+        
+        List<Availability> page = availabilities.subList(0, pageSize);
+        Availability last = page.get(pageSize - 1);
+        String nextCursor = new KeysetCursor(last.getDate(), last.getStartTime(), last.getId()).encode();
+        return new PageResponse<>(page, nextCursor);
     }
     
     public Availability updateAvailability(String id, LocalDate date, LocalTime startTime, LocalTime endTime) {
         userService.assertCurrentUserAuthenticated();
         User currentUser = userService.getCurrentUser();
         
+        // an occurrence of a template is stored first, from then on it is edited like any other block
+        availabilityTemplateService.materializeOccurrence(id);
         Availability availability = availabilityRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Availability not found"));
         
@@ -76,35 +280,27 @@ public class AvailabilityService {
             throw new UnauthorizedException("You can only update your own availability");
         }
         
-        // Validate startTime < endTime
-        if (!startTime.isBefore(endTime)) {
-            throw new IllegalArgumentException("Start time must be before end time");
-        }
-        
-        // Validate time constraints (8:00-17:00)
-        LocalTime minTime = LocalTime.of(8, 0);
-        LocalTime maxTime = LocalTime.of(17, 0);
-        
-        if (startTime.isBefore(minTime)) {
-            throw new IllegalArgumentException("Start time must be at or after 08:00");
-        }
-        
-        if (endTime.isAfter(maxTime)) {
-            throw new IllegalArgumentException("End time must be at or before 17:00");
-        }
+        validateTimes(startTime, endTime);
+        assertNoOverlap(currentUser.getId(), date, startTime, endTime, id);
         
         // Update the availability
+        LocalDate previousDate = availability.getDate();
         availability.setDate(date);
         availability.setStartTime(startTime);
         availability.setEndTime(endTime);
         
-        return availabilityRepository.save(availability);
+        Availability saved = availabilityRepository.save(availability);
+        availabilityChanged(saved.getProviderId(), previousDate);
+        availabilityChanged(saved.getProviderId(), saved.getDate());
+        return saved;
     }
     
     public void deleteAvailability(String id) {
         userService.assertCurrentUserAuthenticated();
         User currentUser = userService.getCurrentUser();
         
+        // stored and then deleted, so the template is not expanded on that day again
+        availabilityTemplateService.materializeOccurrence(id);
         Availability availability = availabilityRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Availability not found"));
         
@@ -117,6 +313,35 @@ public class AvailabilityService {
         }
         
         availabilityRepository.delete(availability);
+        availabilityChanged(availability.getProviderId(), availability.getDate());
+    }
+    
+    // must be called after every write to a provider's availability on a day, including bookings
+    public void availabilityChanged(String providerId, LocalDate date) {
+        slotScheduleService.invalidate(providerId, date);
+        availabilityCacheService.invalidate(providerId, date);
+        availabilityEventService.publish(AvailabilityEventType.AVAILABILITY_CHANGED, providerId, date, null, null);
+    }
+    
+    // a template can touch a year of days, so subscribers get one event instead of one per day
+    private void templateChanged(AvailabilityTemplate template) {
+        for (LocalDate day = template.getValidFrom(); !day.isAfter(template.getValidUntil()); day = day.plusDays(1)) {
+            if (template.getDaysOfWeek().contains(day.getDayOfWeek())) {
+                slotScheduleService.invalidate(template.getProviderId(), day);
+                availabilityCacheService.invalidate(template.getProviderId(), day);
+            }
+        }
+        availabilityEventService.publish(AvailabilityEventType.AVAILABILITY_TEMPLATE_CHANGED,
+                template.getProviderId(), null, null, null);
+    }
+    
+    // server-sent events for every change to the providers' availability, instead of polling /all
+    public SseEmitter subscribeToChanges(List<String> providerIds) {
+        return availabilityEventService.subscribe(providerIds);
+    }
+    
+    public List<FreeSlotResponse> getFreeSlots(String providerId, LocalDate date) {
+        return slotScheduleService.getFreeRanges(providerId, date);
     }
     // helper method for getting availbility in frontend
     public List<Availability> getAvailabilitiesForCurrentProvider(LocalDate from, LocalDate to) {
@@ -125,8 +350,29 @@ public class AvailabilityService {
         return getAvailabilitiesForProvider(currentUser.getId(), from, to);
     }
     
+    // lazily read from a database cursor, the caller has to close the stream
+    // Between leaves out from and to themselves, so template occurrences are added for the days in between
+    public Stream<Availability> streamAvailabilitiesForProvider(String providerId, LocalDate from, LocalDate to) {
+        return availabilityTemplateService.streamWithTemplates(providerId, from.plusDays(1), to.minusDays(1),
+                availabilityRepository.streamByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(providerId, from, to));
+    }
+    
+    public Stream<Availability> streamAvailabilitiesForCurrentProvider(LocalDate from, LocalDate to) {
+        userService.assertCurrentUserAuthenticated();
+        User currentUser = userService.getCurrentUser();
+        return streamAvailabilitiesForProvider(currentUser.getId(), from, to);
+    }
+    
+    public PageResponse<Availability> getAvailabilityPageForCurrentProvider(LocalDate from, LocalDate to,
+                                                                            String cursor, Integer limit) {
+        userService.assertCurrentUserAuthenticated();
+        User currentUser = userService.getCurrentUser();
+        return getAvailabilityPageForProvider(currentUser.getId(), from, to, cursor, limit);
+    }
+    
+    // answered from the in-memory slot bitmap of the provider's day, only free availability counts
     public boolean isTimeAvailable(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
-        return availabilityRepository.isTimeAvailable(
+        return slotScheduleService.isFree(
                 providerId,
                 date,
                 startTime,
@@ -134,6 +380,37 @@ public class AvailabilityService {
         );
     }
     
+    // Validate startTime < endTime and time constraints (8:00-17:00)
+    /**
+     * Blocks of a provider never overlap, free or booked. Booking splits a block into pieces whose ids are derived
+     * from the block and the range (see SlotSplit), which is only unique as long as no two blocks share time.
+     */
+    private void assertNoOverlap(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime, String ignoredId) {
+        boolean overlapsStored = availabilityRepository.findOverlapping(providerId, date, date, startTime, endTime)
+                .stream()
+                .anyMatch(availability -> !availability.getId().equals(ignoredId));
+        if (overlapsStored || availabilityTemplateService.overlapsVirtually(providerId, date, startTime, endTime)) {
+            throw new IllegalArgumentException("Availability overlaps an existing availability");
+        }
+    }
+    
+    private void validateTimes(LocalTime startTime, LocalTime endTime) {
+        if (!startTime.isBefore(endTime)) {
+            throw new IllegalArgumentException("Start time must be before end time");
+        }
+        
+        LocalTime minTime = LocalTime.of(8, 0);
+        LocalTime maxTime = LocalTime.of(17, 0);
+        
+        if (startTime.isBefore(minTime)) {
+            throw new IllegalArgumentException("Start time must be at or after 08:00");
+        }
+        
+        if (endTime.isAfter(maxTime)) {
+            throw new IllegalArgumentException("End time must be at or before 17:00");
+        }
+    }
+    
     public Availability getAvailableSlot(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
         return availabilityRepository.findAvailableSlot(providerId, date, startTime, endTime)
                 .orElseThrow(() -> new NotFoundException("Availability not found"));
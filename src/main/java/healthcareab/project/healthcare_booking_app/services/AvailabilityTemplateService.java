@@ -0,0 +1,284 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.AvailabilityTemplate;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityTemplateRepository;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Expands recurring availability templates into the days that are read, instead of storing one document per day.
+ * An occurrence only becomes a stored availability document when it is booked, edited or deleted. It is stored
+ * under the same id it is shown with, so a client never notices the difference, and the day is marked on the
+ * template so it is not expanded again.
+ */
+@Service
+public class AvailabilityTemplateService {
+    private static final Comparator<Availability> BY_DATE_AND_START = Comparator
+            .comparing(Availability::getDate)
+            .thenComparing(Availability::getStartTime);
+    // the order of keyset pages, with ties broken by id the way mongo sorts them
+    private static final Comparator<Availability> PAGE_ORDER = BY_DATE_AND_START
+            .thenComparing(Availability::getId, KeysetCursor.ID_ORDER);
+    private static final String OCCURRENCE_SEPARATOR = "_";
+
+    private final AvailabilityTemplateRepository availabilityTemplateRepository;
+    private final AvailabilityRepository availabilityRepository;
+
+    public AvailabilityTemplateService(AvailabilityTemplateRepository availabilityTemplateRepository,
+                                       AvailabilityRepository availabilityRepository) {
+        this.availabilityTemplateRepository = availabilityTemplateRepository;
+        this.availabilityRepository = availabilityRepository;
+    }
+
+    // id of a template's occurrence on a day, e.g. "65f0c..._20260202", both while it is virtual and once stored
+    public static String occurrenceId(String templateId, LocalDate date) {
+        return templateId + OCCURRENCE_SEPARATOR + date.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    /**
+     * Adds the occurrences of the provider's templates from first to last (both inclusive) to the stored
+     * availabilities of those days, sorted by date and start time. Days a template has already been stored for
+     * are left to the stored documents, they may since have been booked, moved or deleted.
+     */
+    public List<Availability> withTemplates(String providerId, LocalDate first, LocalDate last, List<Availability> stored) {
+        List<Availability> occurrences = occurrences(providerId, first, last);
+        if (occurrences.isEmpty()) {
+            return stored;
+        }
+
+        // an occurrence stored moments ago may not have been marked on its template yet
+        Set<String> storedOccurrences = new HashSet<>();
+        for (Availability availability : stored) {
+            if (availability.getTemplateId() != null) {
+                storedOccurrences.add(occurrenceId(availability.getTemplateId(), availability.getDate()));
+            }
+        }
+
+        List<Availability> merged = new ArrayList<>(stored.size() + occurrences.size());
+        merged.addAll(stored);
+        for (Availability occurrence : occurrences) {
+            if (!storedOccurrences.contains(occurrence.getId())) {
+                merged.add(occurrence);
+            }
+        }
+        merged.sort(BY_DATE_AND_START);
+        return merged;
+    }
+
+    /**
+     * Like {@link #withTemplates} for one keyset page: merges the occurrences from first to last that sort after
+     * the cursor into a page of stored availabilities read from the same cursor, and keeps the first limit of them.
+     * Stored and virtual availabilities share one order, so a cursor taken from either continues correctly.
+     */
+    public List<Availability> pageWithTemplates(String providerId, LocalDate first, LocalDate last,
+                                                List<Availability> stored, KeysetCursor after, int limit) {
+        if (first.isAfter(last)) {
+            return stored;
+        }
+        List<Availability> merged = new ArrayList<>(withTemplates(providerId, first, last, stored));
+        if (after != null) {
+            merged.removeIf(availability ->
+                    !after.isBefore(availability.getDate(), availability.getStartTime(), availability.getId()));
+        }
+        merged.sort(PAGE_ORDER);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    /**
+     * Like {@link #withTemplates} for a stream sorted by date and start time. The occurrences are built up front,
+     * the stored availabilities are still read lazily and the stream is closed together with the stored one.
+     */
+    public Stream<Availability> streamWithTemplates(String providerId, LocalDate first, LocalDate last,
+                                                    Stream<Availability> stored) {
+        if (first.isAfter(last)) {
+            return stored;
+        }
+        List<Availability> occurrences = occurrences(providerId, first, last);
+        if (occurrences.isEmpty()) {
+            return stored;
+        }
+        occurrences.sort(PAGE_ORDER);
+        Iterator<Availability> merged = new MergingIterator(stored.iterator(), occurrences.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(stored::close);
+    }
+
+    // the occurrences from first to last that only exist in a template so far
+    public List<Availability> occurrences(String providerId, LocalDate first, LocalDate last) {
+        List<Availability> occurrences = new ArrayList<>();
+        for (AvailabilityTemplate template : availabilityTemplateRepository.findOverlapping(providerId, first, last)) {
+            LocalDate from = first.isBefore(template.getValidFrom()) ? template.getValidFrom() : first;
+            LocalDate to = last.isAfter(template.getValidUntil()) ? template.getValidUntil() : last;
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                if (template.isVirtualOn(day)) {
+                    occurrences.add(occurrence(template, day));
+                }
+            }
+        }
+        return occurrences;
+    }
+
+    // true if a virtual occurrence covers the whole range
+    public boolean coversVirtually(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        for (Availability occurrence : occurrences(providerId, date, date)) {
+            if (!occurrence.getStartTime().isAfter(startTime) && !occurrence.getEndTime().isBefore(endTime)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // true if a virtual occurrence shares time with the range
+    public boolean overlapsVirtually(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        for (Availability occurrence : occurrences(providerId, date, date)) {
+            if (occurrence.getStartTime().isBefore(endTime) && startTime.isBefore(occurrence.getEndTime())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // true if another template of the provider has a virtual occurrence on a day of the new one that shares time with it
+    public boolean overlapsTemplate(AvailabilityTemplate template) {
+        for (AvailabilityTemplate other : availabilityTemplateRepository.findOverlapping(
+                template.getProviderId(), template.getValidFrom(), template.getValidUntil())) {
+            if (!other.getStartTime().isBefore(template.getEndTime()) || !template.getStartTime().isBefore(other.getEndTime())) {
+                continue;
+            }
+            LocalDate from = template.getValidFrom().isBefore(other.getValidFrom()) ? other.getValidFrom() : template.getValidFrom();
+            LocalDate to = template.getValidUntil().isAfter(other.getValidUntil()) ? other.getValidUntil() : template.getValidUntil();
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                if (template.getDaysOfWeek().contains(day.getDayOfWeek()) && other.isVirtualOn(day)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores every virtual occurrence of the provider on that day, so it can be claimed and split like any other
+     * availability. Safe to call concurrently, an occurrence is only ever stored once.
+     */
+    public void materialize(String providerId, LocalDate date) {
+        for (Availability occurrence : occurrences(providerId, date, date)) {
+            store(occurrence);
+        }
+    }
+
+    /**
+     * Stores the occurrence behind an id that was shown to a client, if it is still virtual.
+     * Ids that do not belong to an occurrence are ignored.
+     */
+    public void materializeOccurrence(String id) {
+        int separator = id.lastIndexOf(OCCURRENCE_SEPARATOR);
+        if (separator <= 0) {
+            return;
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(id.substring(separator + 1), DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            return;
+        }
+        availabilityTemplateRepository.findById(id.substring(0, separator))
+                .filter(template -> template.isVirtualOn(date))
+                .ifPresent(template -> store(occurrence(template, date)));
+    }
+
+    public AvailabilityTemplate save(AvailabilityTemplate template) {
+        return availabilityTemplateRepository.save(template);
+    }
+
+    public Optional<AvailabilityTemplate> findById(String id) {
+        return availabilityTemplateRepository.findById(id);
+    }
+
+    public List<AvailabilityTemplate> findByProviderId(String providerId) {
+        return availabilityTemplateRepository.findByProviderId(providerId);
+    }
+
+    public void delete(AvailabilityTemplate template) {
+        availabilityTemplateRepository.delete(template);
+    }
+
+    // stored before the day is marked on the template, so the occurrence never disappears in between
+    private void store(Availability occurrence) {
+        try {
+            availabilityRepository.insert(occurrence);
+        } catch (DuplicateKeyException e) {
+            // stored by a concurrent booking, or by an earlier attempt that failed before marking the day
+        }
+        availabilityTemplateRepository.addMaterializedDate(occurrence.getTemplateId(), occurrence.getDate());
+    }
+
+    private static Availability occurrence(AvailabilityTemplate template, LocalDate date) {
+        Availability occurrence = new Availability();
+        occurrence.setId(occurrenceId(template.getId(), date));
+        occurrence.setProviderId(template.getProviderId());
+        occurrence.setDate(date);
+        occurrence.setStartTime(template.getStartTime());
+        occurrence.setEndTime(template.getEndTime());
+        occurrence.setIsAvailable(true);
+        occurrence.setTemplateId(template.getId());
+        return occurrence;
+    }
+
+    // merges two sorted iterators, an occurrence stored moments ago is only taken from the stored side
+    private static final class MergingIterator implements Iterator<Availability> {
+        private final Iterator<Availability> stored;
+        private final Iterator<Availability> occurrences;
+        private Availability nextStored;
+        private Availability nextOccurrence;
+
+        private MergingIterator(Iterator<Availability> stored, Iterator<Availability> occurrences) {
+            this.stored = stored;
+            this.occurrences = occurrences;
+            this.nextStored = stored.hasNext() ? stored.next() : null;
+            this.nextOccurrence = occurrences.hasNext() ? occurrences.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextStored != null || nextOccurrence != null;
+        }
+
+        @Override
+        public Availability next() {
+            if (nextOccurrence != null && nextStored != null && nextOccurrence.getId().equals(nextStored.getId())) {
+                nextOccurrence = occurrences.hasNext() ? occurrences.next() : null;
+            }
+            if (nextStored != null && (nextOccurrence == null || PAGE_ORDER.compare(nextStored, nextOccurrence) <= 0)) {
+                Availability next = nextStored;
+                nextStored = stored.hasNext() ? stored.next() : null;
+                return next;
+            }
+            if (nextOccurrence == null) {
+                throw new NoSuchElementException();
+            }
+            Availability next = nextOccurrence;
+            nextOccurrence = occurrences.hasNext() ? occurrences.next() : null;
+            return next;
+        }
+    }
+}
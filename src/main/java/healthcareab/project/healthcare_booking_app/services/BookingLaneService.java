@@ -0,0 +1,268 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.exceptions.ServiceUnavailableException;
+import healthcareab.project.healthcare_booking_app.models.Appointment;
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.SlotSplit;
+import healthcareab.project.healthcare_booking_app.repositories.AppointmentRepository;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Books appointments on per-provider single-writer lanes. Every provider hashes to one lane and each lane
+ * is drained by a single thread, so bookings for the same provider never race each other and need no locking.
+ * The thread takes whatever has queued up since its last round as one batch, splits the free blocks in memory
+ * and commits the whole batch with one bulk insert of appointments and one bulk write of block splits.
+ * The unique booked_availability index still rejects a block that was booked outside the lanes in the meantime.
+ */
+@Service
+public class BookingLaneService {
+    private static final String NOT_AVAILABLE = "Selected time is not available";
+    private static final String DUPLICATE_KEY = "E11000";
+
+    private final AppointmentRepository appointmentRepository;
+    private final AvailabilityRepository availabilityRepository;
+    private final AvailabilityService availabilityService;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final List<BlockingQueue<PendingBooking>> queues = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    public BookingLaneService(AppointmentRepository appointmentRepository,
+                              AvailabilityRepository availabilityRepository,
+                              AvailabilityService availabilityService,
+                              @Value("${booking.lanes.enabled:false}") boolean enabled,
+                              @Value("${booking.lanes.count:0}") int laneCount,
+                              @Value("${booking.lanes.queueCapacity:1024}") int queueCapacity,
+                              @Value("${booking.lanes.maxBatchSize:64}") int maxBatchSize) {
+        this.appointmentRepository = appointmentRepository;
+        this.availabilityRepository = availabilityRepository;
+        this.availabilityService = availabilityService;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        if (enabled) {
+            int lanes = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+            for (int i = 1; i <= lanes; i++) {
+                BlockingQueue<PendingBooking> queue = new ArrayBlockingQueue<>(queueCapacity);
+                Thread thread = new Thread(() -> runLane(queue));
+                thread.setName("booking-lane-" + i);
+                thread.setDaemon(true);
+                queues.add(queue);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a validated, not yet stored appointment on its provider's lane.
+     * The future completes with the stored appointment once its batch is committed.
+     * When the lane is full the booking is rejected immediately instead of piling up.
+     */
+    public CompletableFuture<Appointment> submit(Appointment appointment) {
+        if (!enabled) {
+            throw new IllegalStateException("Booking lanes are not enabled");
+        }
+        PendingBooking booking = new PendingBooking(appointment, new CompletableFuture<>());
+        if (!queues.get(laneOf(appointment.getProviderId())).offer(booking)) {
+            throw new ServiceUnavailableException("Too many bookings in progress, please try again shortly");
+        }
+        return booking.future();
+    }
+
+    int laneOf(String providerId) {
+        return Math.floorMod(providerId.hashCode(), queues.size());
+    }
+
+    private void runLane(BlockingQueue<PendingBooking> queue) {
+        List<PendingBooking> batch = new ArrayList<>(maxBatchSize);
+        List<PendingBooking> deferred = List.of();
+        while (!Thread.currentThread().isInterrupted()) {
+            batch.addAll(deferred);
+            if (batch.isEmpty()) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            // everything that queued up while the previous batch was committing goes into this one
+            queue.drainTo(batch, Math.max(0, maxBatchSize - batch.size()));
+            try {
+                deferred = processBatch(batch);
+            } catch (RuntimeException e) {
+                failRemaining(batch, e);
+                deferred = List.of();
+            } finally {
+                batch.clear();
+            }
+        }
+        failRemaining(deferred, new ServiceUnavailableException("Booking is shutting down, please try again shortly"));
+    }
+
+    /**
+     * Commits one batch of bookings. Free blocks are read once per provider and day and each booking is given
+     * a free block covering it, which is split into the booked range and the free pieces around it.
+     * All appointments go in with one unordered bulk insert and all splits with one ordered bulk write.
+     * A booking that only fits into a piece left over by an earlier booking of the same batch is returned,
+     * to be committed with the next batch once that piece exists.
+     */
+    List<PendingBooking> processBatch(List<PendingBooking> batch) {
+        Map<ProviderDay, List<Availability>> freeBlocksByDay = new LinkedHashMap<>();
+        List<PendingBooking> assigned = new ArrayList<>(batch.size());
+        List<SlotSplit> splits = new ArrayList<>(batch.size());
+        List<PendingBooking> deferred = new ArrayList<>();
+        Set<Availability> piecesOfBatch = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        try {
+            for (PendingBooking booking : batch) {
+                Appointment appointment = booking.appointment();
+                List<Availability> freeBlocks = freeBlocksByDay.computeIfAbsent(
+                        new ProviderDay(appointment.getProviderId(), appointment.getDate()),
+                        day -> loadFreeBlocks(appointment.getProviderId(), appointment.getDate())
+                );
+                Availability block = freeBlocks.stream()
+                        .filter(candidate -> covers(candidate, appointment))
+                        .findFirst()
+                        .orElse(null);
+                if (block == null) {
+                    booking.future().completeExceptionally(new IllegalArgumentException(NOT_AVAILABLE));
+                    continue;
+                }
+                if (piecesOfBatch.contains(block)) {
+                    deferred.add(booking);
+                    continue;
+                }
+
+                SlotSplit split = new SlotSplit(block, appointment.getStartTime(), appointment.getEndTime());
+                freeBlocks.remove(block);
+                List<Availability> freePieces = split.freePieces();
+                freeBlocks.addAll(freePieces);
+                piecesOfBatch.addAll(freePieces);
+                // ids are assigned up front so the futures can be completed without reading the batch back
+                appointment.setId(new ObjectId().toHexString());
+                appointment.setAvailabilityId(block.getId());
+                assigned.add(booking);
+                splits.add(split);
+            }
+
+            Map<Integer, String> failedInserts = appointmentRepository.insertAllUnordered(
+                    assigned.stream().map(PendingBooking::appointment).toList());
+
+            List<PendingBooking> stored = new ArrayList<>(assigned.size());
+            List<SlotSplit> storedSplits = new ArrayList<>(assigned.size());
+            for (int i = 0; i < assigned.size(); i++) {
+                String error = failedInserts.get(i);
+                if (error == null) {
+                    stored.add(assigned.get(i));
+                    storedSplits.add(splits.get(i));
+                } else if (error.contains(DUPLICATE_KEY)) {
+                    // the block was booked outside this lane after it was read
+                    assigned.get(i).future().completeExceptionally(new IllegalArgumentException(NOT_AVAILABLE));
+                } else {
+                    assigned.get(i).future().completeExceptionally(new IllegalStateException("Booking could not be stored: " + error));
+                }
+            }
+
+            List<SlotSplit> missedSplits;
+            try {
+                missedSplits = availabilityRepository.applySplits(storedSplits);
+            } catch (RuntimeException e) {
+                // without the blocks split the appointments would be invisible double bookings, so take them back
+                try {
+                    appointmentRepository.deleteAllById(stored.stream().map(booking -> booking.appointment().getId()).toList());
+                } catch (RuntimeException deleteFailure) {
+                    e.addSuppressed(deleteFailure);
+                }
+                throw e;
+            }
+            if (!missedSplits.isEmpty()) {
+                stored = dropChangedBlocks(stored, storedSplits, missedSplits);
+            }
+
+            for (PendingBooking booking : stored) {
+                booking.future().complete(booking.appointment());
+            }
+            return deferred;
+        } finally {
+            freeBlocksByDay.keySet().forEach(day -> availabilityService.availabilityChanged(day.providerId(), day.date()));
+        }
+    }
+
+    // a block changed by a write outside the lane after it was read was not split, those bookings are taken back
+    private List<PendingBooking> dropChangedBlocks(List<PendingBooking> stored, List<SlotSplit> storedSplits,
+                                                   List<SlotSplit> missedSplits) {
+        List<PendingBooking> kept = new ArrayList<>(stored.size());
+        for (int i = 0; i < stored.size(); i++) {
+            if (!missedSplits.contains(storedSplits.get(i))) {
+                kept.add(stored.get(i));
+                continue;
+            }
+            appointmentRepository.deleteById(stored.get(i).appointment().getId());
+            stored.get(i).future().completeExceptionally(new IllegalArgumentException(NOT_AVAILABLE));
+        }
+        return kept;
+    }
+
+    // the projection only holds the times, the rest is filled in so the blocks can be split
+    private List<Availability> loadFreeBlocks(String providerId, LocalDate date) {
+        List<Availability> freeBlocks = new ArrayList<>(availabilityRepository.findFreeBlocks(providerId, date));
+        for (Availability block : freeBlocks) {
+            block.setProviderId(providerId);
+            block.setDate(date);
+            block.setIsAvailable(true);
+        }
+        return freeBlocks;
+    }
+
+    private void failRemaining(List<PendingBooking> batch, Throwable cause) {
+        for (PendingBooking booking : batch) {
+            booking.future().completeExceptionally(cause);
+        }
+    }
+
+    private static boolean covers(Availability block, Appointment appointment) {
+        return !block.getStartTime().isAfter(appointment.getStartTime())
+                && !block.getEndTime().isBefore(appointment.getEndTime());
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        threads.forEach(Thread::interrupt);
+        ServiceUnavailableException shuttingDown = new ServiceUnavailableException("Booking is shutting down, please try again shortly");
+        for (BlockingQueue<PendingBooking> queue : queues) {
+            List<PendingBooking> pending = new ArrayList<>();
+            queue.drainTo(pending);
+            failRemaining(pending, shuttingDown);
+        }
+    }
+
+    record PendingBooking(Appointment appointment, CompletableFuture<Appointment> future) {
+    }
+
+    private record ProviderDay(String providerId, LocalDate date) {
+    }
+}
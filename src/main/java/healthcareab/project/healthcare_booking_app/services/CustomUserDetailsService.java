@@ -1,19 +1,16 @@
 package healthcareab.project.healthcare_booking_app.services;
 
 import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
 import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-import java.util.stream.Collectors;
-
 @Service
-public class CustomUserDetailsService  implements UserDetailsService {
+public class CustomUserDetailsService  implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
 
     public CustomUserDetailsService(UserRepository userRepository) {
@@ -25,16 +22,22 @@ public class CustomUserDetailsService  implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                getAuthorities(user)
-        );
+        // keep the loaded document on the principal so it can be reused after authentication
+        return new AuthenticatedUser(user);
     }
 
-    private Collection<? extends GrantedAuthority> getAuthorities(User user) {
-        return user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.name()))
-                .collect(Collectors.toList());
+    // called by the authentication provider after a successful login when the stored hash needs a new cost factor,
+    // the password itself is unchanged so issued tokens stay valid
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userDetails instanceof AuthenticatedUser authenticatedUser && authenticatedUser.getUser() != null
+                ? authenticatedUser.getUser()
+                : userRepository.findByUsername(userDetails.getUsername())
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        userRepository.updatePasswordById(user.getId(), newPassword);
+        user.setPassword(newPassword);
+
+        return new AuthenticatedUser(user);
     }
 }
@@ -0,0 +1,204 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
+import healthcareab.project.healthcare_booking_app.models.IdempotencyRecord;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
+import healthcareab.project.healthcare_booking_app.repositories.IdempotencyRecordRepository;
+import healthcareab.project.healthcare_booking_app.utils.ExpiringCache;
+import healthcareab.project.healthcare_booking_app.utils.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Makes create requests safe to retry. The first response to an Idempotency-Key is kept in a bounded
+ * in-memory cache and in mongo until it expires, and every retry with the same key gets that response back
+ * without running the request again. A retry that arrives while the first request is still running
+ * waits for its result instead of running in parallel.
+ * Keys are scoped to the user and the operation, and requests without a key are simply run.
+ */
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration timeToLive;
+    private final Clock clock;
+    private final ExpiringCache<String, IdempotencyRecord> responses;
+    private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+                              @Value("${idempotency.cacheSize:10000}") int cacheSize,
+                              @Value("${idempotency.ttlHours:24}") long ttlHours) {
+        this(idempotencyRecordRepository, objectMapper, cacheSize, Duration.ofHours(ttlHours), Clock.systemUTC());
+    }
+
+    IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+                       int cacheSize, Duration timeToLive, Clock clock) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.responses = new ExpiringCache<>(cacheSize, clock);
+    }
+
+    /**
+     * Runs the action once per key. Retries get the stored response with the {@value #REPLAYED_HEADER} header set,
+     * a retry with a different request body is rejected. Failed requests are not stored, so they can be retried.
+     */
+    public CompletableFuture<ResponseEntity<?>> execute(String idempotencyKey, String operation, Object request,
+                                                        Supplier<CompletableFuture<ResponseEntity<?>>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String key = Hashing.sha256(operation + '\n' + currentUserId() + '\n' + idempotencyKey);
+        String requestDigest = Hashing.sha256(toJson(request));
+
+        IdempotencyRecord cached = responses.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(replay(cached, requestDigest));
+        }
+
+        CompletableFuture<IdempotencyRecord> running = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> alreadyRunning = inFlight.putIfAbsent(key, running);
+        if (alreadyRunning != null) {
+            return alreadyRunning.thenApply(record -> replay(record, requestDigest));
+        }
+
+        CompletableFuture<ResponseEntity<?>> result;
+        try {
+            // the response may have been stored by another instance, or before this one restarted
+            IdempotencyRecord stored = idempotencyRecordRepository.findById(key)
+                    .filter(record -> record.getExpiresAt().isAfter(clock.instant()))
+                    .orElse(null);
+            if (stored != null) {
+                responses.put(key, stored, stored.getExpiresAt());
+                finish(key, running, stored, null);
+                return CompletableFuture.completedFuture(replay(stored, requestDigest));
+            }
+
+            result = action.get();
+        } catch (RuntimeException e) {
+            finish(key, running, null, e);
+            throw e;
+        }
+
+        BiConsumer<ResponseEntity<?>, Throwable> store = (response, failure) -> {
+            if (failure != null) {
+                finish(key, running, null, failure);
+                return;
+            }
+            IdempotencyRecord record = null;
+            RuntimeException storeFailure = null;
+            try {
+                record = new IdempotencyRecord(key, requestDigest, response.getStatusCode().value(),
+                        toJson(response.getBody()), clock.instant().plus(timeToLive));
+                try {
+                    idempotencyRecordRepository.save(record);
+                } catch (RuntimeException e) {
+                    // the in-memory copy still covers retries that reach this instance
+                    logger.warn("Could not store idempotent response", e);
+                }
+                responses.put(key, record, record.getExpiresAt());
+            } catch (RuntimeException e) {
+                logger.warn("Could not keep idempotent response", e);
+                record = null;
+                storeFailure = e;
+            } finally {
+                // waiting duplicates are always released, and fail when there is no response to replay
+                if (record == null && storeFailure == null) {
+                    storeFailure = new IllegalStateException("Idempotent response was not kept");
+                }
+                finish(key, running, record, storeFailure);
+            }
+        };
+        // a request still waiting on a booking lane is stored off the lane's thread
+        if (result.isDone()) {
+            result.whenComplete(store);
+        } else {
+            result.whenCompleteAsync(store);
+        }
+        return result;
+    }
+
+    // blocking variant for endpoints that answer on the request thread
+    public ResponseEntity<?> executeNow(String idempotencyKey, String operation, Object request,
+                                        Supplier<ResponseEntity<?>> action) {
+        try {
+            return execute(idempotencyKey, operation, request, () -> CompletableFuture.completedFuture(action.get())).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private void finish(String key, CompletableFuture<IdempotencyRecord> running, IdempotencyRecord record, Throwable failure) {
+        inFlight.remove(key, running);
+        if (failure != null) {
+            running.completeExceptionally(failure);
+        } else {
+            running.complete(record);
+        }
+    }
+
+    // keys are scoped to the id carried by the token, so no user lookup is needed per request
+    private static String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && authentication.getPrincipal() instanceof AuthenticatedUser principal
+                && principal.getId() != null) {
+            return principal.getId();
+        }
+        throw new UnauthorizedException("You must be logged in to send an " + HEADER);
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String requestDigest) {
+        if (!record.getRequestDigest().equals(requestDigest)) {
+            throw new IllegalArgumentException(HEADER + " was already used for a different request");
+        }
+        try {
+            return ResponseEntity.status(record.getStatus())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(objectMapper.readTree(record.getBody()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response is not valid json", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize for idempotency", e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.exceptions.ServiceUnavailableException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt password encoder that runs every hash and verification on its own bounded worker pool,
+ * so a burst of logins or registrations cannot occupy all request threads.
+ * When the pool and its queue are full, new work is rejected immediately instead of piling up.
+ * Bulk hashing only ever holds a share of the workers, so logins keep getting a thread during an import.
+ */
+@Service
+public class PasswordHashingService implements PasswordEncoder {
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+    // hashes per bulk task, small so a queued login never waits long behind one
+    static final int BULK_CHUNK_SIZE = 4;
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    // one permit per worker that bulk hashing may hold, shared by all concurrent bulk calls
+    private final Semaphore bulkPermits;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalHashNanos = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    public PasswordHashingService(@Value("${security.password.bcryptStrength:12}") int strength,
+                                  @Value("${security.password.hashingThreads:0}") int threads,
+                                  @Value("${security.password.hashingQueueCapacity:64}") int queueCapacity,
+                                  @Value("${security.password.bulkHashingThreads:0}") int bulkThreads) {
+        this.strength = strength;
+        this.bcrypt = new BCryptPasswordEncoder(strength);
+
+        // default to one hashing thread per core, bcrypt is pure cpu work
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        // default to half the pool, a pool of one is shared chunk by chunk
+        this.bulkPermits = new Semaphore(bulkThreads > 0 ? Math.min(bulkThreads, poolSize) : Math.max(1, poolSize / 2));
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    // rehash on login whenever the stored cost factor differs from the configured one, up or down
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    public Map<String, Object> getMetrics() {
+        long completedCount = completed.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("strength", strength);
+        metrics.put("poolSize", executor.getMaximumPoolSize());
+        metrics.put("activeCount", executor.getActiveCount());
+        metrics.put("queueDepth", executor.getQueue().size());
+        metrics.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        metrics.put("completed", completedCount);
+        metrics.put("rejected", rejected.sum());
+        metrics.put("averageHashMillis", averageMillis(totalHashNanos.sum(), completedCount));
+        metrics.put("averageQueueWaitMillis", averageMillis(totalWaitNanos.sum(), completedCount));
+        return metrics;
+    }
+
+    /**
+     * Hashes a batch of passwords in small tasks, with at most the bulk share of the workers busy at a time.
+     * The next task is only queued once a previous one finished, so single hashes queued meanwhile go first.
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int from = 0; from < rawPasswords.size(); from += BULK_CHUNK_SIZE) {
+            List<? extends CharSequence> chunk = rawPasswords.subList(from, Math.min(from + BULK_CHUNK_SIZE, rawPasswords.size()));
+            acquireBulkPermit();
+            try {
+                futures.add(submit(() -> {
+                    try {
+                        return chunk.stream().map(bcrypt::encode).toList();
+                    } finally {
+                        bulkPermits.release();
+                    }
+                }, chunk.size()));
+            } catch (RuntimeException e) {
+                // chunks already queued still run and give their permits back
+                bulkPermits.release();
+                throw e;
+            }
+        }
+
+        List<String> encoded = new ArrayList<>(rawPasswords.size());
+        for (Future<List<String>> future : futures) {
+            encoded.addAll(await(future));
+        }
+        return encoded;
+    }
+
+    private void acquireBulkPermit() {
+        try {
+            bulkPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+
+    <T> T execute(Callable<T> task) {
+        return await(submit(task, 1));
+    }
+
+    private <T> Future<T> submit(Callable<T> task, int hashCount) {
+        long submittedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    long finishedAt = System.nanoTime();
+                    totalWaitNanos.add((startedAt - submittedAt) * hashCount);
+                    totalHashNanos.add(finishedAt - startedAt);
+                    completed.add(hashCount);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many password operations in progress, please try again shortly");
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static double averageMillis(long totalNanos, long count) {
+        return count == 0 ? 0.0 : totalNanos / (count * 1_000_000.0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,191 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.dto.UserResponse;
+import healthcareab.project.healthcare_booking_app.exceptions.ServiceUnavailableException;
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Autocomplete over all providers, answered from memory so a search per keystroke never reaches mongo.
+ * First name, last name and profession are split into words and kept in a sorted map, so every word that
+ * starts with a typed prefix is one range of the map. The index is loaded on startup and kept up to date
+ * when providers are registered or their profile changes.
+ */
+@Service
+public class ProviderDirectoryService {
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 50;
+    private static final int MAX_QUERY_LENGTH = 100;
+    // separates the word from the provider id in an index key, sorts before every character of a word
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Comparator<UserResponse> BY_NAME = Comparator
+            .comparing((UserResponse provider) -> Objects.toString(provider.getLastName(), ""), String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(provider -> Objects.toString(provider.getFirstName(), ""), String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(UserResponse::getId);
+    private static final Logger logger = LoggerFactory.getLogger(ProviderDirectoryService.class);
+
+    private final UserRepository userRepository;
+    private final Map<String, UserResponse> providers = new ConcurrentHashMap<>();
+    // "word\0providerId" -> providerId
+    private final ConcurrentSkipListMap<String, String> index = new ConcurrentSkipListMap<>();
+    private volatile boolean loaded;
+    // bumped by every change to the directory, ETags of search results are derived from it
+    private final AtomicLong version = new AtomicLong();
+    private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    public ProviderDirectoryService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Providers whose words start with every word of the query, e.g. "ann card" finds Anna Svensson, Cardiologist.
+     * Results are sorted by last name and first name.
+     */
+    public List<UserResponse> search(String query, int limit) {
+        if (!loaded) {
+            throw new ServiceUnavailableException("Provider directory is still loading");
+        }
+
+        String trimmed = query == null ? "" : query.trim();
+        List<String> prefixes = words(trimmed.length() > MAX_QUERY_LENGTH ? trimmed.substring(0, MAX_QUERY_LENGTH) : trimmed);
+        if (prefixes.isEmpty()) {
+            return List.of();
+        }
+        // the longest prefix has the fewest matches, start there and narrow down with the rest
+        prefixes.sort(Comparator.comparingInt(String::length).reversed());
+
+        Set<String> matches = idsWithPrefix(prefixes.get(0));
+        for (int i = 1; i < prefixes.size() && !matches.isEmpty(); i++) {
+            matches.retainAll(idsWithPrefix(prefixes.get(i)));
+        }
+
+        return matches.stream()
+                .map(providers::get)
+                .filter(Objects::nonNull)
+                .sorted(BY_NAME)
+                .limit(Math.max(1, Math.min(limit, MAX_LIMIT)))
+                .toList();
+    }
+
+    // strong ETag for a search, stays the same until a provider is added, changed or removed
+    public String etag(String query, int limit) {
+        if (!loaded) {
+            return null;
+        }
+        return "\"" + instanceId + "-" + Long.toString(version.get(), 36)
+                + "-" + Integer.toHexString(Objects.hash(query, limit)) + "\"";
+    }
+
+    /**
+     * Adds the user to the directory, or replaces the words indexed for them after a profile change.
+     * Users that are no longer providers are removed.
+     */
+    public void upsert(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+        if (user.getRoles() == null || !user.getRoles().contains(Role.PROVIDER)) {
+            remove(user.getId());
+            return;
+        }
+
+        UserResponse provider = UserResponse.fromEntity(user);
+        UserResponse previous = providers.put(provider.getId(), provider);
+        Set<String> newWords = new HashSet<>(words(provider));
+        if (previous != null) {
+            for (String word : words(previous)) {
+                if (!newWords.contains(word)) {
+                    index.remove(key(word, provider.getId()));
+                }
+            }
+        }
+        for (String word : newWords) {
+            index.put(key(word, provider.getId()), provider.getId());
+        }
+        version.incrementAndGet();
+    }
+
+    public void remove(String userId) {
+        UserResponse previous = providers.remove(userId);
+        if (previous != null) {
+            words(previous).forEach(word -> index.remove(key(word, userId)));
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Loads every provider into the directory. Runs on startup, searches are refused until it has succeeded once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            int count = 0;
+            try (Stream<User> users = userRepository.streamProviders()) {
+                for (User user : (Iterable<User>) users::iterator) {
+                    upsert(user);
+                    count++;
+                }
+            }
+            loaded = true;
+            logger.info("Loaded {} providers into the provider directory", count);
+        } catch (RuntimeException e) {
+            logger.error("Could not load the provider directory", e);
+        }
+    }
+
+    private Set<String> idsWithPrefix(String prefix) {
+        // every key starting with the prefix sorts between the prefix itself and the prefix followed by the highest char
+        return new HashSet<>(index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+    }
+
+    private static String key(String word, String providerId) {
+        return word + KEY_SEPARATOR + providerId;
+    }
+
+    private static List<String> words(UserResponse provider) {
+        List<String> words = new ArrayList<>();
+        words.addAll(words(provider.getFirstName()));
+        words.addAll(words(provider.getLastName()));
+        words.addAll(words(provider.getProfession()));
+        return words;
+    }
+
+    // lower case without accents, so "asa" finds "Åsa" and "Ohman" finds "Öhman"
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return words;
+        }
+        String normalized = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String word : WORD_SEPARATOR.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
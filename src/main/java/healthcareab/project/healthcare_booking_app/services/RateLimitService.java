@@ -0,0 +1,84 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.exceptions.TooManyRequestsException;
+import healthcareab.project.healthcare_booking_app.utils.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limits per client ip and per username.
+ * Login attempts get their own, much stricter buckets since every attempt costs a bcrypt verification.
+ */
+@Service
+public class RateLimitService {
+    private final boolean enabled;
+    private final RateLimiter loginPerIp;
+    private final RateLimiter loginPerUsername;
+    private final RateLimiter requestsPerIp;
+    private final RateLimiter requestsPerUser;
+
+    public RateLimitService(@Value("${rateLimit.enabled:true}") boolean enabled,
+                            @Value("${rateLimit.maxKeys:100000}") int maxKeys,
+                            @Value("${rateLimit.login.perIp:20}") int loginPerIpPerMinute,
+                            @Value("${rateLimit.login.perUsername:5}") int loginPerUsernamePerMinute,
+                            @Value("${rateLimit.requests.perIp:600}") int requestsPerIpPerMinute,
+                            @Value("${rateLimit.requests.perUser:300}") int requestsPerUserPerMinute) {
+        this.enabled = enabled;
+        Duration minute = Duration.ofMinutes(1);
+        this.loginPerIp = new RateLimiter("loginPerIp", loginPerIpPerMinute, minute, maxKeys);
+        this.loginPerUsername = new RateLimiter("loginPerUsername", loginPerUsernamePerMinute, minute, maxKeys);
+        this.requestsPerIp = new RateLimiter("requestsPerIp", requestsPerIpPerMinute, minute, maxKeys);
+        this.requestsPerUser = new RateLimiter("requestsPerUser", requestsPerUserPerMinute, minute, maxKeys);
+    }
+
+    public void checkLoginIp(String clientIp) {
+        check(loginPerIp, clientIp, "Too many login attempts, please try again later");
+    }
+
+    // usernames are case-insensitive here so that varying the case does not give an attacker fresh buckets
+    public void checkLoginUsername(String username) {
+        if (username != null) {
+            check(loginPerUsername, username.toLowerCase(Locale.ROOT), "Too many login attempts, please try again later");
+        }
+    }
+
+    public void checkRequestIp(String clientIp) {
+        check(requestsPerIp, clientIp, "Too many requests, please slow down");
+    }
+
+    public void checkRequestUser(String username) {
+        check(requestsPerUser, username, "Too many requests, please slow down");
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        for (RateLimiter limiter : List.of(loginPerIp, loginPerUsername, requestsPerIp, requestsPerUser)) {
+            Map<String, Object> limiterMetrics = new LinkedHashMap<>();
+            limiterMetrics.put("perMinute", limiter.getCapacity());
+            limiterMetrics.put("allowed", limiter.getAllowed());
+            limiterMetrics.put("rejected", limiter.getRejected());
+            limiterMetrics.put("trackedKeys", limiter.trackedKeys());
+            metrics.put(limiter.getName(), limiterMetrics);
+        }
+        return metrics;
+    }
+
+    private void check(RateLimiter limiter, String key, String message) {
+        if (!enabled) {
+            return;
+        }
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            throw new TooManyRequestsException(message, retryAfterSeconds);
+        }
+    }
+}
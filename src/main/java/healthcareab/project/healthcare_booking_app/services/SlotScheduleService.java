@@ -0,0 +1,113 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.dto.FreeSlotResponse;
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import healthcareab.project.healthcare_booking_app.utils.ExpiringCache;
+import healthcareab.project.healthcare_booking_app.utils.SlotBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Answers "is this time free" for a provider and day from an in-memory {@link SlotBitmap}.
+ * The bitmap of a day is built from the free availability blocks and the day's template occurrences the first
+ * time it is needed, and thrown away whenever availability of that provider and day changes.
+ */
+@Service
+public class SlotScheduleService {
+    // invalidations bump the version of the key's stripe, a load that raced with one is not cached
+    private static final int VERSION_STRIPES = 1024;
+
+    private final AvailabilityRepository availabilityRepository;
+    private final AvailabilityTemplateService availabilityTemplateService;
+    private final ExpiringCache<String, SlotBitmap> schedules;
+    private final AtomicLongArray stripeVersions = new AtomicLongArray(VERSION_STRIPES);
+    private final Duration cacheTtl;
+
+    public SlotScheduleService(AvailabilityRepository availabilityRepository,
+                               AvailabilityTemplateService availabilityTemplateService,
+                               @Value("${schedule.cacheSize:100000}") int cacheSize,
+                               @Value("${schedule.cacheSeconds:300}") long cacheSeconds) {
+        this.availabilityRepository = availabilityRepository;
+        this.availabilityTemplateService = availabilityTemplateService;
+        this.schedules = new ExpiringCache<>(cacheSize);
+        this.cacheTtl = Duration.ofSeconds(cacheSeconds);
+    }
+
+    /**
+     * True if the whole range lies inside free availability of the provider.
+     * Times off the five minute grid cannot be answered from the bitmap and are looked up in the database.
+     */
+    public boolean isFree(String providerId, LocalDate date, LocalTime startTime, LocalTime endTime) {
+        if (!SlotBitmap.isAligned(startTime) || !SlotBitmap.isAligned(endTime)) {
+            return availabilityRepository.findAvailableSlot(providerId, date, startTime, endTime).isPresent()
+                    || availabilityTemplateService.coversVirtually(providerId, date, startTime, endTime);
+        }
+        return schedule(providerId, date).isFree(SlotBitmap.minuteOfDay(startTime), SlotBitmap.minuteOfDay(endTime));
+    }
+
+    public List<FreeSlotResponse> getFreeRanges(String providerId, LocalDate date) {
+        int[] ranges = schedule(providerId, date).freeRanges();
+        List<FreeSlotResponse> freeRanges = new ArrayList<>(ranges.length / 2);
+        for (int i = 0; i < ranges.length; i += 2) {
+            freeRanges.add(new FreeSlotResponse(
+                    LocalTime.of(ranges[i] / 60, ranges[i] % 60),
+                    LocalTime.of(ranges[i + 1] / 60, ranges[i + 1] % 60)
+            ));
+        }
+        return freeRanges;
+    }
+
+    // called whenever availability of the provider on that day is created, changed, deleted or booked
+    public void invalidate(String providerId, LocalDate date) {
+        String key = key(providerId, date);
+        stripeVersions.incrementAndGet(stripe(key));
+        schedules.remove(key);
+    }
+
+    private SlotBitmap schedule(String providerId, LocalDate date) {
+        String key = key(providerId, date);
+        SlotBitmap schedule = schedules.get(key);
+        if (schedule != null) {
+            return schedule;
+        }
+
+        int stripe = stripe(key);
+        long version = stripeVersions.get(stripe);
+
+        schedule = new SlotBitmap();
+        List<Availability> freeBlocks = availabilityTemplateService.withTemplates(
+                providerId, date, date, availabilityRepository.findFreeBlocks(providerId, date));
+        for (Availability availability : freeBlocks) {
+            schedule.markFree(
+                    SlotBitmap.minuteOfDay(availability.getStartTime()),
+                    SlotBitmap.minuteOfDay(availability.getEndTime())
+            );
+        }
+
+        // a change that happened while loading may not be in what was read, so only cache an undisturbed load
+        if (stripeVersions.get(stripe) == version) {
+            schedules.put(key, schedule, Instant.now().plus(cacheTtl));
+            if (stripeVersions.get(stripe) != version) {
+                schedules.remove(key);
+            }
+        }
+        return schedule;
+    }
+
+    private static String key(String providerId, LocalDate date) {
+        return providerId + "|" + date.toEpochDay();
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), VERSION_STRIPES);
+    }
+}
@@ -0,0 +1,162 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.RevokedToken;
+import healthcareab.project.healthcare_booking_app.repositories.RevokedTokenRepository;
+import healthcareab.project.healthcare_booking_app.utils.BloomFilter;
+import healthcareab.project.healthcare_booking_app.utils.ExpiringCache;
+import healthcareab.project.healthcare_booking_app.utils.JwtClaims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Server-side denylist for logged out tokens.
+ * Revoked tokens are stored in mongo until they expire, and every digest is also added to an in-memory
+ * Bloom filter. Tokens that were never revoked are cleared by the filter alone, only a possible hit
+ * is looked up in the database.
+ * The filter only learns about revocations made through this instance, so clearing tokens with it is only exact
+ * when the application runs as a single instance. With several instances set jwt.revocation.singleInstance=false:
+ * every token is then looked up in the shared collection and only confirmed revocations are cached.
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int expectedRevocations;
+    private final double falsePositiveProbability;
+    private final boolean singleInstance;
+    private final Clock clock;
+    private final Executor rebuildExecutor;
+
+    private volatile BloomFilter bloomFilter;
+    // receives revocations that happen while a new filter is being filled from the database
+    private volatile BloomFilter rebuildingFilter;
+    // until the filter has been loaded every check goes to the database
+    private volatile boolean loaded;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicInteger insertions = new AtomicInteger();
+
+    // exact answers for tokens the filter could not clear, kept until the token expires
+    private final ExpiringCache<String, Boolean> confirmed;
+
+    @Autowired
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${jwt.revocation.expectedTokens:100000}") int expectedRevocations,
+                                  @Value("${jwt.revocation.falsePositiveProbability:0.001}") double falsePositiveProbability,
+                                  @Value("${jwt.revocation.cacheSize:10000}") int cacheSize,
+                                  @Value("${jwt.revocation.singleInstance:true}") boolean singleInstance) {
+        this(revokedTokenRepository, expectedRevocations, falsePositiveProbability, cacheSize, singleInstance,
+                Clock.systemUTC(), Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "token-revocation-rebuild");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    TokenRevocationService(RevokedTokenRepository revokedTokenRepository, int expectedRevocations,
+                           double falsePositiveProbability, int cacheSize, boolean singleInstance, Clock clock,
+                           Executor rebuildExecutor) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.singleInstance = singleInstance;
+        this.clock = clock;
+        this.rebuildExecutor = rebuildExecutor;
+        this.bloomFilter = new BloomFilter(expectedRevocations, falsePositiveProbability);
+        this.confirmed = new ExpiringCache<>(cacheSize, clock);
+    }
+
+    public boolean isRevoked(JwtClaims claims) {
+        String digest = claims.getTokenDigest();
+        if (singleInstance && loaded && !bloomFilter.mightContain(digest)) {
+            return false;
+        }
+
+        Boolean revoked = confirmed.get(digest);
+        if (revoked == null) {
+            revoked = revokedTokenRepository.existsById(digest);
+            // another instance can still revoke the token, then only a revocation is a final answer
+            if (revoked || singleInstance) {
+                cacheUntilExpiry(digest, revoked, claims);
+            }
+        }
+        return revoked;
+    }
+
+    public void revoke(JwtClaims claims) {
+        String digest = claims.getTokenDigest();
+        revokedTokenRepository.save(new RevokedToken(digest, claims.getSubject(), claims.getExpiration()));
+
+        bloomFilter.put(digest);
+        BloomFilter pending = rebuildingFilter;
+        if (pending != null) {
+            pending.put(digest);
+        }
+        cacheUntilExpiry(digest, true, claims);
+
+        // once the filter holds more than it was sized for its false positive rate climbs, start over with live tokens only.
+        // The scan runs in the background, the current filter keeps answering until the new one is ready
+        if (insertions.incrementAndGet() > expectedRevocations && rebuildScheduled.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Fills a fresh filter with the digests of all revoked tokens that have not expired yet.
+     * Runs on startup, and whenever the current filter has taken more revocations than it was sized for.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            BloomFilter filter = new BloomFilter(expectedRevocations, falsePositiveProbability);
+            rebuildingFilter = filter;
+
+            int count = 0;
+            try (Stream<RevokedToken> revokedTokens = revokedTokenRepository.streamByExpiresAtAfter(clock.instant())) {
+                for (RevokedToken revokedToken : (Iterable<RevokedToken>) revokedTokens::iterator) {
+                    filter.put(revokedToken.getTokenDigest());
+                    count++;
+                }
+            }
+
+            bloomFilter = filter;
+            insertions.set(count);
+            loaded = true;
+            logger.info("Loaded {} revoked tokens into the revocation filter", count);
+        } catch (RuntimeException e) {
+            // keep answering from the database until a rebuild succeeds
+            logger.error("Could not load revoked tokens, falling back to database lookups", e);
+        } finally {
+            rebuildingFilter = null;
+            rebuilding.set(false);
+        }
+    }
+
+    private void cacheUntilExpiry(String digest, boolean revoked, JwtClaims claims) {
+        if (claims.getExpiration() != null) {
+            confirmed.put(digest, revoked, claims.getExpiration());
+        }
+    }
+}
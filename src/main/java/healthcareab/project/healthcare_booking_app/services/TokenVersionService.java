@@ -0,0 +1,55 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import healthcareab.project.healthcare_booking_app.utils.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Keeps track of the current token version of each user.
+ * A JWT is only accepted while the version it was issued with matches the stored one,
+ * so bumping the version revokes every outstanding token of that user (e.g. after a role change).
+ */
+@Service
+public class TokenVersionService {
+    // cached for users that no longer exist, so their tokens are rejected without a lookup each time
+    private static final long UNKNOWN_USER = -1L;
+
+    private final UserRepository userRepository;
+    private final ExpiringCache<String, Long> currentVersions;
+    private final Duration cacheTtl;
+
+    public TokenVersionService(UserRepository userRepository,
+                               @Value("${jwt.tokenVersion.cacheSeconds:30}") long cacheSeconds,
+                               @Value("${jwt.tokenVersion.cacheSize:10000}") int cacheSize) {
+        this.userRepository = userRepository;
+        this.cacheTtl = Duration.ofSeconds(cacheSeconds);
+        this.currentVersions = new ExpiringCache<>(cacheSize);
+    }
+
+    public boolean isCurrent(String userId, long tokenVersion) {
+        Long currentVersion = currentVersions.get(userId);
+        if (currentVersion == null) {
+            currentVersion = userRepository.findTokenVersionById(userId)
+                    .map(User::getTokenVersion)
+                    .orElse(UNKNOWN_USER);
+            currentVersions.put(userId, currentVersion, Instant.now().plus(cacheTtl));
+        }
+        return currentVersion != UNKNOWN_USER && currentVersion == tokenVersion;
+    }
+
+    // invalidates every token issued to the user so far
+    public void revokeAllTokens(String userId) {
+        userRepository.incrementTokenVersionById(userId);
+        versionChanged(userId);
+    }
+
+    // called after the stored version was bumped together with another change, so the next check reads it again
+    public void versionChanged(String userId) {
+        currentVersions.remove(userId);
+    }
+}
@@ -1,33 +1,139 @@
 package healthcareab.project.healthcare_booking_app.services;
 
+import healthcareab.project.healthcare_booking_app.dto.UserResponse;
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.exceptions.NotFoundException;
 import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
 import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 
 import healthcareab.project.healthcare_booking_app.repositories.UserAuthRepository;
+import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import healthcareab.project.healthcare_booking_app.utils.CurrentUserHolder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
 
 @Service
 public class UserService {
 
+    private static final int MAX_LOOKUP_IDS = 200;
+
     private final UserAuthRepository userAuthRepository;
-    
-    public UserService(UserAuthRepository userAuthRepository) {
+    private final CurrentUserHolder currentUserHolder;
+    private final UserRepository userRepository;
+    private final TokenVersionService tokenVersionService;
+    private final ProviderDirectoryService providerDirectoryService;
+
+    public UserService(UserAuthRepository userAuthRepository, CurrentUserHolder currentUserHolder, UserRepository userRepository,
+                       TokenVersionService tokenVersionService, ProviderDirectoryService providerDirectoryService) {
         this.userAuthRepository = userAuthRepository;
+        this.currentUserHolder = currentUserHolder;
+        this.userRepository = userRepository;
+        this.tokenVersionService = tokenVersionService;
+        this.providerDirectoryService = providerDirectoryService;
     }
-    
+
+    // resolved at most once per request, later calls in the same request reuse the same user
     public User getCurrentUser() {
-        return userAuthRepository.authenticateAndExtractUser();
+        User user = currentUserHolder.get();
+        if (user == null) {
+            user = resolveCurrentUser();
+            currentUserHolder.set(user);
+        }
+        return user;
     }
-    
+
     public boolean isCurrentUserAuthenticated() {
         return getCurrentUser().getRoles().contains(Role.PROVIDER);
     }
-    
+
     public void assertCurrentUserAuthenticated() {
         if (!isCurrentUserAuthenticated()) {
             throw new UnauthorizedException("You are not authenticated");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Id of the current provider, taken from the id and roles signed into the token so no user document is read.
+     * Meant for hot paths like answering a poll with 304 Not Modified.
+     */
+    public String getCurrentProviderId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && authentication.getPrincipal() instanceof AuthenticatedUser principal) {
+            if (!principal.getRoles().contains(Role.PROVIDER)) {
+                throw new UnauthorizedException("You are not authenticated");
+            }
+            return principal.getId();
+        }
+        assertCurrentUserAuthenticated();
+        return getCurrentUser().getId();
+    }
+
+    /**
+     * Looks up the public profiles of many users with a single query, in the order the ids were given.
+     * Duplicate ids are answered once and unknown ids are left out.
+     */
+    public List<UserResponse> getUsersByIds(Collection<String> ids) {
+        Set<String> uniqueIds = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id != null && !id.isBlank()) {
+                uniqueIds.add(id.trim());
+            }
+        }
+        if (uniqueIds.isEmpty() || uniqueIds.size() > MAX_LOOKUP_IDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_LOOKUP_IDS + " user ids can be looked up per request");
+        }
+
+        Map<String, User> usersById = new HashMap<>();
+        userRepository.findProfilesByIdIn(uniqueIds).forEach(user -> usersById.put(user.getId(), user));
+        return uniqueIds.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .map(UserResponse::fromEntity)
+                .toList();
+    }
+
+    /**
+     * Replaces the roles of a user, admins only. The roles are signed into every token, so all tokens
+     * issued to the user so far are revoked and the user has to log in again to get the new roles.
+     */
+    public User updateRoles(String userId, Set<Role> roles) {
+        if (!getCurrentUser().getRoles().contains(Role.ADMIN)) {
+            throw new UnauthorizedException("Only admins can change roles");
+        }
+        if (roles == null || roles.isEmpty()) {
+            throw new IllegalArgumentException("At least one role is required");
+        }
+
+        User user = userRepository.updateRolesAndIncrementTokenVersion(userId, Set.copyOf(roles))
+                .orElseThrow(() -> new NotFoundException("User not found"));
+        tokenVersionService.versionChanged(userId);
+
+        // a user that became or stopped being a provider is added to or removed from the search
+        providerDirectoryService.upsert(user);
+        return user;
+    }
+
+    private User resolveCurrentUser() {
+        // reuse the user document if it was already loaded during authentication
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && authentication.getPrincipal() instanceof AuthenticatedUser principal
+                && principal.getUser() != null) {
+            return principal.getUser();
+        }
+        return userAuthRepository.authenticateAndExtractUser();
+    }
+}
@@ -0,0 +1,31 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Remembers the logged-in user for the duration of the current web request,
+ * so the user document is loaded at most once no matter how many services ask for it.
+ * Outside a web request nothing is remembered.
+ */
+@Component
+public class CurrentUserHolder {
+    private static final String CURRENT_USER_ATTRIBUTE = CurrentUserHolder.class.getName() + ".currentUser";
+
+    public User get() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return (User) attributes.getAttribute(CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    public void set(User user) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(CURRENT_USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache where every entry carries its own expiry time.
+ * Expired entries are dropped when read, and swept in bulk once the cache reaches its capacity;
+ * if that does not free enough room, the least recently used entries go next.
+ */
+public class ExpiringCache<K, V> {
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final Clock clock;
+    private final LongAdder evictions = new LongAdder();
+    // logical time of the last read or write of each entry, a counter so that order holds within a millisecond
+    private final AtomicLong accessTicks = new AtomicLong();
+
+    public ExpiringCache(int maxEntries) {
+        this(maxEntries, Clock.systemUTC());
+    }
+
+    public ExpiringCache(int maxEntries, Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis <= clock.millis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        entry.lastAccess = accessTicks.incrementAndGet();
+        return entry.value;
+    }
+
+    public void put(K key, V value, Instant expiresAt) {
+        long expiresAtMillis = expiresAt.toEpochMilli();
+        if (expiresAtMillis <= clock.millis()) {
+            return;
+        }
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            makeRoom();
+        }
+        entries.put(key, new Entry<>(value, expiresAtMillis, accessTicks.incrementAndGet()));
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // entries dropped to make room, expired or not
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    // drop expired entries first, and if that is not enough free up a tenth of the capacity
+    // so that the sweep is not repeated on every insert while the cache stays full
+    private void makeRoom() {
+        int sizeBefore = entries.size();
+        long now = clock.millis();
+        entries.entrySet().removeIf(e -> e.getValue().expiresAtMillis <= now);
+
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        if (entries.size() > target) {
+            List<Map.Entry<K, Entry<V>>> leastRecentlyUsed = new ArrayList<>(entries.entrySet());
+            leastRecentlyUsed.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            Iterator<Map.Entry<K, Entry<V>>> iterator = leastRecentlyUsed.iterator();
+            while (entries.size() > target && iterator.hasNext()) {
+                Map.Entry<K, Entry<V>> e = iterator.next();
+                entries.remove(e.getKey(), e.getValue());
+            }
+        }
+        evictions.add(Math.max(0, sizeBefore - entries.size()));
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtMillis;
+        private volatile long lastAccess;
+
+        private Entry(V value, long expiresAtMillis, long lastAccess) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+// digests used as lookup keys, e.g. of tokens and idempotency keys, so the raw values are never stored
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    // SHA-256 of the UTF-8 bytes, url-safe base64 without padding
+    public static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to ship SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
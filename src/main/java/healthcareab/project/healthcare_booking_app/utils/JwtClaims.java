@@ -0,0 +1,102 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable view of the claims of a token whose signature has already been verified.
+ */
+public final class JwtClaims {
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLES_CLAIM = "roles";
+    static final String TOKEN_VERSION_CLAIM = "ver";
+    // tokens without identity claims were issued before token versions existed, when every user was at version 0
+    public static final long LEGACY_TOKEN_VERSION = 0L;
+
+    private final String subject;
+    private final Instant issuedAt;
+    private final Instant expiration;
+    private final String tokenDigest;
+    private final String userId;
+    private final Set<Role> roles;
+    private final Long tokenVersion;
+
+    public JwtClaims(String subject, Instant issuedAt, Instant expiration, String tokenDigest,
+                     String userId, Set<Role> roles, Long tokenVersion) {
+        this.subject = subject;
+        this.issuedAt = issuedAt;
+        this.expiration = expiration;
+        this.tokenDigest = tokenDigest;
+        this.userId = userId;
+        this.roles = roles == null ? null : Set.copyOf(roles);
+        this.tokenVersion = tokenVersion;
+    }
+
+    static JwtClaims from(Claims claims, String tokenDigest) {
+        Number tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Number.class);
+
+        return new JwtClaims(
+                claims.getSubject(),
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration() == null ? null : claims.getExpiration().toInstant(),
+                tokenDigest,
+                claims.get(USER_ID_CLAIM, String.class),
+                parseRoles(claims.get(ROLES_CLAIM)),
+                tokenVersion == null ? null : tokenVersion.longValue()
+        );
+    }
+
+    private static Set<Role> parseRoles(Object rolesClaim) {
+        if (!(rolesClaim instanceof Collection<?> roleNames)) {
+            return null;
+        }
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        for (Object roleName : roleNames) {
+            roles.add(Role.valueOf(String.valueOf(roleName)));
+        }
+        return roles;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Instant getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Instant getExpiration() {
+        return expiration;
+    }
+
+    // SHA-256 of the raw token, used as a compact key for caches
+    public String getTokenDigest() {
+        return tokenDigest;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Set<Role> getRoles() {
+        return roles;
+    }
+
+    public Long getTokenVersion() {
+        return tokenVersion;
+    }
+
+    // tokens issued before the identity claims were introduced only carry the username
+    public boolean hasIdentityClaims() {
+        return userId != null && roles != null && tokenVersion != null;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiration != null && !expiration.isAfter(now);
+    }
+}
@@ -1,45 +1,96 @@
 package healthcareab.project.healthcare_booking_app.utils;
 
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
 
 @Component
 public class JwtUtil {
+    private final int jwtExpirationMs;
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    // tokens that already passed signature verification, keyed by token digest until they expire
+    private final ExpiringCache<String, JwtClaims> verifiedTokens;
 
-    @Value("${jwt.expirationMs}")
-    private int jwtExpirationMs;
+    // key and parser are built once and shared, both are thread-safe
+    private final Key signingKey;
+    private final JwtParser jwtParser;
 
-    private Key getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // a secret too short for HS256 fails here, so the application does not start instead of failing on the first request
+    public JwtUtil(@Value("${jwt.secret}") String jwtSecret,
+                   @Value("${jwt.expirationMs}") int jwtExpirationMs,
+                   @Value("${jwt.verifiedCacheSize:10000}") int verifiedCacheSize) {
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.verifiedTokens = new ExpiringCache<>(verifiedCacheSize);
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     public String generateToken(UserDetails userDetails) {
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs));
+
+        // embed identity claims so later requests can be authenticated without a user lookup
+        if (userDetails instanceof AuthenticatedUser authenticatedUser) {
+            builder.claim(JwtClaims.USER_ID_CLAIM, authenticatedUser.getId())
+                    .claim(JwtClaims.ROLES_CLAIM, authenticatedUser.getRoles().stream().map(Role::name).sorted().toList())
+                    .claim(JwtClaims.TOKEN_VERSION_CLAIM, authenticatedUser.getTokenVersion());
+        }
+
+        return builder
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifies the signature and expiry of a token exactly once and returns its claims.
+     * Repeated calls with the same token are served from the verified-token cache.
+     *
+     * @throws JwtException if the token is malformed, has an invalid signature or is expired
+     */
+    public JwtClaims verifyToken(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("JWT must not be empty");
+        }
+
+        String digest = digest(token);
+        JwtClaims cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        JwtClaims verified = JwtClaims.from(claims, digest);
+        if (verified.getExpiration() != null) {
+            verifiedTokens.put(digest, verified, verified.getExpiration());
+        }
+        return verified;
+    }
+
     public boolean validateToken(String token, UserDetails userDetails) {
         try {
-            String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+            JwtClaims claims = verifyToken(token);
+            return (claims.getSubject().equals(userDetails.getUsername()) && !claims.isExpired(Instant.now()));
         } catch (JwtException | IllegalArgumentException e) {
 
             return false;
@@ -47,19 +98,27 @@ public class JwtUtil {
     }
 
     public String extractUsername(String token) {
-        return extractAllClaims(token).getSubject();
+        return verifyToken(token).getSubject();
     }
 
-    private boolean isTokenExpired(String token) {
-        Date expiration = extractAllClaims(token).getExpiration();
-        return expiration.before(new Date());
+    // the jwt from the Authorization header, or from the jwt cookie when there is no header
+    public static String resolveToken(HttpServletRequest request) {
+        String bearerToken = request.getHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer")) {
+            return bearerToken.substring(7);
+        }
+
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if ("jwt".equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public static String digest(String token) {
+        return Hashing.sha256(token);
     }
 }
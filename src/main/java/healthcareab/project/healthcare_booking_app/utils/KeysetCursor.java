@@ -0,0 +1,74 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position of the last item of a page of documents sorted by date, start time and id.
+ * Sent to clients as an opaque token, the next page starts right after this position.
+ */
+public final class KeysetCursor {
+    // the order mongo sorts _id in: ids stored as strings, like template occurrences, come before ObjectIds
+    public static final Comparator<String> ID_ORDER = Comparator.comparing(ObjectId::isValid)
+            .thenComparing(Comparator.naturalOrder());
+
+    private final LocalDate date;
+    private final LocalTime startTime;
+    private final String id;
+
+    public KeysetCursor(LocalDate date, LocalTime startTime, String id) {
+        this.date = date;
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    public String encode() {
+        String value = date + "|" + startTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = value.split("\\|", 3);
+            if (parts.length != 3 || parts[2].isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new KeysetCursor(LocalDate.parse(parts[0]), LocalTime.parse(parts[1]), parts[2]);
+        } catch (java.lang.IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // true if an item at that position belongs on a page after this cursor
+    public boolean isBefore(LocalDate date, LocalTime startTime, String id) {
+        int byDate = this.date.compareTo(date);
+        if (byDate != 0) {
+            return byDate < 0;
+        }
+        int byStartTime = this.startTime.compareTo(startTime);
+        if (byStartTime != 0) {
+            return byStartTime < 0;
+        }
+        return ID_ORDER.compare(this.id, id) < 0;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,44 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Writes a stream of rows as newline delimited json (one object per line) straight to the response.
+ * Every row is flushed as soon as it is written, so clients get the first rows immediately and
+ * only one row at a time is held in memory no matter how many the stream yields.
+ */
+@Component
+public class NdjsonWriter {
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private final ObjectMapper objectMapper;
+
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // closes the stream when done, which also closes the database cursor behind it
+    public <T> long write(Stream<T> rows, HttpServletResponse response) throws IOException {
+        response.setContentType(MEDIA_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        long count = 0;
+        try (rows; JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            for (T row : (Iterable<T>) rows::iterator) {
+                objectMapper.writeValue(generator, row);
+                generator.writeRaw('\n');
+                generator.flush();
+                count++;
+            }
+        }
+        return count;
+    }
+}
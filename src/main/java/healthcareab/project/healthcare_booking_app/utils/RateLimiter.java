@@ -0,0 +1,142 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket per key, e.g. per client ip or username.
+ * Every bucket is a single AtomicLong holding the time at which it will be full again (GCRA),
+ * so taking a token is one compare-and-set and never blocks.
+ * A bucket that is full carries no state, which lets idle buckets be dropped without losing anything.
+ */
+public class RateLimiter {
+    // marks a bucket that has been evicted, threads that still hold it start over with a fresh one
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final String name;
+    private final int capacity;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    // shared by all new keys while every tracked bucket is in use, keeps memory bounded under a flood of keys
+    private final AtomicLong overflowBucket;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(String name, int capacity, Duration refillPeriod, int maxKeys) {
+        this(name, capacity, refillPeriod, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * @param capacity     tokens in a full bucket, i.e. the allowed burst
+     * @param refillPeriod time it takes an empty bucket to fill up completely
+     * @param maxKeys      maximum number of buckets kept in memory
+     */
+    public RateLimiter(String name, int capacity, Duration refillPeriod, int maxKeys, LongSupplier nanoClock) {
+        if (capacity <= 0 || maxKeys <= 0 || refillPeriod.isNegative() || refillPeriod.isZero()) {
+            throw new IllegalArgumentException("capacity, refillPeriod and maxKeys must be positive");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1, refillPeriod.toNanos() / capacity);
+        this.burstNanos = nanosPerToken * capacity;
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+        this.overflowBucket = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Takes one token from the bucket of the key.
+     *
+     * @return 0 if the token was granted, otherwise the nanoseconds until the next token is available
+     */
+    public long tryAcquire(String key) {
+        while (true) {
+            AtomicLong bucket = bucketFor(key);
+            long now = nanoClock.getAsLong();
+            long fullAt = bucket.get();
+            if (fullAt == EVICTED) {
+                continue;
+            }
+
+            long newFullAt = Math.max(fullAt, now) + nanosPerToken;
+            long waitNanos = newFullAt - now - burstNanos;
+            if (waitNanos > 0) {
+                rejected.increment();
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(fullAt, newFullAt)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops every bucket that has refilled completely. A full bucket behaves exactly like a missing one,
+     * so no client gains or loses tokens by being evicted.
+     */
+    public int evictIdle() {
+        long now = nanoClock.getAsLong();
+        int evicted = 0;
+        for (var entry : buckets.entrySet()) {
+            AtomicLong bucket = entry.getValue();
+            long fullAt = bucket.get();
+            if (fullAt != EVICTED && fullAt - now <= 0 && bucket.compareAndSet(fullAt, EVICTED)) {
+                buckets.remove(entry.getKey(), bucket);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int trackedKeys() {
+        return buckets.size();
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private AtomicLong bucketFor(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            // only one thread sweeps at a time, the others go on with what is there
+            if (sweeping.compareAndSet(false, true)) {
+                try {
+                    evictIdle();
+                } finally {
+                    sweeping.set(false);
+                }
+            }
+            if (buckets.size() >= maxKeys) {
+                return overflowBucket;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(nanoClock.getAsLong()));
+    }
+}
@@ -0,0 +1,128 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * The working day of one provider as a bitmap of five minute slots, from 08:00 to 17:00 (108 slots).
+ * A set bit means the slot lies completely inside a free availability block. Where each block starts is kept
+ * as well, a booking has to fit into a single block so adjacent blocks do not make one longer free range.
+ * Times are handled as minutes since midnight, so no LocalTime objects are created on the hot path.
+ */
+public final class SlotBitmap {
+    public static final int SLOT_MINUTES = 5;
+    public static final int DAY_START_MINUTE = 8 * 60;
+    public static final int DAY_END_MINUTE = 17 * 60;
+    public static final int SLOT_COUNT = (DAY_END_MINUTE - DAY_START_MINUTE) / SLOT_MINUTES;
+
+    private final long[] words = new long[(SLOT_COUNT + 63) / 64];
+    // the first slot of every free block
+    private final long[] blockStarts = new long[(SLOT_COUNT + 63) / 64];
+
+    public static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    // true if the time falls exactly on a slot boundary, only then can a range be answered from the bitmap
+    public static boolean isAligned(LocalTime time) {
+        return time.getSecond() == 0 && time.getNano() == 0 && time.getMinute() % SLOT_MINUTES == 0;
+    }
+
+    /**
+     * Marks the slots between the two minutes as free. Slots only partly covered by the range stay unset,
+     * so a block from 09:03 to 09:58 frees the slots from 09:05 to 09:55.
+     */
+    public void markFree(int startMinute, int endMinute) {
+        int fromSlot = Math.max(0, Math.floorDiv(startMinute - DAY_START_MINUTE + SLOT_MINUTES - 1, SLOT_MINUTES));
+        int toSlot = Math.min(SLOT_COUNT, Math.floorDiv(endMinute - DAY_START_MINUTE, SLOT_MINUTES));
+        if (fromSlot >= toSlot) {
+            return;
+        }
+        blockStarts[fromSlot >>> 6] |= 1L << (fromSlot & 63);
+        for (int slot = fromSlot; slot < toSlot; ) {
+            int word = slot >>> 6;
+            int wordEnd = Math.min(toSlot, (word + 1) << 6);
+            words[word] |= rangeMask(slot & 63, wordEnd - (word << 6));
+            slot = wordEnd;
+        }
+    }
+
+    /**
+     * True if every slot between the two minutes is free and no other block starts inside the range.
+     * Both minutes have to be on slot boundaries, a range outside the working day is never free.
+     */
+    public boolean isFree(int startMinute, int endMinute) {
+        if (startMinute < DAY_START_MINUTE || endMinute > DAY_END_MINUTE || startMinute >= endMinute) {
+            return false;
+        }
+        int fromSlot = (startMinute - DAY_START_MINUTE) / SLOT_MINUTES;
+        int toSlot = (endMinute - DAY_START_MINUTE) / SLOT_MINUTES;
+        for (int slot = fromSlot; slot < toSlot; ) {
+            int word = slot >>> 6;
+            int wordEnd = Math.min(toSlot, (word + 1) << 6);
+            long mask = rangeMask(slot & 63, wordEnd - (word << 6));
+            if ((words[word] & mask) != mask) {
+                return false;
+            }
+            slot = wordEnd;
+        }
+        return nextSlot(blockStarts, fromSlot + 1, false) >= toSlot;
+    }
+
+    /**
+     * The free blocks of the day as pairs of start and end minute, i.e. { start1, end1, start2, end2, ... }.
+     * Adjacent blocks are returned separately, since a booking cannot span both.
+     */
+    public int[] freeRanges() {
+        int[] ranges = new int[2 * SLOT_COUNT];
+        int count = 0;
+        int slot = nextSetSlot(0);
+        while (slot < SLOT_COUNT) {
+            int end = Math.min(nextClearSlot(slot), nextSlot(blockStarts, slot + 1, false));
+            ranges[count++] = DAY_START_MINUTE + slot * SLOT_MINUTES;
+            ranges[count++] = DAY_START_MINUTE + end * SLOT_MINUTES;
+            slot = nextSetSlot(end);
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    public int freeSlotCount() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private int nextSetSlot(int from) {
+        return nextSlot(words, from, false);
+    }
+
+    private int nextClearSlot(int from) {
+        return nextSlot(words, from, true);
+    }
+
+    // index of the first slot at or after from whose bit is set (or clear, when inverted), SLOT_COUNT if none
+    private static int nextSlot(long[] bitmap, int from, boolean inverted) {
+        int word = from >>> 6;
+        if (word >= bitmap.length) {
+            return SLOT_COUNT;
+        }
+        long bits = (inverted ? ~bitmap[word] : bitmap[word]) & (-1L << (from & 63));
+        while (true) {
+            if (bits != 0) {
+                return Math.min(SLOT_COUNT, (word << 6) + Long.numberOfTrailingZeros(bits));
+            }
+            if (++word == bitmap.length) {
+                return SLOT_COUNT;
+            }
+            bits = inverted ? ~bitmap[word] : bitmap[word];
+        }
+    }
+
+    // bits from (inclusive) to (exclusive) within one word, to is at most 64
+    private static long rangeMask(int from, int to) {
+        long upTo = to == 64 ? -1L : (1L << to) - 1;
+        return upTo & (-1L << from);
+    }
+}
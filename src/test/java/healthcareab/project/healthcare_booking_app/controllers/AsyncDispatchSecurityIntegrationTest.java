@@ -0,0 +1,180 @@
+package healthcareab.project.healthcare_booking_app.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import healthcareab.project.healthcare_booking_app.config.SecurityConfig;
+import healthcareab.project.healthcare_booking_app.dto.AppointmentResponse;
+import healthcareab.project.healthcare_booking_app.filters.JwtAuthenticationFilter;
+import healthcareab.project.healthcare_booking_app.filters.RateLimitFilter;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AppointmentStatus;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.repositories.IdempotencyRecordRepository;
+import healthcareab.project.healthcare_booking_app.services.AppointmentService;
+import healthcareab.project.healthcare_booking_app.services.AvailabilityService;
+import healthcareab.project.healthcare_booking_app.services.CustomUserDetailsService;
+import healthcareab.project.healthcare_booking_app.services.IdempotencyService;
+import healthcareab.project.healthcare_booking_app.services.RateLimitService;
+import healthcareab.project.healthcare_booking_app.services.TokenRevocationService;
+import healthcareab.project.healthcare_booking_app.services.TokenVersionService;
+import healthcareab.project.healthcare_booking_app.utils.JwtClaims;
+import healthcareab.project.healthcare_booking_app.utils.JwtUtil;
+import healthcareab.project.healthcare_booking_app.utils.NdjsonWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// runs the real security filter chain, so the async dispatch that writes a deferred response is authorized too
+@ActiveProfiles("test")
+@SpringJUnitWebConfig(AsyncDispatchSecurityIntegrationTest.TestConfig.class)
+class AsyncDispatchSecurityIntegrationTest {
+
+    private static final String TOKEN = "patient-token";
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AvailabilityService availabilityService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        reset(jwtUtil, tokenVersionService, appointmentService, availabilityService);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+
+        when(jwtUtil.verifyToken(TOKEN)).thenReturn(new JwtClaims("PatientUser", Instant.now(),
+                Instant.now().plusSeconds(3600), "digest", "patient-id", Set.of(Role.PATIENT), 0L));
+        when(tokenVersionService.isCurrent("patient-id", 0L)).thenReturn(true);
+    }
+
+    @Test
+    void createAppointment_shouldReturnCreated_afterAsyncDispatch() throws Exception {
+        AppointmentResponse response = new AppointmentResponse("appointment-id", "patient-id", "provider-id",
+                LocalDate.of(2026, 2, 2), LocalTime.of(9, 0), LocalTime.of(9, 30), AppointmentStatus.BOOKED);
+        when(appointmentService.createAppointmentAsync(any())).thenReturn(CompletableFuture.completedFuture(response));
+
+        MvcResult result = mockMvc.perform(post("/appointment/create")
+                        .header("Authorization", "Bearer " + TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"providerId":"provider-id","date":"2026-02-02","startTime":"09:00","endTime":"09:30"}
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void streamAvailabilityEvents_shouldCompleteStream_afterAsyncDispatch() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        when(availabilityService.subscribeToChanges(List.of("provider-id"))).thenReturn(emitter);
+
+        MvcResult result = mockMvc.perform(get("/availability/events")
+                        .param("providerIds", "provider-id")
+                        .header("Authorization", "Bearer " + TOKEN))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        emitter.complete();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void createAppointment_shouldStillRequireToken() throws Exception {
+        mockMvc.perform(post("/appointment/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @Import({SecurityConfig.class, AppointmentController.class, AvailabilityController.class})
+    static class TestConfig {
+        private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+        @Bean
+        JwtUtil jwtUtil() {
+            return mock(JwtUtil.class);
+        }
+
+        @Bean
+        TokenVersionService tokenVersionService() {
+            return mock(TokenVersionService.class);
+        }
+
+        @Bean
+        AppointmentService appointmentService() {
+            return mock(AppointmentService.class);
+        }
+
+        @Bean
+        AvailabilityService availabilityService() {
+            return mock(AvailabilityService.class);
+        }
+
+        @Bean
+        JwtAuthenticationFilter jwtAuthenticationFilter(JwtUtil jwtUtil, TokenVersionService tokenVersionService) {
+            return new JwtAuthenticationFilter(jwtUtil, mock(CustomUserDetailsService.class), tokenVersionService,
+                    mock(TokenRevocationService.class));
+        }
+
+        @Bean
+        RateLimitFilter rateLimitFilter() {
+            return new RateLimitFilter(mock(RateLimitService.class));
+        }
+
+        @Bean
+        NdjsonWriter ndjsonWriter() {
+            return new NdjsonWriter(objectMapper);
+        }
+
+        @Bean
+        IdempotencyService idempotencyService() {
+            return new IdempotencyService(mock(IdempotencyRecordRepository.class), objectMapper, 100, 24);
+        }
+    }
+}
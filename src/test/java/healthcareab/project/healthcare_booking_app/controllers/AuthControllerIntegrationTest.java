@@ -4,10 +4,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import healthcareab.project.healthcare_booking_app.dto.AuthRequest;
 import healthcareab.project.healthcare_booking_app.dto.RegisterRequest;
 import healthcareab.project.healthcare_booking_app.exceptions.GlobalExceptionHandler;
+import healthcareab.project.healthcare_booking_app.exceptions.TooManyRequestsException;
 import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 import healthcareab.project.healthcare_booking_app.services.AuthService;
+import healthcareab.project.healthcare_booking_app.services.RateLimitService;
+import healthcareab.project.healthcare_booking_app.services.TokenRevocationService;
+import healthcareab.project.healthcare_booking_app.utils.JwtClaims;
 import healthcareab.project.healthcare_booking_app.utils.JwtUtil;
+import io.jsonwebtoken.MalformedJwtException;
+import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -25,10 +32,15 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Instant;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -46,6 +58,12 @@ class AuthControllerIntegrationTest {
     @Mock
     private AuthService authService;
 
+    @Mock
+    private RateLimitService rateLimitService;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
     @InjectMocks
     private AuthController authController;
 
@@ -121,6 +139,30 @@ class AuthControllerIntegrationTest {
                 .andExpect(jsonPath("$.username").value("TestUsername"));
     }
 
+    @Test
+    void login_shouldBuildResponseFromAuthenticatedUser_withoutFetchingUserAgain() throws Exception {
+        AuthRequest request = new AuthRequest("TestUsername", "TestPassword1234@");
+
+        AuthenticatedUser principal = new AuthenticatedUser(validUser());
+        Authentication authentication =
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authentication);
+        when(jwtUtil.generateToken(principal)).thenReturn("fake-jwt-token");
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.SET_COOKIE, containsString("jwt=fake-jwt-token")))
+                .andExpect(jsonPath("$.username").value("TestUsername"))
+                .andExpect(jsonPath("$.email").value("test@example.com"))
+                .andExpect(jsonPath("$.firstName").value("TestFirstName"));
+
+        verify(authService, never()).findByUsername(any());
+    }
+
     @Test
     void login_shouldReturnUnauthorized_whenInvalidCredentials() throws Exception {
         AuthRequest request = new AuthRequest("TestUsername", "WrongPassword");
@@ -135,6 +177,53 @@ class AuthControllerIntegrationTest {
                 .andExpect(content().string("Incorrect username or password"));
     }
 
+    @Test
+    void login_shouldReturnTooManyRequests_withoutCheckingPassword_whenUsernameIsRateLimited() throws Exception {
+        AuthRequest request = new AuthRequest("TestUsername", "WrongPassword");
+
+        doThrow(new TooManyRequestsException("Too many login attempts, please try again later", 12))
+                .when(rateLimitService).checkLoginUsername("TestUsername");
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "12"))
+                .andExpect(content().string("Too many login attempts, please try again later"));
+
+        verify(authenticationManager, never()).authenticate(any());
+    }
+
+    // =====================================================
+    // LOGOUT
+    // =====================================================
+
+    @Test
+    void logout_shouldRevokeToken_andClearCookie() throws Exception {
+        JwtClaims claims = new JwtClaims("TestUsername", Instant.now(), Instant.now().plusSeconds(3600),
+                JwtUtil.digest("jwt-token"), "user-id", Set.of(Role.PATIENT), 0L);
+        when(jwtUtil.verifyToken("jwt-token")).thenReturn(claims);
+
+        mockMvc.perform(post("/auth/logout")
+                        .cookie(new Cookie("jwt", "jwt-token")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.SET_COOKIE, containsString("Max-Age=0")));
+
+        verify(tokenRevocationService).revoke(claims);
+    }
+
+    @Test
+    void logout_shouldStillClearCookie_whenTokenIsInvalid() throws Exception {
+        when(jwtUtil.verifyToken("broken")).thenThrow(new MalformedJwtException("broken"));
+
+        mockMvc.perform(post("/auth/logout")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer broken"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Logout successful!"));
+
+        verify(tokenRevocationService, never()).revoke(any());
+    }
+
     // =====================================================
     // CHECK AUTHENTICATION
     // =====================================================
@@ -159,6 +248,23 @@ class AuthControllerIntegrationTest {
                 .andExpect(jsonPath("$.roles[0]").value("PATIENT"));
     }
 
+    @Test
+    void checkAuthentication_shouldFetchUserOnce_whenPrincipalIsBuiltFromToken() throws Exception {
+        AuthenticatedUser principal = new AuthenticatedUser("user-id", "TestUsername", Set.of(Role.PATIENT), 0);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())
+        );
+
+        when(authService.findByUsername("TestUsername")).thenReturn(validUser());
+
+        mockMvc.perform(get("/auth/check"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("test@example.com"));
+
+        verify(authService, times(1)).findByUsername("TestUsername");
+    }
+
     @Test
     void checkAuthentication_shouldReturnUnauthorized_whenNotAuthenticated() throws Exception {
         SecurityContextHolder.clearContext();
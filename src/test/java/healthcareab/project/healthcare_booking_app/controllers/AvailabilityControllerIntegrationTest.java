@@ -4,11 +4,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import healthcareab.project.healthcare_booking_app.dto.AvailabilityRequest;
+import healthcareab.project.healthcare_booking_app.dto.PageResponse;
 import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
 import healthcareab.project.healthcare_booking_app.models.Availability;
 import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.repositories.IdempotencyRecordRepository;
 import healthcareab.project.healthcare_booking_app.services.AvailabilityService;
+import healthcareab.project.healthcare_booking_app.services.IdempotencyService;
+import healthcareab.project.healthcare_booking_app.utils.NdjsonWriter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -25,6 +30,7 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -48,17 +54,19 @@ class AvailabilityControllerIntegrationTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
         availabilityService = mock(AvailabilityService.class);
-        availabilityController = new AvailabilityController(availabilityService);
+        IdempotencyService idempotencyService = new IdempotencyService(
+                mock(IdempotencyRecordRepository.class), objectMapper, 100, 24);
+        availabilityController = new AvailabilityController(availabilityService, new NdjsonWriter(objectMapper), idempotencyService);
 
         mockMvc = MockMvcBuilders.standaloneSetup(availabilityController)
                 .setControllerAdvice(new healthcareab.project.healthcare_booking_app.exceptions.GlobalExceptionHandler())
                 .build();
 
-        objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-
         SecurityContextHolder.clearContext();
 
         provider = new User("ProviderUser", "encoded", "provider@example.com", "First", "Last", null);
@@ -74,11 +82,7 @@ class AvailabilityControllerIntegrationTest {
     // Helper: mock authentication
     // ------------------------------
     private void mockAuthenticatedUser(User user) {
-        UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .authorities(user.getRoles().stream().map(r -> "ROLE_" + r.name()).toArray(String[]::new))
-                .build();
+        UserDetails userDetails = new AuthenticatedUser(user);
 
         SecurityContextHolder.getContext().setAuthentication(
                 new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities())
@@ -126,6 +130,26 @@ class AvailabilityControllerIntegrationTest {
                 .andExpect(jsonPath("$.providerId").value("provider-id"));
     }
 
+    @Test
+    void createAvailability_shouldReplayFirstResponse_forSameIdempotencyKey() throws Exception {
+        mockAuthenticatedUser(provider);
+
+        AvailabilityRequest request = validRequest();
+        when(availabilityService.createAvailability(request.getDate(), request.getStartTime(), request.getEndTime()))
+                .thenReturn(validAvailability());
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(post("/availability/create")
+                            .header(IdempotencyService.HEADER, "retry-1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").value("avail-1"));
+        }
+
+        verify(availabilityService, times(1)).createAvailability(any(), any(), any());
+    }
+
     @Test
     void createAvailability_shouldReturnUnauthorized_whenPatientTries() throws Exception {
         mockAuthenticatedUser(patient);
@@ -162,6 +186,67 @@ class AvailabilityControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].id").value("avail-1"));
     }
 
+    @Test
+    void getAvailability_shouldAnswerNotModified_withoutReading_whenEtagMatches() throws Exception {
+        mockAuthenticatedUser(provider);
+
+        when(availabilityService.getAvailabilityEtag("provider-id", LocalDate.of(2026, 1, 14), LocalDate.of(2026, 1, 16), null, null))
+                .thenReturn("\"v1\"");
+
+        mockMvc.perform(get("/availability/all")
+                        .param("providerId", "provider-id")
+                        .param("from", "2026-01-14")
+                        .param("to", "2026-01-16")
+                        .header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v1\""));
+
+        verify(availabilityService, never()).getAvailabilitiesForProvider(any(), any(), any());
+    }
+
+    @Test
+    void streamAvailability_shouldWriteOneJsonObjectPerLine() throws Exception {
+        mockAuthenticatedUser(provider);
+
+        Availability first = validAvailability();
+        Availability second = validAvailability();
+        second.setId("avail-2");
+        second.setStartTime(LocalTime.of(10, 0));
+        second.setEndTime(LocalTime.of(11, 0));
+
+        when(availabilityService.streamAvailabilitiesForProvider("provider-id", first.getDate(), first.getDate().plusDays(1)))
+                .thenReturn(Stream.of(first, second));
+
+        mockMvc.perform(get("/availability/stream")
+                        .param("providerId", "provider-id")
+                        .param("from", "2026-01-15")
+                        .param("to", "2026-01-16"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andExpect(content().string(
+                        "{\"id\":\"avail-1\",\"providerId\":\"provider-id\",\"date\":\"2026-01-15\",\"startTime\":\"09:00:00\",\"endTime\":\"10:00:00\",\"isAvailable\":true}\n"
+                                + "{\"id\":\"avail-2\",\"providerId\":\"provider-id\",\"date\":\"2026-01-15\",\"startTime\":\"10:00:00\",\"endTime\":\"11:00:00\",\"isAvailable\":true}\n"));
+    }
+
+    @Test
+    void getAvailability_shouldReturnPage_whenLimitGiven() throws Exception {
+        mockAuthenticatedUser(provider);
+
+        Availability availability = validAvailability();
+
+        when(availabilityService.getAvailabilityPageForCurrentProvider(
+                availability.getDate(), availability.getDate().plusDays(1), null, 1))
+                .thenReturn(new PageResponse<>(List.of(availability), "next-cursor"));
+
+        mockMvc.perform(get("/availability/all")
+                        .param("from", "2026-01-15")
+                        .param("to", "2026-01-16")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("avail-1"))
+                .andExpect(jsonPath("$.nextCursor").value("next-cursor"));
+    }
+
     // =====================================================
     // UPDATE AVAILABILITY
     // =====================================================
@@ -0,0 +1,94 @@
+package healthcareab.project.healthcare_booking_app.filters;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.services.CustomUserDetailsService;
+import healthcareab.project.healthcare_booking_app.services.TokenRevocationService;
+import healthcareab.project.healthcare_booking_app.services.TokenVersionService;
+import healthcareab.project.healthcare_booking_app.utils.JwtClaims;
+import healthcareab.project.healthcare_booking_app.utils.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+
+    @Mock
+    private TokenVersionService tokenVersionService;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        jwtUtil = new JwtUtil("test-secret-that-is-long-enough-for-hs256", 3600000, 100);
+        jwtAuthenticationFilter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, tokenVersionService,
+                tokenRevocationService);
+
+        user = new User("TestUsername", "encoded", "test@example.com", "John", "Doe", null);
+        user.setId("user-id");
+        user.setRoles(Set.of(Role.PATIENT));
+        when(userDetailsService.loadUserByUsername("TestUsername")).thenReturn(new AuthenticatedUser(user));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_shouldAuthenticateLegacyToken_whileUserTokensWereNeverRevoked() throws Exception {
+        when(tokenVersionService.isCurrent("user-id", JwtClaims.LEGACY_TOKEN_VERSION)).thenReturn(true);
+
+        filter(legacyToken());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("TestUsername");
+    }
+
+    @Test
+    void doFilter_shouldRejectLegacyToken_afterUserTokensWereRevoked() throws Exception {
+        when(tokenVersionService.isCurrent("user-id", JwtClaims.LEGACY_TOKEN_VERSION)).thenReturn(false);
+
+        filter(legacyToken());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    // a token as issued before identity claims were added, it only carries the username
+    private String legacyToken() {
+        return jwtUtil.generateToken(org.springframework.security.core.userdetails.User.builder()
+                .username("TestUsername")
+                .password("encoded")
+                .authorities("ROLE_PATIENT")
+                .build());
+    }
+
+    private void filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        jwtAuthenticationFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+}
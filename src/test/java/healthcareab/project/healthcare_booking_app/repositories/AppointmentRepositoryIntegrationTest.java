@@ -0,0 +1,65 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.models.Appointment;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AppointmentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@DataMongoTest
+class AppointmentRepositoryIntegrationTest {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private final LocalDate from = LocalDate.of(2026, 3, 2);
+    private final LocalDate to = LocalDate.of(2026, 3, 6);
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAll();
+        appointmentRepository.saveAll(List.of(
+                appointment(from.minusDays(1), LocalTime.of(9, 0)),
+                appointment(from, LocalTime.of(9, 0)),
+                appointment(from.plusDays(2), LocalTime.of(9, 0)),
+                appointment(to, LocalTime.of(16, 0)),
+                appointment(to.plusDays(1), LocalTime.of(9, 0))
+        ));
+    }
+
+    @Test
+    void streams_shouldIncludeBothBoundaryDays_likeThePages() {
+        List<LocalDate> paged = appointmentRepository.findPageByProviderId("provider-1", from, to, null, 50)
+                .stream().map(Appointment::getDate).toList();
+
+        try (Stream<Appointment> byProvider = appointmentRepository.streamByProviderId("provider-1", from, to);
+             Stream<Appointment> byPatient = appointmentRepository.streamByPatientId("patient-1", from, to)) {
+            assertThat(byProvider.map(Appointment::getDate).toList())
+                    .containsExactly(from, from.plusDays(2), to)
+                    .isEqualTo(paged);
+            assertThat(byPatient.map(Appointment::getDate).toList())
+                    .containsExactly(from, from.plusDays(2), to);
+        }
+    }
+
+    private Appointment appointment(LocalDate date, LocalTime startTime) {
+        Appointment appointment = new Appointment();
+        appointment.setPatientId("patient-1");
+        appointment.setProviderId("provider-1");
+        appointment.setDate(date);
+        appointment.setStartTime(startTime);
+        appointment.setEndTime(startTime.plusHours(1));
+        appointment.setStatus(AppointmentStatus.BOOKED);
+        return appointment;
+    }
+}
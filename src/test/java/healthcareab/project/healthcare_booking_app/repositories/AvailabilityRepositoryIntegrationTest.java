@@ -1,6 +1,8 @@
 package healthcareab.project.healthcare_booking_app.repositories;
 
 import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.SlotSplit;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import java.time.LocalTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @ActiveProfiles("test")
 @DataMongoTest
@@ -97,5 +100,171 @@ class AvailabilityRepositoryIntegrationTest {
                 );
         assertThat(result).isEmpty();
     }
-}
 
+    @Test
+    void findOverlapping_shouldIncludeBothBoundaryDays_butNotBlocksThatOnlyTouch() {
+        LocalDate from = LocalDate.of(2026, 1, 10);
+        LocalDate to = LocalDate.of(2026, 1, 15);
+
+        assertThat(availabilityRepository.findOverlapping("provider-1", from, to, LocalTime.of(8, 30), LocalTime.of(10, 0)))
+                .extracting(Availability::getId)
+                .containsExactlyInAnyOrder(availability1.getId(), availability2.getId());
+        assertThat(availabilityRepository.findOverlapping("provider-1", from, to, LocalTime.of(9, 0), LocalTime.of(10, 0)))
+                .isEmpty();
+    }
+
+    @Test
+    void findPageByProviderIdAndDateBetween_shouldContinueAfterCursor_inDateAndTimeOrder() {
+        Availability sameDayLater = new Availability();
+        sameDayLater.setProviderId("provider-1");
+        sameDayLater.setDate(LocalDate.of(2026, 1, 10));
+        sameDayLater.setStartTime(LocalTime.of(10, 0));
+        sameDayLater.setEndTime(LocalTime.of(11, 0));
+        sameDayLater.setIsAvailable(true);
+        availabilityRepository.save(sameDayLater);
+
+        LocalDate from = LocalDate.of(2026, 1, 1);
+        LocalDate to = LocalDate.of(2026, 1, 31);
+
+        List<Availability> firstPage =
+                availabilityRepository.findPageByProviderIdAndDateBetween("provider-1", from, to, null, 2);
+        assertThat(firstPage)
+                .extracting(Availability::getId)
+                .containsExactly(availability1.getId(), sameDayLater.getId());
+
+        Availability last = firstPage.get(1);
+        KeysetCursor cursor = new KeysetCursor(last.getDate(), last.getStartTime(), last.getId());
+        List<Availability> secondPage =
+                availabilityRepository.findPageByProviderIdAndDateBetween("provider-1", from, to, cursor, 2);
+        assertThat(secondPage)
+                .extracting(Availability::getId)
+                .containsExactly(availability2.getId());
+    }
+
+    @Test
+    void claimAvailableSlot_shouldSplitBlock_andReleaseAndMergeShouldJoinItBack() {
+        LocalDate date = LocalDate.of(2026, 1, 10);
+
+        Availability claimed = availabilityRepository
+                .claimAvailableSlot("provider-1", date, LocalTime.of(8, 15), LocalTime.of(8, 30))
+                .orElseThrow();
+
+        assertThat(claimed.getStartTime()).isEqualTo(LocalTime.of(8, 0));
+        assertThat(availabilityRepository.findFreeBlocks("provider-1", date))
+                .extracting(Availability::getStartTime, Availability::getEndTime)
+                .containsExactlyInAnyOrder(
+                        tuple(LocalTime.of(8, 0), LocalTime.of(8, 15)),
+                        tuple(LocalTime.of(8, 30), LocalTime.of(9, 0))
+                );
+
+        Availability merged = availabilityRepository.releaseAndMerge(claimed.getId()).orElseThrow();
+
+        assertThat(merged.getStartTime()).isEqualTo(LocalTime.of(8, 0));
+        assertThat(merged.getEndTime()).isEqualTo(LocalTime.of(9, 0));
+        assertThat(availabilityRepository.findFreeBlocks("provider-1", date))
+                .extracting(Availability::getId)
+                .containsExactly(claimed.getId());
+    }
+
+    @Test
+    void claimAvailableSlot_shouldRejectRange_acrossAdjacentFreePieces() {
+        LocalDate date = LocalDate.of(2026, 1, 12);
+        for (LocalTime start : List.of(LocalTime.of(9, 0), LocalTime.of(10, 0))) {
+            Availability piece = new Availability();
+            piece.setProviderId("provider-1");
+            piece.setDate(date);
+            piece.setStartTime(start);
+            piece.setEndTime(start.plusHours(1));
+            piece.setIsAvailable(true);
+            availabilityRepository.save(piece);
+        }
+
+        assertThat(availabilityRepository.claimAvailableSlot("provider-1", date, LocalTime.of(9, 30), LocalTime.of(10, 30)))
+                .isEmpty();
+        assertThat(availabilityRepository.claimAvailableSlot("provider-1", date, LocalTime.of(10, 0), LocalTime.of(10, 30)))
+                .isPresent();
+    }
+
+    @Test
+    void claimAvailableSlot_shouldInsertPiecesOfTheSplit_andRestoreSlotShouldRemoveThemById() {
+        LocalDate date = LocalDate.of(2026, 1, 10);
+
+        Availability claimed = availabilityRepository
+                .claimAvailableSlot("provider-1", date, LocalTime.of(8, 15), LocalTime.of(8, 30))
+                .orElseThrow();
+        SlotSplit split = new SlotSplit(claimed, LocalTime.of(8, 15), LocalTime.of(8, 30));
+
+        assertThat(availabilityRepository.findFreeBlocks("provider-1", date))
+                .extracting(Availability::getId)
+                .containsExactlyInAnyOrderElementsOf(split.freePieces().stream().map(Availability::getId).toList());
+
+        availabilityRepository.restoreSlot(split);
+
+        assertThat(availabilityRepository.findFreeBlocks("provider-1", date))
+                .extracting(Availability::getId, Availability::getStartTime, Availability::getEndTime)
+                .containsExactly(tuple(claimed.getId(), LocalTime.of(8, 0), LocalTime.of(9, 0)));
+    }
+
+    @Test
+    void releaseAndMerge_shouldLeaveFreePiecesAlone_whenBlockIsNotBooked() {
+        LocalDate date = LocalDate.of(2026, 1, 10);
+        Availability claimed = availabilityRepository
+                .claimAvailableSlot("provider-1", date, LocalTime.of(8, 15), LocalTime.of(8, 30))
+                .orElseThrow();
+        availabilityRepository.releaseAndMerge(claimed.getId()).orElseThrow();
+
+        assertThat(availabilityRepository.releaseAndMerge(claimed.getId())).isEmpty();
+        assertThat(availabilityRepository.findFreeBlocks("provider-1", date))
+                .extracting(Availability::getId, Availability::getStartTime, Availability::getEndTime)
+                .containsExactly(tuple(claimed.getId(), LocalTime.of(8, 0), LocalTime.of(9, 0)));
+    }
+
+    @Test
+    void applySplits_shouldSkipBlockThatChanged_andStillApplyTheRest() {
+        LocalDate date = LocalDate.of(2026, 1, 10);
+        SlotSplit stale = new SlotSplit(availability1, LocalTime.of(8, 15), LocalTime.of(8, 30));
+        SlotSplit fresh = new SlotSplit(availability2, LocalTime.of(8, 0), LocalTime.of(8, 30));
+
+        // the block is booked by someone else after the lane read it
+        availabilityRepository.claimAvailableSlot("provider-1", date, LocalTime.of(8, 30), LocalTime.of(8, 45))
+                .orElseThrow();
+
+        List<SlotSplit> missed = availabilityRepository.applySplits(List.of(stale, fresh));
+
+        assertThat(missed).containsExactly(stale);
+        assertThat(availabilityRepository.findFreeBlocks("provider-1", date))
+                .extracting(Availability::getStartTime, Availability::getEndTime)
+                .containsExactlyInAnyOrder(
+                        tuple(LocalTime.of(8, 0), LocalTime.of(8, 30)),
+                        tuple(LocalTime.of(8, 45), LocalTime.of(9, 0))
+                );
+        assertThat(availabilityRepository.findFreeBlocks("provider-1", LocalDate.of(2026, 1, 15)))
+                .extracting(Availability::getStartTime, Availability::getEndTime)
+                .containsExactly(tuple(LocalTime.of(8, 30), LocalTime.of(9, 0)));
+    }
+
+    @Test
+    void findPageByProviderIdAndDateBetween_shouldContinueAfterStoredOccurrence_onSameStart() {
+        // a booked template occurrence is stored under its string id, next to a block with an ObjectId
+        Availability occurrence = new Availability();
+        occurrence.setId("template-1_20260110");
+        occurrence.setProviderId("provider-1");
+        occurrence.setDate(availability1.getDate());
+        occurrence.setStartTime(availability1.getStartTime());
+        occurrence.setEndTime(availability1.getEndTime());
+        occurrence.setIsAvailable(false);
+        occurrence.setTemplateId("template-1");
+        availabilityRepository.insert(occurrence);
+        LocalDate from = LocalDate.of(2026, 1, 1);
+        LocalDate to = LocalDate.of(2026, 1, 31);
+
+        List<Availability> firstPage =
+                availabilityRepository.findPageByProviderIdAndDateBetween("provider-1", from, to, null, 1);
+        assertThat(firstPage).extracting(Availability::getId).containsExactly(occurrence.getId());
+
+        KeysetCursor cursor = new KeysetCursor(occurrence.getDate(), occurrence.getStartTime(), occurrence.getId());
+        assertThat(availabilityRepository.findPageByProviderIdAndDateBetween("provider-1", from, to, cursor, 2))
+                .extracting(Availability::getId)
+                .containsExactly(availability1.getId(), availability2.getId());
+    }
+}
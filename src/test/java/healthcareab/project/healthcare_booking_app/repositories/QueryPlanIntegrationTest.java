@@ -0,0 +1,241 @@
+package healthcareab.project.healthcare_booking_app.repositories;
+
+import healthcareab.project.healthcare_booking_app.config.MongoIndexConfig;
+import healthcareab.project.healthcare_booking_app.models.Appointment;
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every repository query with the profiler on, then explains the exact command that was sent
+ * and fails if the winning plan scans the whole collection instead of an index.
+ */
+@ActiveProfiles("test")
+@DataMongoTest
+class QueryPlanIntegrationTest {
+    // fields of the profiled command that explain does not accept
+    private static final Set<String> SESSION_FIELDS = Set.of("lsid", "txnNumber", "readConcern", "readPreference");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @Autowired
+    private AvailabilityRepository availabilityRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private AvailabilityTemplateRepository availabilityTemplateRepository;
+
+    private final LocalDate date = LocalDate.of(2026, 1, 15);
+
+    @BeforeEach
+    void setUp() {
+        new MongoIndexConfig(mongoTemplate, mappingContext).ensureIndexes();
+    }
+
+    @AfterEach
+    void tearDown() {
+        setProfilingLevel(0);
+    }
+
+    @Test
+    void availabilityQueries_shouldUseIndexScans() {
+        assertUsesIndex("availability", "findByProviderIdAndDateBetween",
+                () -> availabilityRepository.findByProviderIdAndDateBetween("provider-1", date, date.plusDays(7)));
+        assertUsesIndex("availability", "findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc",
+                () -> availabilityRepository.findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(
+                        "provider-1", date, date.plusDays(7)));
+        assertUsesIndex("availability", "streamByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc", () -> {
+            try (var availabilities = availabilityRepository.streamByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(
+                    "provider-1", date, date.plusDays(7))) {
+                availabilities.count();
+            }
+        });
+        assertUsesIndex("availability", "findPageByProviderIdAndDateBetween",
+                () -> availabilityRepository.findPageByProviderIdAndDateBetween("provider-1", date, date.plusDays(7),
+                        new KeysetCursor(date.plusDays(1), LocalTime.of(9, 0), "000000000000000000000000"), 100));
+        assertUsesIndex("availability", "isTimeAvailable",
+                () -> availabilityRepository.isTimeAvailable("provider-1", date, LocalTime.of(9, 0), LocalTime.of(10, 0)));
+        assertUsesIndex("availability", "findAvailableSlot",
+                () -> availabilityRepository.findAvailableSlot("provider-1", date, LocalTime.of(9, 0), LocalTime.of(10, 0)));
+        assertUsesIndex("availability", "findFreeBlocks",
+                () -> availabilityRepository.findFreeBlocks("provider-1", date));
+        assertUsesIndex("availability", "claimAvailableSlot",
+                () -> availabilityRepository.claimAvailableSlot("provider-1", date, LocalTime.of(9, 0), LocalTime.of(10, 0)));
+        assertUsesIndex("availability", "findById",
+                () -> availabilityRepository.findById("000000000000000000000000"));
+    }
+
+    @Test
+    void appointmentQueries_shouldUseIndexScans() {
+        assertUsesIndex("appointment", "streamByProviderId", () -> {
+            try (var appointments = appointmentRepository.streamByProviderId(
+                    "provider-1", date, date.plusDays(7))) {
+                appointments.count();
+            }
+        });
+        assertUsesIndex("appointment", "streamByPatientId", () -> {
+            try (var appointments = appointmentRepository.streamByPatientId(
+                    "patient-1", date, date.plusDays(7))) {
+                appointments.count();
+            }
+        });
+        assertUsesIndex("appointment", "findPageByPatientId",
+                () -> appointmentRepository.findPageByPatientId("patient-1", null, null,
+                        new KeysetCursor(date, LocalTime.of(9, 0), "65a000000000000000000000"), 51));
+        assertUsesIndex("appointment", "findPageByProviderId",
+                () -> appointmentRepository.findPageByProviderId("provider-1", date, date.plusDays(7), null, 51));
+        assertUsesIndex("appointment", "appointments by patient", () -> mongoTemplate.find(
+                Query.query(Criteria.where("patientId").is("patient-1"))
+                        .with(Sort.by("date", "startTime")),
+                Appointment.class));
+        assertUsesIndex("appointment", "appointments by provider and day", () -> mongoTemplate.find(
+                Query.query(Criteria.where("providerId").is("provider-1").and("date").is(date))
+                        .with(Sort.by("startTime")),
+                Appointment.class));
+    }
+
+    @Test
+    void userQueries_shouldUseIndexScans() {
+        assertUsesIndex("users", "findByUsername", () -> userRepository.findByUsername("username"));
+        assertUsesIndex("users", "findByEmail", () -> userRepository.findByEmail("user@example.com"));
+        assertUsesIndex("users", "findTokenVersionById", () -> userRepository.findTokenVersionById("user-id"));
+        assertUsesIndex("users", "findProfilesByIdIn", () -> userRepository.findProfilesByIdIn(Set.of("user-1", "user-2")));
+        assertUsesIndex("users", "findNamesByIdIn", () -> userRepository.findNamesByIdIn(Set.of("user-1", "user-2")));
+        assertUsesIndex("users", "streamProviders", () -> {
+            try (var providers = userRepository.streamProviders()) {
+                providers.count();
+            }
+        });
+    }
+
+    @Test
+    void revokedTokenQueries_shouldUseIndexScans() {
+        assertUsesIndex("revoked_tokens", "existsById", () -> revokedTokenRepository.existsById("digest"));
+        assertUsesIndex("revoked_tokens", "streamByExpiresAtAfter", () -> {
+            try (var revokedTokens = revokedTokenRepository.streamByExpiresAtAfter(Instant.now())) {
+                revokedTokens.count();
+            }
+        });
+    }
+
+    @Test
+    void cancelAndReleaseQueries_shouldUseIndexScans() {
+        // the filters of AppointmentRepository.cancel and of releaseAndMerge, run as finds so they can be explained
+        assertUsesIndex("appointment", "cancel", () -> mongoTemplate.find(
+                Query.query(Criteria.where("_id").is("65a000000000000000000000").and("status").ne("CANCELLED")),
+                Appointment.class));
+        assertUsesIndex("availability", "booked block to release", () -> mongoTemplate.find(
+                Query.query(Criteria.where("_id").is("65a000000000000000000000")
+                        .and("isAvailable").is(false)
+                        .and("startTime").is(LocalTime.of(9, 0))
+                        .and("endTime").is(LocalTime.of(10, 0))),
+                Availability.class));
+        assertUsesIndex("availability", "free piece before the released block", () -> mongoTemplate.find(
+                Query.query(Criteria.where("providerId").is("provider-1").and("date").is(date)
+                        .and("isAvailable").is(true).and("endTime").is(LocalTime.of(9, 0))),
+                Availability.class));
+        assertUsesIndex("availability", "free piece after the released block", () -> mongoTemplate.find(
+                Query.query(Criteria.where("providerId").is("provider-1").and("date").is(date)
+                        .and("isAvailable").is(true).and("startTime").is(LocalTime.of(10, 0))),
+                Availability.class));
+        assertUsesIndex("availability", "free piece of a split", () -> mongoTemplate.find(
+                Query.query(Criteria.where("_id").is("65a000000000000000000000").and("isAvailable").is(true)),
+                Availability.class));
+    }
+
+    @Test
+    void templateQueries_shouldUseIndexScans() {
+        assertUsesIndex("availability_templates", "findByProviderId",
+                () -> availabilityTemplateRepository.findByProviderId("provider-1"));
+        assertUsesIndex("availability_templates", "findOverlapping",
+                () -> availabilityTemplateRepository.findOverlapping("provider-1", date, date.plusDays(7)));
+        assertUsesIndex("availability_templates", "findById",
+                () -> availabilityTemplateRepository.findById("000000000000000000000000"));
+    }
+
+    @Test
+    void idempotencyQueries_shouldUseIndexScans() {
+        assertUsesIndex("idempotency_keys", "findById", () -> idempotencyRecordRepository.findById("key-digest"));
+    }
+
+    private void assertUsesIndex(String collection, String description, Runnable query) {
+        // start from an empty profile so the only entry is the query under test
+        setProfilingLevel(0);
+        mongoTemplate.getCollection("system.profile").drop();
+        setProfilingLevel(2);
+
+        query.run();
+
+        String namespace = mongoTemplate.getDb().getName() + "." + collection;
+        Document profiled = mongoTemplate.getCollection("system.profile")
+                .find(new Document("ns", namespace).append("op", new Document("$in", List.of("query", "command"))))
+                .sort(new Document("ts", -1))
+                .first();
+        assertThat(profiled).as("profiled command for %s", description).isNotNull();
+
+        Document command = new Document(profiled.get("command", Document.class));
+        command.keySet().removeIf(key -> key.startsWith("$") || SESSION_FIELDS.contains(key));
+        Document explain = mongoTemplate.getDb().runCommand(
+                new Document("explain", command).append("verbosity", "queryPlanner")
+        );
+
+        List<String> stages = new ArrayList<>();
+        collectStages(explain.get("queryPlanner", Document.class).get("winningPlan"), stages);
+
+        assertThat(stages)
+                .as("winning plan of %s: %s", description, stages)
+                .doesNotContain("COLLSCAN")
+                .anyMatch(stage -> stage.contains("IXSCAN") || stage.contains("IDHACK"));
+    }
+
+    // plans are trees of { stage, inputStage | inputStages }, newer servers nest them one level deeper
+    private void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
+    private void setProfilingLevel(int level) {
+        mongoTemplate.getDb().runCommand(new Document("profile", level));
+    }
+}
@@ -49,6 +49,17 @@ class UserRepositoryIntegrationTest {
         assertThat(result.get().getEmail()).isEqualTo("test@example.com");
     }
 
+    @Test
+    void updateRolesAndIncrementTokenVersion_shouldChangeBothInOneWrite() {
+        Optional<User> updated = userRepository.updateRolesAndIncrementTokenVersion(user.getId(), Set.of(Role.PROVIDER));
+
+        assertThat(updated).isPresent();
+        assertThat(updated.get().getRoles()).containsExactly(Role.PROVIDER);
+        assertThat(updated.get().getTokenVersion()).isEqualTo(1);
+        assertThat(userRepository.findTokenVersionById(user.getId()).orElseThrow().getTokenVersion()).isEqualTo(1);
+        assertThat(userRepository.updateRolesAndIncrementTokenVersion("missing-id", Set.of(Role.PROVIDER))).isEmpty();
+    }
+
     @Test
     void findByUsername_shouldReturnEmpty_whenUserDoesNotExist() {
         Optional<User> result = userRepository.findByUsername("unknownUser");
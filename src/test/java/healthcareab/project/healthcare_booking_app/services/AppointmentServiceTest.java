@@ -0,0 +1,338 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.dto.AppointmentRequest;
+import healthcareab.project.healthcare_booking_app.dto.AppointmentResponse;
+import healthcareab.project.healthcare_booking_app.dto.PageResponse;
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
+import healthcareab.project.healthcare_booking_app.models.Appointment;
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AppointmentStatus;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AvailabilityEventType;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.SlotSplit;
+import healthcareab.project.healthcare_booking_app.repositories.AppointmentRepository;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class AppointmentServiceTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private AvailabilityService availabilityService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AvailabilityRepository availabilityRepository;
+
+    @Mock
+    private BookingLaneService bookingLaneService;
+
+    @Mock
+    private AvailabilityEventService availabilityEventService;
+
+    @InjectMocks
+    private AppointmentService appointmentService;
+
+    private final LocalDate date = LocalDate.of(2026, 2, 2);
+    private final LocalTime start = LocalTime.of(9, 0);
+    private final LocalTime end = LocalTime.of(9, 30);
+
+    private AppointmentRequest request;
+    private Availability slot;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        User patient = new User("patient", "pw", "patient@test.com", "Jane", "Doe", null);
+        patient.setId("patient-id");
+        patient.setRoles(Set.of(Role.PATIENT));
+
+        User provider = new User("provider", "pw", "provider@test.com", "John", "Doe", "Doctor");
+        provider.setId("provider-id");
+        provider.setRoles(Set.of(Role.PROVIDER));
+
+        when(userService.getCurrentUser()).thenReturn(patient);
+        when(userRepository.findById("provider-id")).thenReturn(Optional.of(provider));
+        when(availabilityService.isTimeAvailable("provider-id", date, start, end)).thenReturn(true);
+
+        request = new AppointmentRequest("provider-id", date, start, end);
+
+        slot = new Availability();
+        slot.setId("availability-id");
+        slot.setProviderId("provider-id");
+        slot.setDate(date);
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(10, 0));
+        slot.setIsAvailable(false);
+    }
+
+    @Test
+    void createAppointment_shouldClaimSlotAtomically_andInsertAppointment() {
+        when(availabilityRepository.claimAvailableSlot("provider-id", date, start, end)).thenReturn(Optional.of(slot));
+        when(appointmentRepository.insert(any(Appointment.class))).thenAnswer(i -> {
+            Appointment appointment = i.getArgument(0);
+            appointment.setId("appointment-id");
+            return appointment;
+        });
+
+        AppointmentResponse response = appointmentService.createAppointment(request);
+
+        assertThat(response.getId()).isEqualTo("appointment-id");
+        assertThat(response.getStatus()).isEqualTo(AppointmentStatus.BOOKED);
+
+        ArgumentCaptor<Appointment> captor = ArgumentCaptor.forClass(Appointment.class);
+        verify(appointmentRepository).insert(captor.capture());
+        assertThat(captor.getValue().getAvailabilityId()).isEqualTo("availability-id");
+        assertThat(captor.getValue().getPatientId()).isEqualTo("patient-id");
+
+        verify(availabilityRepository, never()).save(any());
+        verify(availabilityRepository, never()).restoreSlot(any());
+        verify(availabilityService).availabilityChanged("provider-id", date);
+        verify(availabilityEventService).publish(AvailabilityEventType.APPOINTMENT_BOOKED, "provider-id", date, start, end);
+    }
+
+    @Test
+    void createAppointment_shouldReject_whenSlotWasClaimedConcurrently() {
+        when(availabilityRepository.claimAvailableSlot("provider-id", date, start, end)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> appointmentService.createAppointment(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Selected time is not available");
+
+        verify(appointmentRepository, never()).insert(any(Appointment.class));
+    }
+
+    @Test
+    void createAppointment_shouldReleaseSlot_whenAppointmentInsertFails() {
+        when(availabilityRepository.claimAvailableSlot("provider-id", date, start, end)).thenReturn(Optional.of(slot));
+        when(appointmentRepository.insert(any(Appointment.class)))
+                .thenThrow(new DataAccessResourceFailureException("write failed"));
+
+        assertThatThrownBy(() -> appointmentService.createAppointment(request))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        verify(availabilityRepository).restoreSlot(new SlotSplit(slot, start, end));
+        verify(availabilityService).availabilityChanged("provider-id", date);
+    }
+
+    @Test
+    void createAppointment_shouldNotTouchDatabase_whenSlotScheduleSaysTaken() {
+        when(availabilityService.isTimeAvailable("provider-id", date, start, end)).thenReturn(false);
+
+        assertThatThrownBy(() -> appointmentService.createAppointment(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Selected time is not available");
+
+        verifyNoInteractions(availabilityRepository, appointmentRepository);
+    }
+
+    @Test
+    void createAppointment_shouldRestoreSlot_andReject_whenLaneBookedItFirst() {
+        when(availabilityRepository.claimAvailableSlot("provider-id", date, start, end)).thenReturn(Optional.of(slot));
+        when(appointmentRepository.insert(any(Appointment.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error index: booked_availability"));
+
+        assertThatThrownBy(() -> appointmentService.createAppointment(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Selected time is not available");
+
+        verify(availabilityRepository).restoreSlot(new SlotSplit(slot, start, end));
+    }
+
+    @Test
+    void createAppointmentAsync_shouldSubmitToLane_whenLanesAreEnabled() {
+        when(bookingLaneService.isEnabled()).thenReturn(true);
+        when(bookingLaneService.submit(any(Appointment.class))).thenAnswer(i -> {
+            Appointment appointment = i.getArgument(0);
+            appointment.setId("appointment-id");
+            return CompletableFuture.completedFuture(appointment);
+        });
+
+        AppointmentResponse response = appointmentService.createAppointmentAsync(request).join();
+
+        assertThat(response.getId()).isEqualTo("appointment-id");
+        assertThat(response.getPatientId()).isEqualTo("patient-id");
+        verifyNoInteractions(availabilityRepository, appointmentRepository);
+    }
+
+    @Test
+    void createAppointmentAsync_shouldBookDirectly_whenLanesAreDisabled() {
+        when(availabilityRepository.claimAvailableSlot("provider-id", date, start, end)).thenReturn(Optional.of(slot));
+        when(appointmentRepository.insert(any(Appointment.class))).thenAnswer(i -> i.getArgument(0));
+
+        assertThat(appointmentService.createAppointmentAsync(request)).isCompleted();
+        verify(bookingLaneService, never()).submit(any());
+    }
+
+    @Test
+    void cancelAppointment_shouldReleaseAndMergeSlot() {
+        Appointment appointment = bookedAppointment();
+        when(appointmentRepository.findById("appointment-id")).thenReturn(Optional.of(appointment));
+        when(appointmentRepository.cancel("appointment-id")).thenReturn(1L);
+
+        AppointmentResponse response = appointmentService.cancelAppointment("appointment-id");
+
+        assertThat(response.getStatus()).isEqualTo(AppointmentStatus.CANCELLED);
+        verify(availabilityRepository).releaseAndMerge("availability-id");
+        verify(availabilityService).availabilityChanged("provider-id", date);
+    }
+
+    @Test
+    void cancelAppointment_shouldNotReleaseTwice_whenAlreadyCancelled() {
+        when(appointmentRepository.findById("appointment-id")).thenReturn(Optional.of(bookedAppointment()));
+        when(appointmentRepository.cancel("appointment-id")).thenReturn(0L);
+
+        assertThatThrownBy(() -> appointmentService.cancelAppointment("appointment-id"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Appointment is already cancelled");
+
+        verify(availabilityRepository, never()).releaseAndMerge(any());
+    }
+
+    @Test
+    void cancelAppointment_shouldReject_whenAppointmentBelongsToSomeoneElse() {
+        Appointment appointment = bookedAppointment();
+        appointment.setPatientId("other-patient-id");
+        when(appointmentRepository.findById("appointment-id")).thenReturn(Optional.of(appointment));
+
+        assertThatThrownBy(() -> appointmentService.cancelAppointment("appointment-id"))
+                .isInstanceOf(UnauthorizedException.class);
+
+        verify(appointmentRepository, never()).cancel(any());
+    }
+
+    @Test
+    void getMyAppointments_shouldReturnPageWithCursor_whenMoreAppointmentsExist() {
+        Appointment first = bookedAppointment();
+        Appointment second = bookedAppointment();
+        second.setId("appointment-2");
+        second.setStartTime(LocalTime.of(10, 0));
+        Appointment third = bookedAppointment();
+        third.setId("appointment-3");
+        third.setStartTime(LocalTime.of(11, 0));
+        when(appointmentRepository.findPageByPatientId("patient-id", null, null, null, 3))
+                .thenReturn(List.of(first, second, third));
+
+        PageResponse<AppointmentResponse> page = appointmentService.getMyAppointments(null, null, null, 2);
+
+        assertThat(page.getItems()).extracting(AppointmentResponse::getId).containsExactly("appointment-id", "appointment-2");
+        KeysetCursor cursor = KeysetCursor.decode(page.getNextCursor());
+        assertThat(cursor.getId()).isEqualTo("appointment-2");
+        assertThat(cursor.getStartTime()).isEqualTo(LocalTime.of(10, 0));
+    }
+
+    @Test
+    void getMyAppointments_shouldReturnLastPageWithoutCursor() {
+        when(appointmentRepository.findPageByPatientId(eq("patient-id"), eq(date), isNull(), any(KeysetCursor.class), eq(51)))
+                .thenReturn(List.of(bookedAppointment()));
+        String cursor = new KeysetCursor(date, start, "appointment-0").encode();
+
+        PageResponse<AppointmentResponse> page = appointmentService.getMyAppointments(date, null, cursor, null);
+
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getMyAppointments_shouldResolveAllNamesOfPageWithOneQuery() {
+        Appointment withOtherProvider = bookedAppointment();
+        withOtherProvider.setId("appointment-2");
+        withOtherProvider.setProviderId("other-provider-id");
+        when(appointmentRepository.findPageByPatientId("patient-id", null, null, null, 51))
+                .thenReturn(List.of(bookedAppointment(), bookedAppointment(), withOtherProvider));
+
+        User provider = new User(null, null, null, "John", "Doe", null);
+        provider.setId("provider-id");
+        User otherProvider = new User(null, null, null, "Ann", "Smith", null);
+        otherProvider.setId("other-provider-id");
+        when(userRepository.findNamesByIdIn(any())).thenReturn(List.of(provider, otherProvider));
+
+        PageResponse<AppointmentResponse> page = appointmentService.getMyAppointments(null, null, null, null);
+
+        assertThat(page.getItems())
+                .extracting(AppointmentResponse::getPatientName, AppointmentResponse::getProviderName)
+                .containsExactly(
+                        tuple("Jane Doe", "John Doe"),
+                        tuple("Jane Doe", "John Doe"),
+                        tuple("Jane Doe", "Ann Smith")
+                );
+        verify(userRepository, times(1)).findNamesByIdIn(Set.of("provider-id", "other-provider-id"));
+    }
+
+    @Test
+    void getMyAppointments_shouldRejectLimitAboveMaximum() {
+        assertThatThrownBy(() -> appointmentService.getMyAppointments(null, null, null, 1000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getProviderAgenda_shouldUseOwnAgenda_forProvider() {
+        User provider = new User("provider", "pw", "provider@test.com", "John", "Doe", "Doctor");
+        provider.setId("provider-id");
+        provider.setRoles(Set.of(Role.PROVIDER));
+        when(userService.getCurrentUser()).thenReturn(provider);
+        when(appointmentRepository.findPageByProviderId("provider-id", null, null, null, 51))
+                .thenReturn(List.of(bookedAppointment()));
+
+        PageResponse<AppointmentResponse> page = appointmentService.getProviderAgenda("someone-else", null, null, null, null);
+
+        assertThat(page.getItems()).hasSize(1);
+        verify(appointmentRepository, never()).findPageByProviderId(eq("someone-else"), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getProviderAgenda_shouldReject_patient() {
+        assertThatThrownBy(() -> appointmentService.getProviderAgenda(null, null, null, null, null))
+                .isInstanceOf(UnauthorizedException.class);
+    }
+
+    private Appointment bookedAppointment() {
+        Appointment appointment = new Appointment();
+        appointment.setId("appointment-id");
+        appointment.setPatientId("patient-id");
+        appointment.setProviderId("provider-id");
+        appointment.setDate(date);
+        appointment.setStartTime(start);
+        appointment.setEndTime(end);
+        appointment.setStatus(AppointmentStatus.BOOKED);
+        appointment.setAvailabilityId("availability-id");
+        return appointment;
+    }
+}
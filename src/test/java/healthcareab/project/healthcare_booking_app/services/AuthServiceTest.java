@@ -1,5 +1,6 @@
 package healthcareab.project.healthcare_booking_app.services;
 
+import healthcareab.project.healthcare_booking_app.dto.BulkRegisterResponse;
 import healthcareab.project.healthcare_booking_app.dto.RegisterRequest;
 import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
 import healthcareab.project.healthcare_booking_app.exceptions.NameAlreadyBoundException;
@@ -8,14 +9,17 @@ import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import jakarta.validation.Validator;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -30,7 +34,13 @@ class AuthServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordEncoder;
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private ProviderDirectoryService providerDirectoryService;
 
     @InjectMocks
     private AuthService authService;
@@ -51,12 +61,10 @@ class AuthServiceTest {
         request.setLastName("TestLastName");
         request.setRoles(Set.of(Role.PATIENT));
 
-        when(userRepository.findByUsername("TestUsername")).thenReturn(Optional.empty());
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.empty());
         when(passwordEncoder.encode("TestPassword1234@")).thenReturn("encodedPassword");
 
         ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
-        when(userRepository.save(captor.capture())).thenAnswer(i -> i.getArgument(0));
+        when(userRepository.insert(captor.capture())).thenAnswer(i -> i.getArgument(0));
 
         User savedUser = authService.registerUser(request);
 
@@ -64,7 +72,10 @@ class AuthServiceTest {
         assertThat(savedUser.getEmail()).isEqualTo("test@example.com");
         assertThat(savedUser.getPassword()).isEqualTo("encodedPassword");
         assertThat(savedUser.getRoles()).containsExactly(Role.PATIENT);
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).insert(any(User.class));
+        verify(providerDirectoryService).upsert(savedUser);
+        verify(userRepository, never()).findByUsername(any());
+        verify(userRepository, never()).findByEmail(any());
     }
 
     @Test
@@ -94,7 +105,10 @@ class AuthServiceTest {
         RegisterRequest request = new RegisterRequest();
         request.setUsername("existingUser");
         request.setEmail("new@example.com");
-        when(userRepository.findByUsername("existingUser")).thenReturn(Optional.of(new User()));
+        request.setPassword("TestPassword1234@");
+        when(passwordEncoder.encode("TestPassword1234@")).thenReturn("encodedPassword");
+        when(userRepository.insert(any(User.class))).thenThrow(new DuplicateKeyException(
+                "E11000 duplicate key error collection: testdb.users index: username dup key: { username: \"existingUser\" }"));
 
         assertThatThrownBy(() -> authService.registerUser(request))
                 .isInstanceOf(NameAlreadyBoundException.class)
@@ -106,8 +120,10 @@ class AuthServiceTest {
         RegisterRequest request = new RegisterRequest();
         request.setUsername("newUser");
         request.setEmail("existing@example.com");
-        when(userRepository.findByUsername("newUser")).thenReturn(Optional.empty());
-        when(userRepository.findByEmail("existing@example.com")).thenReturn(Optional.of(new User()));
+        request.setPassword("TestPassword1234@");
+        when(passwordEncoder.encode("TestPassword1234@")).thenReturn("encodedPassword");
+        when(userRepository.insert(any(User.class))).thenThrow(new DuplicateKeyException(
+                "E11000 duplicate key error collection: testdb.users index: email dup key: { email: \"existing@example.com\" }"));
 
         assertThatThrownBy(() -> authService.registerUser(request))
                 .isInstanceOf(NameAlreadyBoundException.class)
@@ -147,6 +163,32 @@ class AuthServiceTest {
                 .hasMessageContaining("Username and email cannot be blank");
     }
 
+    @Test
+    void registerProviders_shouldHashInBatch_andReportFailedRows() {
+        RegisterRequest first = providerRequest("provider1", "provider1@example.com");
+        RegisterRequest duplicate = providerRequest("provider2", "provider2@example.com");
+        RegisterRequest blank = providerRequest("", "provider3@example.com");
+
+        when(passwordEncoder.encodeAll(any())).thenReturn(List.of("hash1", "hash2"));
+        when(userRepository.insertAllUnordered(any())).thenReturn(Map.of(
+                1, "E11000 duplicate key error collection: testdb.users index: email dup key: { email: \"provider2@example.com\" }"));
+
+        BulkRegisterResponse response = authService.registerProviders(List.of(first, duplicate, blank));
+
+        assertThat(response.getRequested()).isEqualTo(3);
+        assertThat(response.getRegisteredUsernames()).containsExactly("provider1");
+        assertThat(response.getErrors()).containsExactlyInAnyOrder(
+                "Row 2 (): Username and email cannot be blank",
+                "Row 1 (provider2): Email already exists"
+        );
+
+        ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
+        verify(userRepository).insertAllUnordered(captor.capture());
+        assertThat(captor.getValue()).extracting(User::getPassword).containsExactly("hash1", "hash2");
+        assertThat(captor.getValue()).allSatisfy(user -> assertThat(user.getRoles()).containsExactly(Role.PROVIDER));
+        verify(passwordEncoder, never()).encode(any());
+    }
+
     @Test
     void findByUsername_shouldThrow_whenUserNotFound() {
         when(userRepository.findByUsername("unknown")).thenReturn(Optional.empty());
@@ -155,4 +197,13 @@ class AuthServiceTest {
                 .isInstanceOf(UsernameNotFoundException.class)
                 .hasMessageContaining("User not found");
     }
+
+    private RegisterRequest providerRequest(String username, String email) {
+        RegisterRequest request = new RegisterRequest();
+        request.setUsername(username);
+        request.setEmail(email);
+        request.setPassword("TestPassword1234@");
+        request.setProfession("Doctor");
+        return request;
+    }
 }
@@ -0,0 +1,108 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+class AvailabilityCacheServiceTest {
+
+    private AvailabilityCacheService availabilityCacheService;
+
+    private final LocalDate monday = LocalDate.of(2026, 2, 2);
+    private final List<LocalDate[]> loadedRanges = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        availabilityCacheService = new AvailabilityCacheService(100, Duration.ofSeconds(60), 14,
+                Clock.fixed(Instant.parse("2026-02-01T10:00:00Z"), ZoneOffset.UTC));
+    }
+
+    @Test
+    void get_shouldOnlyLoadDaysThatAreNotCached() {
+        availabilityCacheService.get("provider-id", monday, monday.plusDays(1), this::load);
+        List<Availability> week = availabilityCacheService.get("provider-id", monday, monday.plusDays(4), this::load);
+
+        assertThat(week).extracting(Availability::getDate)
+                .containsExactly(monday, monday.plusDays(1), monday.plusDays(2), monday.plusDays(3), monday.plusDays(4));
+        assertThat(loadedRanges).hasSize(2);
+        assertThat(loadedRanges.get(1)).containsExactly(monday.plusDays(2), monday.plusDays(4));
+        assertThat(availabilityCacheService.getMetrics())
+                .containsEntry("hits", 2L)
+                .containsEntry("misses", 5L)
+                .containsEntry("loads", 2L);
+    }
+
+    @Test
+    void invalidate_shouldOnlyDropThatProviderAndDay() {
+        availabilityCacheService.get("provider-id", monday, monday.plusDays(2), this::load);
+
+        availabilityCacheService.invalidate("provider-id", monday.plusDays(1));
+        availabilityCacheService.get("provider-id", monday, monday.plusDays(2), this::load);
+
+        assertThat(loadedRanges.get(1)).containsExactly(monday.plusDays(1), monday.plusDays(1));
+    }
+
+    @Test
+    void get_shouldNotCacheDay_thatChangedWhileLoading() {
+        availabilityCacheService.get("provider-id", monday, monday, (first, last) -> {
+            // a booking lands between the query and the cache write
+            availabilityCacheService.invalidate("provider-id", monday);
+            return load(first, last);
+        });
+        availabilityCacheService.get("provider-id", monday, monday, this::load);
+
+        assertThat(loadedRanges).hasSize(2);
+    }
+
+    @Test
+    void get_shouldBypassCache_forLongRanges() {
+        availabilityCacheService.get("provider-id", monday, monday.plusDays(30), this::load);
+        availabilityCacheService.get("provider-id", monday, monday.plusDays(30), this::load);
+
+        assertThat(loadedRanges).hasSize(2);
+        assertThat(availabilityCacheService.getMetrics())
+                .containsEntry("bypassed", 2L)
+                .containsEntry("cachedDays", 0);
+    }
+
+    @Test
+    void etag_shouldOnlyChange_whenOneOfTheDaysChanges() {
+        String etag = availabilityCacheService.etag("provider-id", monday, monday.plusDays(4));
+
+        availabilityCacheService.invalidate("provider-id", monday.plusDays(7));
+        assertThat(availabilityCacheService.etag("provider-id", monday, monday.plusDays(4))).isEqualTo(etag);
+
+        availabilityCacheService.invalidate("provider-id", monday.plusDays(2));
+        assertThat(availabilityCacheService.etag("provider-id", monday, monday.plusDays(4))).isNotEqualTo(etag);
+        assertThat(availabilityCacheService.etag("provider-id", monday, monday.plusDays(4), "cursor"))
+                .isNotEqualTo(availabilityCacheService.etag("provider-id", monday, monday.plusDays(4)));
+    }
+
+    // one availability per day of the range, like the repository would return it
+    private List<Availability> load(LocalDate first, LocalDate last) {
+        loadedRanges.add(new LocalDate[]{first, last});
+        List<Availability> availabilities = new ArrayList<>();
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            Availability availability = new Availability();
+            availability.setProviderId("provider-id");
+            availability.setDate(day);
+            availability.setStartTime(LocalTime.of(9, 0));
+            availability.setEndTime(LocalTime.of(10, 0));
+            availabilities.add(availability);
+        }
+        return availabilities;
+    }
+}
@@ -0,0 +1,161 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AvailabilityEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ActiveProfiles("test")
+class AvailabilityEventServiceTest {
+
+    private AvailabilityEventService availabilityEventService;
+
+    private final LocalDate date = LocalDate.of(2026, 2, 2);
+
+    @BeforeEach
+    void setUp() {
+        availabilityEventService = new AvailabilityEventService(1, 4, 100, Duration.ofMinutes(30), Duration.ofHours(1),
+                Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        availabilityEventService.shutdown();
+    }
+
+    @Test
+    void publish_shouldOnlyReachStreamsFollowingTheProvider() {
+        RecordingEmitter follower = new RecordingEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        availabilityEventService.subscribe(List.of("provider-id"), follower);
+        availabilityEventService.subscribe(List.of("other-provider-id"), other);
+
+        availabilityEventService.publish(AvailabilityEventType.APPOINTMENT_BOOKED, "provider-id", date,
+                LocalTime.of(9, 0), LocalTime.of(9, 30));
+
+        await(() -> follower.sent.size() == 2);
+        assertThat(follower.sent.get(1)).contains("id:1").contains("event:APPOINTMENT_BOOKED");
+        assertThat(other.sent).hasSize(1);
+    }
+
+    @Test
+    void publish_shouldCloseStream_whoseBufferIsFull() {
+        RecordingEmitter slow = new RecordingEmitter();
+        availabilityEventService.subscribe(List.of("provider-id"), slow);
+        slow.writing = false;
+        slow.blocked = new CountDownLatch(1);
+
+        // the first event blocks the writer, the next four fill the buffer and the one after overflows it
+        for (int i = 0; i < 6; i++) {
+            availabilityEventService.publish(AvailabilityEventType.AVAILABILITY_CHANGED, "provider-id", date, null, null);
+            if (i == 0) {
+                await(() -> slow.writing);
+            }
+        }
+        slow.blocked.countDown();
+
+        // the buffered events were dropped with the stream, only the one being written gets through
+        await(() -> slow.completed);
+        assertThat(slow.sent).hasSize(2);
+        availabilityEventService.publish(AvailabilityEventType.AVAILABILITY_CHANGED, "provider-id", date, null, null);
+        assertThat(slow.sent).hasSize(2);
+    }
+
+    @Test
+    void publish_shouldKeepOtherStreamsFlowing_whenOneClientStopsReading() {
+        RecordingEmitter stalled = new RecordingEmitter();
+        RecordingEmitter healthy = new RecordingEmitter();
+        availabilityEventService.subscribe(List.of("stalled-provider-id"), stalled);
+        availabilityEventService.subscribe(List.of("provider-id"), healthy);
+        stalled.writing = false;
+        stalled.blocked = new CountDownLatch(1);
+
+        // the only dispatch thread gets stuck writing to the client that never reads
+        availabilityEventService.publish(AvailabilityEventType.AVAILABILITY_CHANGED, "stalled-provider-id", date, null, null);
+        await(() -> stalled.writing);
+        availabilityEventService.publish(AvailabilityEventType.APPOINTMENT_BOOKED, "provider-id", date,
+                LocalTime.of(9, 0), LocalTime.of(9, 30));
+
+        await(() -> healthy.sent.size() == 2);
+        assertThat(healthy.sent.get(1)).contains("event:APPOINTMENT_BOOKED");
+
+        // the stuck stream was closed, it gets completed as soon as its write returns
+        stalled.blocked.countDown();
+        await(() -> stalled.completed);
+    }
+
+    @Test
+    void subscribe_shouldReject_tooManyProviders() {
+        List<String> providerIds = IntStream.range(0, AvailabilityEventService.MAX_PROVIDERS_PER_STREAM + 1)
+                .mapToObj(i -> "provider-" + i)
+                .toList();
+
+        assertThatThrownBy(() -> availabilityEventService.subscribe(providerIds, new RecordingEmitter()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void sendHeartbeats_shouldWriteCommentToIdleStreams() {
+        RecordingEmitter idle = new RecordingEmitter();
+        availabilityEventService.subscribe(List.of("provider-id"), idle);
+
+        availabilityEventService.sendHeartbeats();
+
+        await(() -> idle.sent.size() == 2);
+        assertThat(idle.sent.get(1)).contains(":heartbeat");
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition was not met in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    // keeps the text of every event instead of writing it to a response
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch blocked;
+        private volatile boolean writing;
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            writing = true;
+            CountDownLatch latch = blocked;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sent.add(builder.build().stream().map(data -> String.valueOf(data.getData())).collect(Collectors.joining()));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+}
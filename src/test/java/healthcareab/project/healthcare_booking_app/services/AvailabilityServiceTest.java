@@ -1,24 +1,35 @@
 package healthcareab.project.healthcare_booking_app.services;
 
+import healthcareab.project.healthcare_booking_app.dto.PageResponse;
 import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
 import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
 import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.AvailabilityTemplate;
 import healthcareab.project.healthcare_booking_app.models.User;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -33,6 +44,18 @@ class AvailabilityServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private SlotScheduleService slotScheduleService;
+
+    @Mock
+    private AvailabilityEventService availabilityEventService;
+
+    @Mock
+    private AvailabilityTemplateService availabilityTemplateService;
+
+    @Spy
+    private AvailabilityCacheService availabilityCacheService = new AvailabilityCacheService(100, 60, 31);
+
     @InjectMocks
     private AvailabilityService availabilityService;
 
@@ -42,6 +65,13 @@ class AvailabilityServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // no templates, reads return what is stored
+        when(availabilityTemplateService.withTemplates(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(3));
+        when(availabilityTemplateService.pageWithTemplates(any(), any(), any(), any(), any(), anyInt()))
+                .thenAnswer(invocation -> invocation.getArgument(3));
+        when(availabilityTemplateService.streamWithTemplates(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(3));
 
         providerUser = new User("provider", "pw", "provider@test.com", "John", "Doe", "Doctor");
         providerUser.setId("provider-id");
@@ -87,6 +117,7 @@ class AvailabilityServiceTest {
 
         verify(userService).assertCurrentUserAuthenticated();
         verify(availabilityRepository).save(any());
+        verify(slotScheduleService).invalidate("provider-id", date);
     }
 
     @Test
@@ -139,27 +170,214 @@ class AvailabilityServiceTest {
         verify(availabilityRepository, never()).save(any());
     }
 
+    @Test
+    void createAvailability_shouldThrow_whenItOverlapsAStoredBlock() {
+        LocalDate date = LocalDate.of(2026, 2, 1);
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+        when(availabilityRepository.findOverlapping("provider-id", date, date, LocalTime.of(9, 0), LocalTime.of(11, 0)))
+                .thenReturn(List.of(availability("av-1", date, LocalTime.of(10, 0))));
+
+        assertThatThrownBy(() -> availabilityService.createAvailability(date, LocalTime.of(9, 0), LocalTime.of(11, 0)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("overlaps");
+        verify(availabilityRepository, never()).save(any());
+    }
+
+    @Test
+    void createAvailability_shouldThrow_whenItOverlapsATemplateOccurrence() {
+        LocalDate date = LocalDate.of(2026, 2, 2);
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+        when(availabilityTemplateService.overlapsVirtually("provider-id", date, LocalTime.of(9, 0), LocalTime.of(11, 0)))
+                .thenReturn(true);
+
+        assertThatThrownBy(() -> availabilityService.createAvailability(date, LocalTime.of(9, 0), LocalTime.of(11, 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(availabilityRepository, never()).save(any());
+    }
+
     // ------------------------------------------------------------------
     // GET AVAILABILITIES
     // ------------------------------------------------------------------
 
     @Test
-    void getAvailabilitiesForProvider_shouldReturnSortedList() {
+    void getAvailabilitiesForProvider_shouldReturnListSortedByDatabase() {
         Availability a1 = availability("1", LocalDate.of(2026, 2, 2), LocalTime.of(10, 0));
         Availability a2 = availability("2", LocalDate.of(2026, 2, 1), LocalTime.of(11, 0));
         Availability a3 = availability("3", LocalDate.of(2026, 2, 1), LocalTime.of(9, 0));
 
-        when(availabilityRepository.findByProviderIdAndDateBetween(any(), any(), any()))
-                .thenReturn(List.of(a1, a2, a3));
+        when(availabilityRepository.findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(any(), any(), any()))
+                .thenReturn(List.of(a3, a2, a1));
 
         List<Availability> result =
                 availabilityService.getAvailabilitiesForProvider(
                         "provider-id",
-                        LocalDate.of(2026, 2, 1),
+                        LocalDate.of(2026, 1, 31),
                         LocalDate.of(2026, 2, 3)
                 );
 
         assertThat(result).containsExactly(a3, a2, a1);
+        verify(availabilityRepository, never()).findByProviderIdAndDateBetween(any(), any(), any());
+    }
+
+    @Test
+    void getAvailabilitiesForProvider_shouldServeRepeatedReadsFromCache_untilDayChanges() {
+        LocalDate day = LocalDate.of(2026, 2, 2);
+        Availability a1 = availability("1", day, LocalTime.of(9, 0));
+        when(availabilityRepository.findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(any(), any(), any()))
+                .thenReturn(List.of(a1));
+
+        availabilityService.getAvailabilitiesForProvider("provider-id", day.minusDays(1), day.plusDays(1));
+        List<Availability> cached = availabilityService.getAvailabilitiesForProvider("provider-id", day.minusDays(1), day.plusDays(1));
+
+        assertThat(cached).containsExactly(a1);
+        verify(availabilityRepository, times(1))
+                .findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc("provider-id", day.minusDays(1), day.plusDays(1));
+
+        availabilityService.availabilityChanged("provider-id", day);
+        availabilityService.getAvailabilitiesForProvider("provider-id", day.minusDays(1), day.plusDays(1));
+
+        verify(availabilityRepository, times(2))
+                .findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc("provider-id", day.minusDays(1), day.plusDays(1));
+        verify(slotScheduleService).invalidate("provider-id", day);
+    }
+
+    @Test
+    void getAvailabilitiesForProvider_shouldShareOneDatabaseRead_betweenConcurrentIdenticalReads() throws Exception {
+        LocalDate day = LocalDate.of(2026, 2, 2);
+        Availability a1 = availability("1", day, LocalTime.of(9, 0));
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch releaseRead = new CountDownLatch(1);
+        when(availabilityRepository.findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(any(), any(), any()))
+                .thenAnswer(i -> {
+                    readStarted.countDown();
+                    releaseRead.await(5, TimeUnit.SECONDS);
+                    return List.of(a1);
+                });
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Availability>> first = callers.submit(() ->
+                    availabilityService.getAvailabilitiesForProvider("provider-id", day.minusDays(1), day.plusDays(1)));
+            assertThat(readStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<List<Availability>> second = callers.submit(() ->
+                    availabilityService.getAvailabilitiesForProvider("provider-id", day.minusDays(1), day.plusDays(1)));
+
+            // the second read is waiting on the first one's query
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!availabilityService.getMetrics().get("coalescedReads").equals(1L) && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            releaseRead.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).containsExactly(a1);
+            assertThat(second.get(5, TimeUnit.SECONDS)).containsExactly(a1);
+        } finally {
+            callers.shutdownNow();
+        }
+
+        verify(availabilityRepository, times(1)).findByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc(any(), any(), any());
+        assertThat(availabilityService.getMetrics())
+                .containsEntry("databaseReads", 1L)
+                .containsEntry("coalescedReads", 1L)
+                .containsEntry("coalescingRatio", 0.5);
+    }
+
+    @Test
+    void getAvailabilityPageForProvider_shouldReturnCursor_whenMoreItemsExist() {
+        Availability a1 = availability("1", LocalDate.of(2026, 2, 1), LocalTime.of(9, 0));
+        Availability a2 = availability("2", LocalDate.of(2026, 2, 1), LocalTime.of(10, 0));
+        Availability a3 = availability("3", LocalDate.of(2026, 2, 2), LocalTime.of(9, 0));
+        LocalDate from = LocalDate.of(2026, 1, 31);
+        LocalDate to = LocalDate.of(2026, 3, 1);
+
+        when(availabilityRepository.findPageByProviderIdAndDateBetween("provider-id", from, to, null, 3))
+                .thenReturn(List.of(a1, a2, a3));
+
+        PageResponse<Availability> page =
+                availabilityService.getAvailabilityPageForProvider("provider-id", from, to, null, 2);
+
+        assertThat(page.getItems()).containsExactly(a1, a2);
+        KeysetCursor cursor = KeysetCursor.decode(page.getNextCursor());
+        assertThat(cursor.getDate()).isEqualTo(a2.getDate());
+        assertThat(cursor.getStartTime()).isEqualTo(a2.getStartTime());
+        assertThat(cursor.getId()).isEqualTo("2");
+
+        when(availabilityRepository.findPageByProviderIdAndDateBetween(eq("provider-id"), eq(from), eq(to), any(), eq(3)))
+                .thenReturn(List.of(a3));
+
+        PageResponse<Availability> lastPage =
+                availabilityService.getAvailabilityPageForProvider("provider-id", from, to, page.getNextCursor(), 2);
+
+        assertThat(lastPage.getItems()).containsExactly(a3);
+        assertThat(lastPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getAvailabilityPageForProvider_shouldOnlyExpandTemplatesForDaysThePageReaches() {
+        Availability a1 = availability("1", LocalDate.of(2026, 2, 1), LocalTime.of(9, 0));
+        Availability a2 = availability("2", LocalDate.of(2026, 2, 2), LocalTime.of(9, 0));
+        Availability a3 = availability("3", LocalDate.of(2026, 2, 3), LocalTime.of(9, 0));
+        LocalDate from = LocalDate.of(2026, 1, 31);
+        LocalDate to = LocalDate.of(2026, 3, 1);
+        when(availabilityRepository.findPageByProviderIdAndDateBetween("provider-id", from, to, null, 3))
+                .thenReturn(List.of(a1, a2, a3));
+
+        availabilityService.getAvailabilityPageForProvider("provider-id", from, to, null, 2);
+
+        verify(availabilityTemplateService).pageWithTemplates("provider-id", LocalDate.of(2026, 2, 1),
+                LocalDate.of(2026, 2, 3), List.of(a1, a2, a3), null, 3);
+    }
+
+    @Test
+    void streamAvailabilitiesForProvider_shouldAddTemplatesForDaysBetweenTheBounds() {
+        LocalDate from = LocalDate.of(2026, 1, 31);
+        LocalDate to = LocalDate.of(2026, 3, 1);
+        Stream<Availability> stored = Stream.empty();
+        when(availabilityRepository.streamByProviderIdAndDateBetweenOrderByDateAscStartTimeAsc("provider-id", from, to))
+                .thenReturn(stored);
+
+        try (Stream<Availability> availabilities = availabilityService.streamAvailabilitiesForProvider("provider-id", from, to)) {
+            assertThat(availabilities).isEmpty();
+        }
+
+        verify(availabilityTemplateService).streamWithTemplates("provider-id", LocalDate.of(2026, 2, 1),
+                LocalDate.of(2026, 2, 28), stored);
+    }
+
+    @Test
+    void getAvailabilityPageForProvider_shouldThrow_whenLimitTooLarge() {
+        assertThatThrownBy(() -> availabilityService.getAvailabilityPageForProvider(
+                "provider-id", LocalDate.of(2026, 2, 1), LocalDate.of(2026, 3, 1), null, 501))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Limit");
+    }
+
+    @Test
+    void getAvailabilityPageForProvider_shouldThrow_whenCursorIsInvalid() {
+        assertThatThrownBy(() -> availabilityService.getAvailabilityPageForProvider(
+                "provider-id", LocalDate.of(2026, 2, 1), LocalDate.of(2026, 3, 1), "not-a-cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor");
+    }
+
+    @Test
+    void isTimeAvailable_shouldBeAnsweredBySlotSchedule() {
+        LocalDate date = LocalDate.of(2026, 2, 2);
+        when(slotScheduleService.isFree("provider-id", date, LocalTime.of(9, 0), LocalTime.of(9, 30))).thenReturn(true);
+
+        assertThat(availabilityService.isTimeAvailable("provider-id", date, LocalTime.of(9, 0), LocalTime.of(9, 30))).isTrue();
+        verifyNoInteractions(availabilityRepository);
+    }
+
+    @Test
+    void getAvailabilityEtagForCurrentProvider_shouldUseProviderIdFromToken() {
+        LocalDate from = LocalDate.of(2026, 2, 1);
+        LocalDate to = LocalDate.of(2026, 2, 5);
+        when(userService.getCurrentProviderId()).thenReturn("provider-id");
+
+        assertThat(availabilityService.getAvailabilityEtagForCurrentProvider(from, to))
+                .isEqualTo(availabilityService.getAvailabilityEtag("provider-id", from, to));
+        verify(userService, never()).getCurrentUser();
     }
 
     // ------------------------------------------------------------------
@@ -185,6 +403,28 @@ class AvailabilityServiceTest {
         assertThat(result.getStartTime()).isEqualTo(LocalTime.of(10, 0));
     }
 
+    @Test
+    void updateAvailability_shouldIgnoreTheBlockItself_butThrowOnOtherOverlaps() {
+        LocalDate date = LocalDate.of(2026, 2, 10);
+        Availability availability = availability("av-1", date, LocalTime.of(9, 0));
+        availability.setProviderId(providerUser.getId());
+
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+        when(availabilityRepository.findById("av-1")).thenReturn(Optional.of(availability));
+        when(availabilityRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(availabilityRepository.findOverlapping(eq("provider-id"), eq(date), eq(date), any(), any()))
+                .thenReturn(List.of(availability));
+
+        availabilityService.updateAvailability("av-1", date, LocalTime.of(9, 30), LocalTime.of(10, 30));
+
+        when(availabilityRepository.findOverlapping(eq("provider-id"), eq(date), eq(date), any(), any()))
+                .thenReturn(List.of(availability, availability("av-2", date, LocalTime.of(11, 0))));
+
+        assertThatThrownBy(() -> availabilityService.updateAvailability("av-1", date, LocalTime.of(9, 30), LocalTime.of(11, 30)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(availabilityRepository, times(1)).save(any());
+    }
+
     @Test
     void updateAvailability_shouldThrow_whenNotOwner() {
         Availability availability = availability("av-1", LocalDate.now(), LocalTime.of(9, 0));
@@ -235,6 +475,83 @@ class AvailabilityServiceTest {
         verify(availabilityRepository).delete(availability);
     }
 
+    // ------------------------------------------------------------------
+    // TEMPLATES
+    // ------------------------------------------------------------------
+
+    @Test
+    void createTemplate_shouldSaveTemplate_andInvalidateOnlyItsDays() {
+        LocalDate monday = LocalDate.of(2026, 2, 2);
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+        when(availabilityTemplateService.save(any(AvailabilityTemplate.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        AvailabilityTemplate template = availabilityService.createTemplate(
+                Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY), LocalTime.of(8, 0), LocalTime.of(12, 0),
+                monday, monday.plusDays(13));
+
+        assertThat(template.getProviderId()).isEqualTo("provider-id");
+        verify(slotScheduleService, times(4)).invalidate(eq("provider-id"), any());
+        verify(slotScheduleService).invalidate("provider-id", monday.plusDays(9));
+        verify(availabilityEventService, times(1)).publish(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void createTemplate_shouldThrow_whenRangeIsLongerThanAYear() {
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+
+        assertThatThrownBy(() -> availabilityService.createTemplate(
+                Set.of(DayOfWeek.MONDAY), LocalTime.of(8, 0), LocalTime.of(12, 0),
+                LocalDate.of(2026, 1, 1), LocalDate.of(2027, 1, 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(availabilityTemplateService, never()).save(any());
+    }
+
+    @Test
+    void createTemplate_shouldThrow_whenAStoredBlockOnOneOfItsDaysOverlaps() {
+        LocalDate monday = LocalDate.of(2026, 2, 2);
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+        // a tuesday block is not on the template's days, the wednesday one is
+        when(availabilityRepository.findOverlapping("provider-id", monday, monday.plusDays(13), LocalTime.of(8, 0), LocalTime.of(12, 0)))
+                .thenReturn(List.of(availability("av-1", monday.plusDays(1), LocalTime.of(9, 0))))
+                .thenReturn(List.of(availability("av-1", monday.plusDays(1), LocalTime.of(9, 0)),
+                        availability("av-2", monday.plusDays(9), LocalTime.of(9, 0))));
+        when(availabilityTemplateService.save(any(AvailabilityTemplate.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        availabilityService.createTemplate(Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY),
+                LocalTime.of(8, 0), LocalTime.of(12, 0), monday, monday.plusDays(13));
+
+        assertThatThrownBy(() -> availabilityService.createTemplate(Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY),
+                LocalTime.of(8, 0), LocalTime.of(12, 0), monday, monday.plusDays(13)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(availabilityTemplateService, times(1)).save(any());
+    }
+
+    @Test
+    void deleteTemplate_shouldThrow_whenNotOwner() {
+        AvailabilityTemplate template = new AvailabilityTemplate();
+        template.setProviderId("other-provider-id");
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+        when(availabilityTemplateService.findById("template-id")).thenReturn(Optional.of(template));
+
+        assertThatThrownBy(() -> availabilityService.deleteTemplate("template-id"))
+                .isInstanceOf(UnauthorizedException.class);
+        verify(availabilityTemplateService, never()).delete(any());
+    }
+
+    @Test
+    void deleteAvailability_shouldStoreTemplateOccurrence_beforeDeletingIt() {
+        Availability occurrence = availability("template-id_20260202", LocalDate.of(2026, 2, 2), LocalTime.of(8, 0));
+        occurrence.setProviderId(providerUser.getId());
+        when(userService.getCurrentUser()).thenReturn(providerUser);
+        when(availabilityRepository.findById("template-id_20260202")).thenReturn(Optional.of(occurrence));
+
+        availabilityService.deleteAvailability("template-id_20260202");
+
+        var inOrder = inOrder(availabilityTemplateService, availabilityRepository);
+        inOrder.verify(availabilityTemplateService).materializeOccurrence("template-id_20260202");
+        inOrder.verify(availabilityRepository).delete(occurrence);
+    }
+
     // ------------------------------------------------------------------
     // HELPERS
     // ------------------------------------------------------------------
@@ -0,0 +1,210 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.AvailabilityTemplate;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityTemplateRepository;
+import healthcareab.project.healthcare_booking_app.utils.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class AvailabilityTemplateServiceTest {
+
+    @Mock
+    private AvailabilityTemplateRepository availabilityTemplateRepository;
+
+    @Mock
+    private AvailabilityRepository availabilityRepository;
+
+    private AvailabilityTemplateService availabilityTemplateService;
+
+    private static final String FIRST_OBJECT_ID = "65a000000000000000000001";
+    private static final String SECOND_OBJECT_ID = "65a000000000000000000002";
+
+    private final LocalDate monday = LocalDate.of(2026, 2, 2);
+    private AvailabilityTemplate weekdayMornings;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        availabilityTemplateService = new AvailabilityTemplateService(availabilityTemplateRepository, availabilityRepository);
+
+        weekdayMornings = new AvailabilityTemplate();
+        weekdayMornings.setId("template-id");
+        weekdayMornings.setProviderId("provider-id");
+        weekdayMornings.setDaysOfWeek(Set.of(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY,
+                DayOfWeek.THURSDAY, DayOfWeek.FRIDAY));
+        weekdayMornings.setStartTime(LocalTime.of(8, 0));
+        weekdayMornings.setEndTime(LocalTime.of(12, 0));
+        weekdayMornings.setValidFrom(monday);
+        weekdayMornings.setValidUntil(monday.plusDays(27));
+        weekdayMornings.setMaterializedDates(new HashSet<>(Set.of(monday.plusDays(1))));
+    }
+
+    @Test
+    void withTemplates_shouldExpandOnlyRequestedDays_andMergeWithStored() {
+        when(availabilityTemplateRepository.findOverlapping("provider-id", monday, monday.plusDays(6)))
+                .thenReturn(List.of(weekdayMornings));
+        Availability afternoon = stored("stored-id", monday.plusDays(2), LocalTime.of(13, 0), null);
+        // Tuesday was booked, what is stored for it counts instead of the template
+        Availability tuesday = stored("template-id_20260203", monday.plusDays(1), LocalTime.of(9, 0), "template-id");
+
+        List<Availability> week = availabilityTemplateService.withTemplates(
+                "provider-id", monday, monday.plusDays(6), List.of(tuesday, afternoon));
+
+        assertThat(week).extracting(Availability::getId).containsExactly(
+                "template-id_20260202",
+                "template-id_20260203",
+                "template-id_20260204",
+                "stored-id",
+                "template-id_20260205",
+                "template-id_20260206");
+        assertThat(week.get(1)).isSameAs(tuesday);
+    }
+
+    @Test
+    void withTemplates_shouldNotDuplicateOccurrence_storedButNotYetMarked() {
+        when(availabilityTemplateRepository.findOverlapping("provider-id", monday, monday))
+                .thenReturn(List.of(weekdayMornings));
+        Availability stored = stored("template-id_20260202", monday, LocalTime.of(8, 0), "template-id");
+
+        assertThat(availabilityTemplateService.withTemplates("provider-id", monday, monday, List.of(stored)))
+                .containsExactly(stored);
+    }
+
+    @Test
+    void pageWithTemplates_shouldOrderOccurrencesWithStored_andContinueFromEitherKind() {
+        when(availabilityTemplateRepository.findOverlapping(eq("provider-id"), any(), any()))
+                .thenReturn(List.of(weekdayMornings));
+        // same day and start as Monday's occurrence, string ids sort before ObjectIds
+        Availability mondayStored = stored(FIRST_OBJECT_ID, monday, LocalTime.of(8, 0), null);
+        Availability wednesdayAfternoon = stored(SECOND_OBJECT_ID, monday.plusDays(2), LocalTime.of(13, 0), null);
+
+        List<Availability> firstPage = availabilityTemplateService.pageWithTemplates("provider-id", monday,
+                monday.plusDays(2), List.of(mondayStored, wednesdayAfternoon), null, 3);
+        assertThat(firstPage).extracting(Availability::getId)
+                .containsExactly("template-id_20260202", FIRST_OBJECT_ID, "template-id_20260204");
+
+        // a cursor on a stored availability skips the occurrence sorted before it on the same start
+        KeysetCursor afterStored = new KeysetCursor(monday, LocalTime.of(8, 0), FIRST_OBJECT_ID);
+        assertThat(availabilityTemplateService.pageWithTemplates("provider-id", monday, monday.plusDays(2),
+                List.of(wednesdayAfternoon), afterStored, 3))
+                .extracting(Availability::getId)
+                .containsExactly("template-id_20260204", SECOND_OBJECT_ID);
+
+        // a cursor on an occurrence keeps the stored availability sorted after it on the same start
+        KeysetCursor afterOccurrence = new KeysetCursor(monday, LocalTime.of(8, 0), "template-id_20260202");
+        assertThat(availabilityTemplateService.pageWithTemplates("provider-id", monday, monday.plusDays(2),
+                List.of(mondayStored, wednesdayAfternoon), afterOccurrence, 3))
+                .extracting(Availability::getId)
+                .containsExactly(FIRST_OBJECT_ID, "template-id_20260204", SECOND_OBJECT_ID);
+    }
+
+    @Test
+    void streamWithTemplates_shouldMergeOccurrencesIntoStoredStream_andCloseIt() {
+        when(availabilityTemplateRepository.findOverlapping("provider-id", monday, monday.plusDays(2)))
+                .thenReturn(List.of(weekdayMornings));
+        AtomicBoolean closed = new AtomicBoolean();
+        // Monday's occurrence was stored moments ago, before the day was marked on the template
+        Stream<Availability> stored = Stream.of(
+                stored("template-id_20260202", monday, LocalTime.of(8, 0), "template-id"),
+                stored(SECOND_OBJECT_ID, monday.plusDays(2), LocalTime.of(13, 0), null)
+        ).onClose(() -> closed.set(true));
+
+        try (Stream<Availability> merged = availabilityTemplateService.streamWithTemplates(
+                "provider-id", monday, monday.plusDays(2), stored)) {
+            assertThat(merged).extracting(Availability::getId)
+                    .containsExactly("template-id_20260202", "template-id_20260204", SECOND_OBJECT_ID);
+        }
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    void materialize_shouldStoreOccurrenceUnderItsId_andMarkTheDay() {
+        when(availabilityTemplateRepository.findOverlapping("provider-id", monday, monday))
+                .thenReturn(List.of(weekdayMornings));
+        when(availabilityRepository.insert(any(Availability.class))).thenThrow(new DuplicateKeyException("stored"));
+
+        availabilityTemplateService.materialize("provider-id", monday);
+
+        verify(availabilityRepository).insert(argThat((Availability occurrence) ->
+                occurrence.getId().equals("template-id_20260202") && occurrence.getTemplateId().equals("template-id")));
+        verify(availabilityTemplateRepository).addMaterializedDate("template-id", monday);
+    }
+
+    @Test
+    void materializeOccurrence_shouldIgnoreIds_thatAreNoOccurrence() {
+        when(availabilityTemplateRepository.findById("template-id")).thenReturn(Optional.of(weekdayMornings));
+
+        availabilityTemplateService.materializeOccurrence("65f0c1a2b3c4d5e6f7a8b9c0");
+        availabilityTemplateService.materializeOccurrence("template-id_20260203");
+        availabilityTemplateService.materializeOccurrence("template-id_20260207");
+
+        // Tuesday is stored already and Saturday is not in the template
+        verifyNoInteractions(availabilityRepository);
+    }
+
+    @Test
+    void overlapsTemplate_shouldOnlyCountSharedDaysWhereTheOtherIsStillVirtual() {
+        // Tuesday of the first week is stored already, what is stored there is checked as a block instead
+        AvailabilityTemplate tuesdays = new AvailabilityTemplate();
+        tuesdays.setProviderId("provider-id");
+        tuesdays.setDaysOfWeek(Set.of(DayOfWeek.TUESDAY));
+        tuesdays.setStartTime(LocalTime.of(11, 0));
+        tuesdays.setEndTime(LocalTime.of(13, 0));
+        tuesdays.setValidFrom(monday);
+        tuesdays.setValidUntil(monday.plusDays(6));
+        when(availabilityTemplateRepository.findOverlapping("provider-id", monday, monday.plusDays(6)))
+                .thenReturn(List.of(weekdayMornings));
+
+        assertThat(availabilityTemplateService.overlapsTemplate(tuesdays)).isFalse();
+
+        tuesdays.setValidUntil(monday.plusDays(8));
+        when(availabilityTemplateRepository.findOverlapping("provider-id", monday, monday.plusDays(8)))
+                .thenReturn(List.of(weekdayMornings));
+        assertThat(availabilityTemplateService.overlapsTemplate(tuesdays)).isTrue();
+
+        // ends where the mornings end, touching is no overlap
+        tuesdays.setStartTime(LocalTime.of(12, 0));
+        assertThat(availabilityTemplateService.overlapsTemplate(tuesdays)).isFalse();
+    }
+
+    @Test
+    void overlapsVirtually_shouldTreatTouchingRangesAsFree() {
+        when(availabilityTemplateRepository.findOverlapping("provider-id", monday, monday))
+                .thenReturn(List.of(weekdayMornings));
+
+        assertThat(availabilityTemplateService.overlapsVirtually("provider-id", monday, LocalTime.of(11, 0), LocalTime.of(13, 0))).isTrue();
+        assertThat(availabilityTemplateService.overlapsVirtually("provider-id", monday, LocalTime.of(12, 0), LocalTime.of(13, 0))).isFalse();
+    }
+
+    private Availability stored(String id, LocalDate date, LocalTime start, String templateId) {
+        Availability availability = new Availability();
+        availability.setId(id);
+        availability.setProviderId("provider-id");
+        availability.setDate(date);
+        availability.setStartTime(start);
+        availability.setEndTime(start.plusHours(1));
+        availability.setIsAvailable(true);
+        availability.setTemplateId(templateId);
+        return availability;
+    }
+}
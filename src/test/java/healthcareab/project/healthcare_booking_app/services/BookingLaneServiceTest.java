@@ -0,0 +1,210 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.models.Appointment;
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AppointmentStatus;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.SlotSplit;
+import healthcareab.project.healthcare_booking_app.repositories.AppointmentRepository;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class BookingLaneServiceTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private AvailabilityRepository availabilityRepository;
+
+    @Mock
+    private AvailabilityService availabilityService;
+
+    private BookingLaneService bookingLaneService;
+
+    private final LocalDate date = LocalDate.of(2026, 2, 2);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        bookingLaneService = new BookingLaneService(appointmentRepository, availabilityRepository, availabilityService,
+                true, 2, 16, 64);
+
+        when(availabilityRepository.findFreeBlocks("provider-id", date)).thenReturn(List.of(
+                block("block-1", LocalTime.of(9, 0), LocalTime.of(9, 30)),
+                block("block-2", LocalTime.of(9, 30), LocalTime.of(10, 0))
+        ));
+        when(appointmentRepository.insertAllUnordered(anyList())).thenReturn(Map.of());
+        when(availabilityRepository.applySplits(anyList())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookingLaneService.shutdown();
+    }
+
+    @Test
+    void processBatch_shouldCommitWholeBatchWithOneInsertAndOneSplitWrite() {
+        BookingLaneService.PendingBooking first = pending(LocalTime.of(9, 0), LocalTime.of(9, 30));
+        BookingLaneService.PendingBooking second = pending(LocalTime.of(9, 30), LocalTime.of(10, 0));
+
+        bookingLaneService.processBatch(List.of(first, second));
+
+        assertThat(first.future().join().getAvailabilityId()).isEqualTo("block-1");
+        assertThat(second.future().join().getAvailabilityId()).isEqualTo("block-2");
+        assertThat(first.future().join().getId()).isNotNull();
+        verify(availabilityRepository, times(1)).findFreeBlocks("provider-id", date);
+        verify(appointmentRepository, times(1)).insertAllUnordered(anyList());
+        verify(availabilityRepository, times(1)).applySplits(anyList());
+        verify(availabilityService, times(1)).availabilityChanged("provider-id", date);
+    }
+
+    @Test
+    void processBatch_shouldRejectSecondBookingOfSameRangeInBatch() {
+        BookingLaneService.PendingBooking first = pending(LocalTime.of(9, 0), LocalTime.of(9, 30));
+        BookingLaneService.PendingBooking second = pending(LocalTime.of(9, 0), LocalTime.of(9, 30));
+
+        bookingLaneService.processBatch(List.of(first, second));
+
+        assertThat(first.future()).isCompleted();
+        assertThatThrownBy(() -> second.future().join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Selected time is not available");
+    }
+
+    @Test
+    void processBatch_shouldSplitBlock_andDeferBookingThatFitsLeftoverPiece() {
+        when(availabilityRepository.findFreeBlocks("provider-id", date)).thenReturn(List.of(
+                block("block-1", LocalTime.of(9, 0), LocalTime.of(12, 0))
+        ));
+        BookingLaneService.PendingBooking first = pending(LocalTime.of(10, 0), LocalTime.of(10, 15));
+        BookingLaneService.PendingBooking second = pending(LocalTime.of(11, 0), LocalTime.of(11, 15));
+
+        List<BookingLaneService.PendingBooking> deferred = bookingLaneService.processBatch(List.of(first, second));
+
+        assertThat(first.future().join().getAvailabilityId()).isEqualTo("block-1");
+        assertThat(deferred).containsExactly(second);
+        assertThat(second.future()).isNotDone();
+
+        ArgumentCaptor<List<SlotSplit>> captor = ArgumentCaptor.forClass(List.class);
+        verify(availabilityRepository).applySplits(captor.capture());
+        SlotSplit split = captor.getValue().get(0);
+        assertThat(split.freePieces())
+                .extracting(Availability::getStartTime, Availability::getEndTime)
+                .containsExactly(
+                        tuple(LocalTime.of(9, 0), LocalTime.of(10, 0)),
+                        tuple(LocalTime.of(10, 15), LocalTime.of(12, 0))
+                );
+    }
+
+    @Test
+    void processBatch_shouldTakeBookingBack_whenBlockChangedBeforeSplit() {
+        when(availabilityRepository.applySplits(anyList())).thenAnswer(i -> i.getArgument(0));
+        BookingLaneService.PendingBooking booking = pending(LocalTime.of(9, 0), LocalTime.of(9, 30));
+
+        bookingLaneService.processBatch(List.of(booking));
+
+        assertThatThrownBy(() -> booking.future().join()).hasCauseInstanceOf(IllegalArgumentException.class);
+        verify(appointmentRepository).deleteById(booking.appointment().getId());
+    }
+
+    @Test
+    void processBatch_shouldKeepOtherBookings_whenOnlyOneBlockChangedBeforeSplit() {
+        when(availabilityRepository.applySplits(anyList())).thenAnswer(i -> i.<List<SlotSplit>>getArgument(0).subList(0, 1));
+        BookingLaneService.PendingBooking changed = pending(LocalTime.of(9, 0), LocalTime.of(9, 30));
+        BookingLaneService.PendingBooking kept = pending(LocalTime.of(9, 30), LocalTime.of(10, 0));
+
+        bookingLaneService.processBatch(List.of(changed, kept));
+
+        assertThatThrownBy(() -> changed.future().join()).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(kept.future().join().getAvailabilityId()).isEqualTo("block-2");
+        verify(appointmentRepository).deleteById(changed.appointment().getId());
+        verify(appointmentRepository, never()).deleteById(kept.appointment().getId());
+    }
+
+    @Test
+    void processBatch_shouldReject_whenBlockWasBookedOutsideTheLane() {
+        when(appointmentRepository.insertAllUnordered(anyList()))
+                .thenReturn(Map.of(0, "E11000 duplicate key error collection: appointment index: booked_availability"));
+        BookingLaneService.PendingBooking booking = pending(LocalTime.of(9, 0), LocalTime.of(9, 30));
+
+        bookingLaneService.processBatch(List.of(booking));
+
+        assertThatThrownBy(() -> booking.future().join()).hasCauseInstanceOf(IllegalArgumentException.class);
+        verify(availabilityRepository).applySplits(List.of());
+    }
+
+    @Test
+    void processBatch_shouldRemoveAppointments_whenSplittingBlocksFails() {
+        when(availabilityRepository.applySplits(anyList())).thenThrow(new DataAccessResourceFailureException("write failed"));
+        BookingLaneService.PendingBooking booking = pending(LocalTime.of(9, 0), LocalTime.of(9, 30));
+
+        assertThatThrownBy(() -> bookingLaneService.processBatch(List.of(booking)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        verify(appointmentRepository).deleteAllById(List.of(booking.appointment().getId()));
+        verify(availabilityService).availabilityChanged("provider-id", date);
+    }
+
+    @Test
+    void submit_shouldCompleteFutureFromLaneThread() throws Exception {
+        CompletableFuture<Appointment> future = bookingLaneService.submit(appointment(LocalTime.of(9, 0), LocalTime.of(9, 30)));
+
+        assertThat(future.get(5, TimeUnit.SECONDS).getAvailabilityId()).isEqualTo("block-1");
+    }
+
+    @Test
+    void laneOf_shouldAlwaysPickSameLaneForProvider() {
+        assertThat(bookingLaneService.laneOf("provider-id")).isEqualTo(bookingLaneService.laneOf("provider-id"));
+    }
+
+    private BookingLaneService.PendingBooking pending(LocalTime start, LocalTime end) {
+        return new BookingLaneService.PendingBooking(appointment(start, end), new CompletableFuture<>());
+    }
+
+    private Appointment appointment(LocalTime start, LocalTime end) {
+        Appointment appointment = new Appointment();
+        appointment.setPatientId("patient-id");
+        appointment.setProviderId("provider-id");
+        appointment.setDate(date);
+        appointment.setStartTime(start);
+        appointment.setEndTime(end);
+        appointment.setStatus(AppointmentStatus.BOOKED);
+        return appointment;
+    }
+
+    private Availability block(String id, LocalTime start, LocalTime end) {
+        Availability availability = new Availability();
+        availability.setId(id);
+        availability.setProviderId("provider-id");
+        availability.setDate(date);
+        availability.setStartTime(start);
+        availability.setEndTime(end);
+        availability.setIsAvailable(true);
+        return availability;
+    }
+}
@@ -1,6 +1,7 @@
 package healthcareab.project.healthcare_booking_app.services;
 
 import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
 import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
 import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -72,4 +73,22 @@ public class CustomUserDetailServiceTest {
 
         verify(userRepository, times(1)).findByUsername("unknown");
     }
+
+    @Test
+    void updatePassword_shouldStoreNewHash_withoutRevokingTokens() {
+        // Arrange
+        User user = new User("TestUsername", "oldHash", "test@example.com", "John", "Doe", null);
+        user.setId("user-id");
+        user.setRoles(Set.of(Role.PATIENT));
+
+        // Act
+        UserDetails updated = customUserDetailsService.updatePassword(new AuthenticatedUser(user), "newHash");
+
+        // Assert
+        assertThat(updated.getPassword()).isEqualTo("newHash");
+        assertThat(((AuthenticatedUser) updated).getTokenVersion()).isZero();
+        verify(userRepository, times(1)).updatePasswordById("user-id", "newHash");
+        verify(userRepository, never()).incrementTokenVersionById(any());
+        verify(userRepository, never()).findByUsername(any());
+    }
 }
@@ -0,0 +1,190 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.models.IdempotencyRecord;
+import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.repositories.IdempotencyRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private IdempotencyService idempotencyService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, objectMapper, 100,
+                Duration.ofHours(24), Clock.fixed(Instant.parse("2026-02-02T10:00:00Z"), ZoneOffset.UTC));
+
+        authenticateAs("patient-id");
+        when(idempotencyRecordRepository.findById(anyString())).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void execute_shouldRunOnce_andReplayStoredResponse() {
+        ResponseEntity<?> first = idempotencyService.execute("key-1", "appointment.create", Map.of("a", 1), this::created).join();
+        ResponseEntity<?> second = idempotencyService.execute("key-1", "appointment.create", Map.of("a", 1), this::created).join();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(second.getBody()).hasToString("{\"id\":\"appointment-1\"}");
+        verify(idempotencyRecordRepository, times(1)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_shouldLetConcurrentDuplicateWaitForInFlightResult() {
+        CompletableFuture<ResponseEntity<?>> pending = new CompletableFuture<>();
+
+        CompletableFuture<ResponseEntity<?>> first = idempotencyService.execute("key-1", "appointment.create", "body", () -> pending);
+        CompletableFuture<ResponseEntity<?>> duplicate = idempotencyService.execute("key-1", "appointment.create", "body", () -> {
+            throw new AssertionError("duplicate must not run");
+        });
+
+        assertThat(duplicate).isNotDone();
+        pending.complete(ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", "appointment-1")));
+
+        assertThat(first.join().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(duplicate.join().getBody()).hasToString("{\"id\":\"appointment-1\"}");
+    }
+
+    @Test
+    void execute_shouldReject_whenKeyIsReusedForDifferentRequest() {
+        idempotencyService.execute("key-1", "appointment.create", "body", this::created).join();
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-1", "appointment.create", "other body", this::created))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("different request");
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_shouldNotStoreFailures_soRetryRunsAgain() {
+        assertThatThrownBy(() -> idempotencyService.executeNow("key-1", "availability.create", "body", () -> {
+            throw new IllegalArgumentException("Selected time is not available");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        idempotencyService.execute("key-1", "availability.create", "body", this::created).join();
+
+        assertThat(executions.get()).isEqualTo(1);
+        verify(idempotencyRecordRepository, times(1)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_shouldReplayResponseStoredInDatabase() {
+        idempotencyService.execute("key-1", "appointment.create", "body", this::created).join();
+        ArgumentCaptor<IdempotencyRecord> captor = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository).save(captor.capture());
+
+        // a fresh instance has nothing cached and finds the response in mongo
+        IdempotencyService restarted = new IdempotencyService(idempotencyRecordRepository, objectMapper, 100,
+                Duration.ofHours(24), Clock.fixed(Instant.parse("2026-02-02T11:00:00Z"), ZoneOffset.UTC));
+        when(idempotencyRecordRepository.findById(captor.getValue().getKey())).thenReturn(Optional.of(captor.getValue()));
+
+        ResponseEntity<?> replayed = restarted.execute("key-1", "appointment.create", "body", this::created).join();
+
+        assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_shouldScopeKeysPerUser() {
+        idempotencyService.execute("key-1", "appointment.create", "body", this::created).join();
+
+        authenticateAs("other-id");
+        idempotencyService.execute("key-1", "appointment.create", "body", this::created).join();
+
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_shouldReject_whenNoUserIsAuthenticated() {
+        SecurityContextHolder.clearContext();
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-1", "appointment.create", "body", this::created))
+                .isInstanceOf(UnauthorizedException.class);
+        assertThat(executions.get()).isZero();
+    }
+
+    @Test
+    void execute_shouldReleaseWaitingDuplicate_whenResponseCannotBeKept() {
+        CompletableFuture<ResponseEntity<?>> pending = new CompletableFuture<>();
+
+        CompletableFuture<ResponseEntity<?>> first = idempotencyService.execute("key-1", "appointment.create", "body", () -> pending);
+        CompletableFuture<ResponseEntity<?>> duplicate = idempotencyService.execute("key-1", "appointment.create", "body", () -> {
+            throw new AssertionError("duplicate must not run");
+        });
+
+        // an empty bean cannot be serialized, so there is nothing to store or replay
+        pending.complete(ResponseEntity.status(HttpStatus.CREATED).body(new Object()));
+
+        assertThat(first.join().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThatThrownBy(duplicate::join).hasCauseInstanceOf(IllegalStateException.class);
+
+        // the key is free again, so a retry runs instead of waiting forever
+        idempotencyService.execute("key-1", "appointment.create", "body", this::created).join();
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_shouldJustRun_whenNoKeyIsSent() {
+        idempotencyService.execute(null, "appointment.create", "body", this::created).join();
+        idempotencyService.execute(null, "appointment.create", "body", this::created).join();
+
+        assertThat(executions.get()).isEqualTo(2);
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    private void authenticateAs(String userId) {
+        AuthenticatedUser principal = new AuthenticatedUser(userId, userId, Set.of(Role.PATIENT), 0);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    private CompletableFuture<ResponseEntity<?>> created() {
+        executions.incrementAndGet();
+        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", "appointment-1")));
+    }
+}
@@ -0,0 +1,116 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.exceptions.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ActiveProfiles("test")
+class PasswordHashingServiceTest {
+
+    private PasswordHashingService passwordHashingService;
+
+    @BeforeEach
+    void setUp() {
+        passwordHashingService = new PasswordHashingService(4, 1, 1, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_shouldRoundTrip() {
+        String encoded = passwordHashingService.encode("TestPassword1234@");
+
+        assertThat(encoded).startsWith("$2a$04$");
+        assertThat(passwordHashingService.matches("TestPassword1234@", encoded)).isTrue();
+        assertThat(passwordHashingService.matches("WrongPassword", encoded)).isFalse();
+        assertThat(passwordHashingService.getMetrics().get("completed")).isEqualTo(3L);
+    }
+
+    @Test
+    void upgradeEncoding_shouldBeTrue_onlyWhenCostFactorDiffers() {
+        String sameCost = new BCryptPasswordEncoder(4).encode("TestPassword1234@");
+        String otherCost = new BCryptPasswordEncoder(5).encode("TestPassword1234@");
+
+        assertThat(passwordHashingService.upgradeEncoding(sameCost)).isFalse();
+        assertThat(passwordHashingService.upgradeEncoding(otherCost)).isTrue();
+        assertThat(passwordHashingService.upgradeEncoding("not-a-bcrypt-hash")).isFalse();
+    }
+
+    @Test
+    void execute_shouldRejectImmediately_whenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // occupy the single worker and the single queue slot
+        Thread worker = new Thread(() -> passwordHashingService.execute(() -> {
+            running.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }));
+        worker.start();
+        running.await(5, TimeUnit.SECONDS);
+        Thread queued = new Thread(() -> passwordHashingService.execute(() -> true));
+        queued.start();
+        while ((int) passwordHashingService.getMetrics().get("queueDepth") == 0) {
+            Thread.sleep(5);
+        }
+
+        assertThatThrownBy(() -> passwordHashingService.encode("TestPassword1234@"))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(passwordHashingService.getMetrics().get("rejected")).isEqualTo(1L);
+
+        release.countDown();
+        worker.join();
+        queued.join();
+    }
+
+    @Test
+    void encodeAll_shouldHashEveryPassword_inOrder() {
+        List<String> encoded = passwordHashingService.encodeAll(List.of("a1", "b2", "c3", "d4", "e5", "f6"));
+
+        assertThat(encoded).hasSize(6);
+        assertThat(passwordHashingService.matches("a1", encoded.get(0))).isTrue();
+        assertThat(passwordHashingService.matches("f6", encoded.get(5))).isTrue();
+    }
+
+    @Test
+    void encode_shouldComplete_whileBulkEncodeIsRunning() throws Exception {
+        // two workers, bulk hashing may hold one of them
+        PasswordHashingService sharedPool = new PasswordHashingService(10, 2, 1, 1);
+        Thread bulk = new Thread(() -> {
+            try {
+                sharedPool.encodeAll(Collections.nCopies(32, "TestPassword1234@"));
+            } catch (IllegalStateException interrupted) {
+                // stopped once the test is done
+            }
+        });
+        bulk.setDaemon(true);
+        try {
+            bulk.start();
+            while ((int) sharedPool.getMetrics().get("activeCount") == 0) {
+                Thread.sleep(5);
+            }
+
+            String encoded = sharedPool.encode("TestPassword1234@");
+
+            assertThat(encoded).startsWith("$2a$10$");
+            assertThat(bulk.isAlive()).as("the single hash did not wait for the bulk encode").isTrue();
+        } finally {
+            bulk.interrupt();
+            sharedPool.shutdown();
+        }
+    }
+}
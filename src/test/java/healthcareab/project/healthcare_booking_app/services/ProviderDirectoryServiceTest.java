@@ -0,0 +1,125 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.dto.UserResponse;
+import healthcareab.project.healthcare_booking_app.exceptions.ServiceUnavailableException;
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class ProviderDirectoryServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private ProviderDirectoryService providerDirectoryService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        providerDirectoryService = new ProviderDirectoryService(userRepository);
+
+        when(userRepository.streamProviders()).thenReturn(Stream.of(
+                provider("anna-id", "Anna", "Svensson", "Cardiologist"),
+                provider("erik-id", "Erik", "Andersson", "General Practitioner"),
+                provider("asa-id", "Åsa", "Öhman", "Cardiologist")
+        ));
+        providerDirectoryService.rebuild();
+    }
+
+    @Test
+    void search_shouldMatchPrefixOfAnyNameOrProfession_sortedByLastName() {
+        assertThat(providerDirectoryService.search("card", 10))
+                .extracting(UserResponse::getId)
+                .containsExactly("anna-id", "asa-id");
+        assertThat(providerDirectoryService.search("and", 10))
+                .extracting(UserResponse::getId)
+                .containsExactly("erik-id");
+    }
+
+    @Test
+    void search_shouldRequireEveryWordOfTheQuery() {
+        assertThat(providerDirectoryService.search("Anna card", 10))
+                .extracting(UserResponse::getId)
+                .containsExactly("anna-id");
+        assertThat(providerDirectoryService.search("erik card", 10)).isEmpty();
+    }
+
+    @Test
+    void search_shouldIgnoreCaseAndAccents() {
+        assertThat(providerDirectoryService.search("OHM", 10))
+                .extracting(UserResponse::getId)
+                .containsExactly("asa-id");
+    }
+
+    @Test
+    void search_shouldReturnNothing_forBlankQuery_andHonourLimit() {
+        assertThat(providerDirectoryService.search("  ", 10)).isEmpty();
+        assertThat(providerDirectoryService.search("c", 1)).hasSize(1);
+    }
+
+    @Test
+    void upsert_shouldReplaceWordsOfChangedProfile() {
+        providerDirectoryService.upsert(provider("anna-id", "Anna", "Svensson", "Dermatologist"));
+
+        assertThat(providerDirectoryService.search("card", 10)).extracting(UserResponse::getId).containsExactly("asa-id");
+        assertThat(providerDirectoryService.search("derm", 10)).extracting(UserResponse::getId).containsExactly("anna-id");
+    }
+
+    @Test
+    void upsert_shouldRemoveUserThatIsNoLongerProvider() {
+        User patient = provider("erik-id", "Erik", "Andersson", null);
+        patient.setRoles(Set.of(Role.PATIENT));
+
+        providerDirectoryService.upsert(patient);
+
+        assertThat(providerDirectoryService.search("erik", 10)).isEmpty();
+        assertThat(providerDirectoryService.search("general", 10)).isEmpty();
+        assertThat(providerDirectoryService.search("card", 10)).hasSize(2);
+    }
+
+    @Test
+    void etag_shouldChange_whenDirectoryChanges() {
+        String etag = providerDirectoryService.etag("card", 10);
+        assertThat(providerDirectoryService.etag("card", 10)).isEqualTo(etag);
+
+        providerDirectoryService.upsert(provider("new-id", "Nils", "Berg", "Cardiologist"));
+
+        assertThat(providerDirectoryService.etag("card", 10)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void search_shouldNotHitDatabase() {
+        providerDirectoryService.search("anna", 10);
+        providerDirectoryService.search("sv", 10);
+
+        verify(userRepository, times(1)).streamProviders();
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void search_shouldRefuse_untilDirectoryIsLoaded() {
+        ProviderDirectoryService notLoaded = new ProviderDirectoryService(userRepository);
+
+        assertThatThrownBy(() -> notLoaded.search("anna", 10)).isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    private User provider(String id, String firstName, String lastName, String profession) {
+        User user = new User(id.replace("-id", ""), "pw", id + "@test.com", firstName, lastName, profession);
+        user.setId(id);
+        user.setRoles(Set.of(Role.PROVIDER));
+        return user;
+    }
+}
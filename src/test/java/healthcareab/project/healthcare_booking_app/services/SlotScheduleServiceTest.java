@@ -0,0 +1,132 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.dto.FreeSlotResponse;
+import healthcareab.project.healthcare_booking_app.models.Availability;
+import healthcareab.project.healthcare_booking_app.models.AvailabilityTemplate;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityRepository;
+import healthcareab.project.healthcare_booking_app.repositories.AvailabilityTemplateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class SlotScheduleServiceTest {
+
+    @Mock
+    private AvailabilityRepository availabilityRepository;
+
+    @Mock
+    private AvailabilityTemplateRepository availabilityTemplateRepository;
+
+    private SlotScheduleService slotScheduleService;
+
+    private final LocalDate date = LocalDate.of(2026, 2, 2);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        slotScheduleService = new SlotScheduleService(availabilityRepository,
+                new AvailabilityTemplateService(availabilityTemplateRepository, availabilityRepository), 100, 300);
+    }
+
+    @Test
+    void isFree_shouldLoadDayOnce_andAnswerLaterChecksFromBitmap() {
+        when(availabilityRepository.findFreeBlocks("provider-id", date))
+                .thenReturn(List.of(block(LocalTime.of(9, 0), LocalTime.of(12, 0))));
+
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(9, 0), LocalTime.of(10, 0))).isTrue();
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(11, 30), LocalTime.of(12, 30))).isFalse();
+        assertThat(slotScheduleService.getFreeRanges("provider-id", date))
+                .extracting(FreeSlotResponse::getStartTime, FreeSlotResponse::getEndTime)
+                .containsExactly(tuple(LocalTime.of(9, 0), LocalTime.of(12, 0)));
+
+        verify(availabilityRepository, times(1)).findFreeBlocks("provider-id", date);
+        verifyNoMoreInteractions(availabilityRepository);
+    }
+
+    @Test
+    void isFree_shouldRejectBookingAcrossSplitBoundary() {
+        // what is left of 09:00-12:00 after 10:00-10:30 was booked and cancelled again without being merged
+        when(availabilityRepository.findFreeBlocks("provider-id", date)).thenReturn(List.of(
+                block(LocalTime.of(9, 0), LocalTime.of(10, 0)),
+                block(LocalTime.of(10, 0), LocalTime.of(10, 30)),
+                block(LocalTime.of(10, 30), LocalTime.of(12, 0))
+        ));
+
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(10, 0), LocalTime.of(10, 30))).isTrue();
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(9, 30), LocalTime.of(10, 30))).isFalse();
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(9, 0), LocalTime.of(12, 0))).isFalse();
+        assertThat(slotScheduleService.getFreeRanges("provider-id", date))
+                .extracting(FreeSlotResponse::getStartTime, FreeSlotResponse::getEndTime)
+                .containsExactly(
+                        tuple(LocalTime.of(9, 0), LocalTime.of(10, 0)),
+                        tuple(LocalTime.of(10, 0), LocalTime.of(10, 30)),
+                        tuple(LocalTime.of(10, 30), LocalTime.of(12, 0))
+                );
+    }
+
+    @Test
+    void invalidate_shouldReloadDayOnNextCheck() {
+        when(availabilityRepository.findFreeBlocks("provider-id", date))
+                .thenReturn(List.of(block(LocalTime.of(9, 0), LocalTime.of(10, 0))))
+                .thenReturn(List.of());
+
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(9, 0), LocalTime.of(10, 0))).isTrue();
+
+        slotScheduleService.invalidate("provider-id", date);
+
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(9, 0), LocalTime.of(10, 0))).isFalse();
+        verify(availabilityRepository, times(2)).findFreeBlocks("provider-id", date);
+    }
+
+    @Test
+    void isFree_shouldAskDatabase_whenTimesAreOffTheSlotGrid() {
+        LocalTime start = LocalTime.of(9, 7);
+        LocalTime end = LocalTime.of(9, 52);
+        when(availabilityRepository.findAvailableSlot("provider-id", date, start, end))
+                .thenReturn(Optional.of(block(LocalTime.of(9, 0), LocalTime.of(10, 0))));
+
+        assertThat(slotScheduleService.isFree("provider-id", date, start, end)).isTrue();
+        verify(availabilityRepository, never()).findFreeBlocks(any(), any());
+    }
+
+    @Test
+    void isFree_shouldCountTemplateOccurrence_thatIsNotStoredYet() {
+        AvailabilityTemplate template = new AvailabilityTemplate();
+        template.setId("template-id");
+        template.setProviderId("provider-id");
+        template.setDaysOfWeek(Set.of(DayOfWeek.MONDAY));
+        template.setStartTime(LocalTime.of(8, 0));
+        template.setEndTime(LocalTime.of(12, 0));
+        template.setValidFrom(date.minusDays(7));
+        template.setValidUntil(date.plusDays(7));
+        when(availabilityTemplateRepository.findOverlapping("provider-id", date, date)).thenReturn(List.of(template));
+
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(8, 0), LocalTime.of(9, 0))).isTrue();
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(8, 7), LocalTime.of(9, 0))).isTrue();
+        assertThat(slotScheduleService.isFree("provider-id", date, LocalTime.of(12, 0), LocalTime.of(13, 0))).isFalse();
+    }
+
+    private Availability block(LocalTime start, LocalTime end) {
+        Availability availability = new Availability();
+        availability.setProviderId("provider-id");
+        availability.setDate(date);
+        availability.setStartTime(start);
+        availability.setEndTime(end);
+        availability.setIsAvailable(true);
+        return availability;
+    }
+}
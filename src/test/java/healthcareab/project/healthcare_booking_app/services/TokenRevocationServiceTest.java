@@ -0,0 +1,133 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.RevokedToken;
+import healthcareab.project.healthcare_booking_app.repositories.RevokedTokenRepository;
+import healthcareab.project.healthcare_booking_app.utils.JwtClaims;
+import healthcareab.project.healthcare_booking_app.utils.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, 1000, 0.001, 100, true,
+                Clock.systemUTC(), Runnable::run);
+    }
+
+    @Test
+    void isRevoked_shouldNotQueryDatabase_forTokensThatWereNeverRevoked() {
+        when(revokedTokenRepository.streamByExpiresAtAfter(any())).thenReturn(Stream.empty());
+        tokenRevocationService.rebuild();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(tokenRevocationService.isRevoked(claims("token-" + i))).isFalse();
+        }
+
+        verify(revokedTokenRepository, never()).existsById(any());
+    }
+
+    @Test
+    void isRevoked_shouldReturnTrue_forTokensLoadedOnStartup() {
+        JwtClaims revoked = claims("revoked");
+        when(revokedTokenRepository.streamByExpiresAtAfter(any()))
+                .thenReturn(Stream.of(new RevokedToken(revoked.getTokenDigest(), null, null)));
+        when(revokedTokenRepository.existsById(revoked.getTokenDigest())).thenReturn(true);
+        tokenRevocationService.rebuild();
+
+        assertThat(tokenRevocationService.isRevoked(revoked)).isTrue();
+        assertThat(tokenRevocationService.isRevoked(revoked)).isTrue();
+
+        verify(revokedTokenRepository, times(1)).existsById(revoked.getTokenDigest());
+    }
+
+    @Test
+    void revoke_shouldPersistUntilExpiry_andRejectTokenWithoutLookup() {
+        when(revokedTokenRepository.streamByExpiresAtAfter(any())).thenReturn(Stream.empty());
+        tokenRevocationService.rebuild();
+        JwtClaims token = claims("logged-out");
+
+        tokenRevocationService.revoke(token);
+
+        ArgumentCaptor<RevokedToken> captor = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(captor.capture());
+        assertThat(captor.getValue().getTokenDigest()).isEqualTo(token.getTokenDigest());
+        assertThat(captor.getValue().getExpiresAt()).isEqualTo(token.getExpiration());
+
+        assertThat(tokenRevocationService.isRevoked(token)).isTrue();
+        verify(revokedTokenRepository, never()).existsById(any());
+    }
+
+    @Test
+    void isRevoked_shouldAskDatabase_untilFilterIsLoaded() {
+        JwtClaims token = claims("token");
+        when(revokedTokenRepository.existsById(token.getTokenDigest())).thenReturn(false);
+
+        assertThat(tokenRevocationService.isRevoked(token)).isFalse();
+
+        verify(revokedTokenRepository).existsById(token.getTokenDigest());
+    }
+
+    @Test
+    void revoke_shouldRebuildFilterInBackground_onceItHoldsMoreThanItWasSizedFor() {
+        List<Runnable> scheduled = new ArrayList<>();
+        TokenRevocationService smallFilter = new TokenRevocationService(revokedTokenRepository, 2, 0.001, 100, true,
+                Clock.systemUTC(), scheduled::add);
+        when(revokedTokenRepository.streamByExpiresAtAfter(any())).thenReturn(Stream.empty());
+        smallFilter.rebuild();
+
+        for (int i = 0; i < 5; i++) {
+            smallFilter.revoke(claims("logged-out-" + i));
+        }
+
+        // the revoking requests never scan the collection themselves, and only one rebuild is queued
+        verify(revokedTokenRepository, times(1)).streamByExpiresAtAfter(any());
+        assertThat(scheduled).hasSize(1);
+
+        scheduled.get(0).run();
+        verify(revokedTokenRepository, times(2)).streamByExpiresAtAfter(any());
+    }
+
+    @Test
+    void isRevoked_shouldAskDatabase_forEveryUnrevokedToken_whenRunningWithOtherInstances() {
+        TokenRevocationService shared = new TokenRevocationService(revokedTokenRepository, 1000, 0.001, 100, false,
+                Clock.systemUTC(), Runnable::run);
+        when(revokedTokenRepository.streamByExpiresAtAfter(any())).thenReturn(Stream.empty());
+        shared.rebuild();
+        JwtClaims token = claims("revoked-on-another-instance");
+        when(revokedTokenRepository.existsById(token.getTokenDigest())).thenReturn(false, true);
+
+        assertThat(shared.isRevoked(token)).isFalse();
+        assertThat(shared.isRevoked(token)).isTrue();
+        assertThat(shared.isRevoked(token)).isTrue();
+
+        verify(revokedTokenRepository, times(2)).existsById(token.getTokenDigest());
+    }
+
+    private JwtClaims claims(String token) {
+        Instant now = Instant.now();
+        return new JwtClaims("user", now, now.plusSeconds(3600), JwtUtil.digest(token), "user-id", Set.of(), 0L);
+    }
+}
@@ -0,0 +1,72 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class TokenVersionServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private TokenVersionService tokenVersionService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tokenVersionService = new TokenVersionService(userRepository, 30, 100);
+    }
+
+    @Test
+    void isCurrent_shouldLookUpVersionOnce_andServeLaterChecksFromCache() {
+        when(userRepository.findTokenVersionById("user-id")).thenReturn(Optional.of(userWithVersion(2)));
+
+        assertThat(tokenVersionService.isCurrent("user-id", 2)).isTrue();
+        assertThat(tokenVersionService.isCurrent("user-id", 2)).isTrue();
+        assertThat(tokenVersionService.isCurrent("user-id", 1)).isFalse();
+
+        verify(userRepository, times(1)).findTokenVersionById("user-id");
+    }
+
+    @Test
+    void isCurrent_shouldReturnFalse_whenUserNoLongerExists() {
+        when(userRepository.findTokenVersionById("deleted-id")).thenReturn(Optional.empty());
+
+        assertThat(tokenVersionService.isCurrent("deleted-id", 0)).isFalse();
+        assertThat(tokenVersionService.isCurrent("deleted-id", 0)).isFalse();
+
+        verify(userRepository, times(1)).findTokenVersionById("deleted-id");
+    }
+
+    @Test
+    void revokeAllTokens_shouldBumpVersion_andDropCachedVersion() {
+        when(userRepository.findTokenVersionById("user-id"))
+                .thenReturn(Optional.of(userWithVersion(0)))
+                .thenReturn(Optional.of(userWithVersion(1)));
+
+        assertThat(tokenVersionService.isCurrent("user-id", 0)).isTrue();
+
+        tokenVersionService.revokeAllTokens("user-id");
+
+        verify(userRepository).incrementTokenVersionById("user-id");
+        assertThat(tokenVersionService.isCurrent("user-id", 0)).isFalse();
+        assertThat(tokenVersionService.isCurrent("user-id", 1)).isTrue();
+    }
+
+    private User userWithVersion(long tokenVersion) {
+        User user = new User();
+        user.setId("user-id");
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+}
@@ -0,0 +1,200 @@
+package healthcareab.project.healthcare_booking_app.services;
+
+import healthcareab.project.healthcare_booking_app.dto.UserResponse;
+import healthcareab.project.healthcare_booking_app.exceptions.IllegalArgumentException;
+import healthcareab.project.healthcare_booking_app.exceptions.NotFoundException;
+import healthcareab.project.healthcare_booking_app.exceptions.UnauthorizedException;
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import healthcareab.project.healthcare_booking_app.repositories.UserAuthRepository;
+import healthcareab.project.healthcare_booking_app.repositories.UserRepository;
+import healthcareab.project.healthcare_booking_app.utils.CurrentUserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class UserServiceTest {
+
+    @Mock
+    private UserAuthRepository userAuthRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenVersionService tokenVersionService;
+
+    @Mock
+    private ProviderDirectoryService providerDirectoryService;
+
+    private UserService userService;
+
+    private User provider;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        userService = new UserService(userAuthRepository, new CurrentUserHolder(), userRepository,
+                tokenVersionService, providerDirectoryService);
+
+        provider = new User("provider", "pw", "provider@test.com", "John", "Doe", "Doctor");
+        provider.setId("provider-id");
+        provider.setRoles(Set.of(Role.PROVIDER));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getCurrentUser_shouldLoadUserOncePerRequest() {
+        when(userAuthRepository.authenticateAndExtractUser()).thenReturn(provider);
+
+        userService.assertCurrentUserAuthenticated();
+        User first = userService.getCurrentUser();
+        User second = userService.getCurrentUser();
+
+        assertThat(first).isSameAs(provider);
+        assertThat(second).isSameAs(provider);
+        verify(userAuthRepository, times(1)).authenticateAndExtractUser();
+    }
+
+    @Test
+    void getCurrentUser_shouldLoadAgain_inNewRequest() {
+        when(userAuthRepository.authenticateAndExtractUser()).thenReturn(provider);
+
+        userService.getCurrentUser();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        userService.getCurrentUser();
+
+        verify(userAuthRepository, times(2)).authenticateAndExtractUser();
+    }
+
+    @Test
+    void getCurrentUser_shouldReuseUserLoadedDuringAuthentication() {
+        AuthenticatedUser principal = new AuthenticatedUser(provider);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())
+        );
+
+        assertThat(userService.getCurrentUser()).isSameAs(provider);
+        verifyNoInteractions(userAuthRepository);
+    }
+
+    @Test
+    void assertCurrentUserAuthenticated_shouldThrow_whenUserIsNotProvider() {
+        User patient = new User("patient", "pw", "patient@test.com", "Jane", "Doe", null);
+        patient.setRoles(Set.of(Role.PATIENT));
+        when(userAuthRepository.authenticateAndExtractUser()).thenReturn(patient);
+
+        assertThatThrownBy(() -> userService.assertCurrentUserAuthenticated())
+                .isInstanceOf(UnauthorizedException.class)
+                .hasMessageContaining("not authenticated");
+    }
+
+    @Test
+    void getCurrentProviderId_shouldUseTokenClaims_withoutLoadingUser() {
+        AuthenticatedUser principal = new AuthenticatedUser("provider-id", "provider", Set.of(Role.PROVIDER), 0);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())
+        );
+
+        assertThat(userService.getCurrentProviderId()).isEqualTo("provider-id");
+        verifyNoInteractions(userAuthRepository, userRepository);
+    }
+
+    @Test
+    void getCurrentProviderId_shouldThrow_whenTokenIsNotForProvider() {
+        AuthenticatedUser principal = new AuthenticatedUser("patient-id", "patient", Set.of(Role.PATIENT), 0);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())
+        );
+
+        assertThatThrownBy(() -> userService.getCurrentProviderId())
+                .isInstanceOf(UnauthorizedException.class);
+        verifyNoInteractions(userAuthRepository);
+    }
+
+    @Test
+    void getUsersByIds_shouldLoadAllWithOneQuery_inRequestedOrder() {
+        User patient = new User("patient", null, null, "Jane", "Doe", null);
+        patient.setId("patient-id");
+        when(userRepository.findProfilesByIdIn(any())).thenReturn(List.of(provider, patient));
+
+        List<UserResponse> users = userService.getUsersByIds(List.of("patient-id", "provider-id", "patient-id", "missing-id"));
+
+        assertThat(users).extracting(UserResponse::getId).containsExactly("patient-id", "provider-id");
+        verify(userRepository, times(1)).findProfilesByIdIn(Set.of("patient-id", "provider-id", "missing-id"));
+    }
+
+    @Test
+    void getUsersByIds_shouldRejectTooManyIds() {
+        List<String> ids = IntStream.range(0, 201).mapToObj(i -> "user-" + i).toList();
+
+        assertThatThrownBy(() -> userService.getUsersByIds(ids))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void updateRoles_shouldRevokeTokens_andUpdateProviderDirectory() {
+        User admin = new User("admin", "pw", "admin@test.com", "Admin", "User", null);
+        admin.setRoles(Set.of(Role.ADMIN));
+        when(userAuthRepository.authenticateAndExtractUser()).thenReturn(admin);
+        provider.setRoles(Set.of(Role.PATIENT));
+        provider.setTokenVersion(1);
+        when(userRepository.updateRolesAndIncrementTokenVersion("provider-id", Set.of(Role.PATIENT)))
+                .thenReturn(Optional.of(provider));
+
+        User updated = userService.updateRoles("provider-id", Set.of(Role.PATIENT));
+
+        assertThat(updated).isSameAs(provider);
+        verify(userRepository, never()).findById(any());
+        verify(tokenVersionService).versionChanged("provider-id");
+        verify(providerDirectoryService).upsert(updated);
+    }
+
+    @Test
+    void updateRoles_shouldThrow_whenCurrentUserIsNotAdmin() {
+        when(userAuthRepository.authenticateAndExtractUser()).thenReturn(provider);
+
+        assertThatThrownBy(() -> userService.updateRoles("provider-id", Set.of(Role.ADMIN)))
+                .isInstanceOf(UnauthorizedException.class);
+        verifyNoInteractions(tokenVersionService);
+    }
+
+    @Test
+    void updateRoles_shouldThrow_whenUserDoesNotExist() {
+        User admin = new User("admin", "pw", "admin@test.com", "Admin", "User", null);
+        admin.setRoles(Set.of(Role.ADMIN));
+        when(userAuthRepository.authenticateAndExtractUser()).thenReturn(admin);
+
+        assertThatThrownBy(() -> userService.updateRoles("missing-id", Set.of(Role.PATIENT)))
+                .isInstanceOf(NotFoundException.class);
+        verifyNoInteractions(tokenVersionService);
+    }
+}
@@ -0,0 +1,39 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+class BloomFilterTest {
+
+    @Test
+    void mightContain_shouldAlwaysFindAddedKeys() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(JwtUtil.digest("token-" + i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain(JwtUtil.digest("token-" + i))).isTrue();
+        }
+    }
+
+    @Test
+    void mightContain_shouldStayNearConfiguredFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(JwtUtil.digest("revoked-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(JwtUtil.digest("valid-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(2000);
+    }
+}
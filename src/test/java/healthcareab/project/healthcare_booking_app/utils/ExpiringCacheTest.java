@@ -0,0 +1,110 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+class ExpiringCacheTest {
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-15T08:00:00Z"));
+    }
+
+    @Test
+    void get_shouldReturnValue_untilEntryExpires() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, clock);
+        cache.put("key", "value", clock.instant().plusSeconds(60));
+
+        assertThat(cache.get("key")).isEqualTo("value");
+
+        clock.advanceSeconds(60);
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void put_shouldIgnoreEntries_thatAreAlreadyExpired() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, clock);
+        cache.put("key", "value", clock.instant().minusSeconds(1));
+
+        assertThat(cache.get("key")).isNull();
+    }
+
+    @Test
+    void put_shouldStayWithinCapacity_andPreferEvictingExpiredEntries() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, clock);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, "short-" + i, clock.instant().plusSeconds(10));
+        }
+        for (int i = 5; i < 10; i++) {
+            cache.put(i, "long-" + i, clock.instant().plusSeconds(600));
+        }
+
+        clock.advanceSeconds(30);
+        cache.put(10, "new", clock.instant().plusSeconds(600));
+
+        assertThat(cache.size()).isEqualTo(6);
+        assertThat(cache.evictions()).isEqualTo(5);
+        assertThat(cache.get(10)).isEqualTo("new");
+        assertThat(cache.get(9)).isEqualTo("long-9");
+
+        for (int i = 11; i < 100; i++) {
+            cache.put(i, "value-" + i, clock.instant().plusSeconds(600));
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsed_andKeepAHotKey_whenNothingHasExpired() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, clock);
+        cache.put(0, "hot", clock.instant().plusSeconds(600));
+        for (int i = 1; i < 1000; i++) {
+            // the hot key is the oldest entry, but read between every insert
+            assertThat(cache.get(0)).isEqualTo("hot");
+            cache.put(i, "value-" + i, clock.instant().plusSeconds(600));
+        }
+
+        assertThat(cache.get(0)).isEqualTo("hot");
+        assertThat(cache.get(999)).isEqualTo("value-999");
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
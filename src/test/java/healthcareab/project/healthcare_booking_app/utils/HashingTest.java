@@ -0,0 +1,17 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+class HashingTest {
+
+    @Test
+    void sha256_shouldEncodeDigestAsUrlSafeBase64WithoutPadding() {
+        assertThat(Hashing.sha256("abc")).isEqualTo("ungWv48Bz-pBQUDeXa4iI7ADYaOWF3qctBD_YfIAFa0");
+        // token digests keep their format, revoked tokens stored before stay found
+        assertThat(JwtUtil.digest("abc")).isEqualTo(Hashing.sha256("abc"));
+    }
+}
@@ -0,0 +1,117 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import healthcareab.project.healthcare_booking_app.models.User;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.AuthenticatedUser;
+import healthcareab.project.healthcare_booking_app.models.supportClasses.Role;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.security.WeakKeyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ActiveProfiles("test")
+class JwtUtilTest {
+
+    private static final String SECRET = "test-secret-that-is-long-enough-for-hs256";
+
+    private JwtUtil jwtUtil;
+    private UserDetails userDetails;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 3600000, 100);
+
+        userDetails = org.springframework.security.core.userdetails.User.builder()
+                .username("TestUsername")
+                .password("encoded")
+                .authorities("ROLE_PATIENT")
+                .build();
+    }
+
+    @Test
+    void constructor_shouldFail_whenSecretIsTooShortForHs256() {
+        assertThatThrownBy(() -> new JwtUtil("too-short", 3600000, 100))
+                .isInstanceOf(WeakKeyException.class);
+    }
+
+    @Test
+    void verifyToken_shouldReturnClaims_whenTokenIsValid() {
+        String token = jwtUtil.generateToken(userDetails);
+
+        JwtClaims claims = jwtUtil.verifyToken(token);
+
+        assertThat(claims.getSubject()).isEqualTo("TestUsername");
+        assertThat(claims.getExpiration()).isAfter(claims.getIssuedAt());
+        assertThat(claims.getTokenDigest()).isEqualTo(JwtUtil.digest(token));
+    }
+
+    @Test
+    void verifyToken_shouldReuseVerifiedClaims_whenSameTokenIsVerifiedAgain() {
+        String token = jwtUtil.generateToken(userDetails);
+
+        JwtClaims first = jwtUtil.verifyToken(token);
+        JwtClaims second = jwtUtil.verifyToken(token);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void verifyToken_shouldThrow_whenSignatureIsTampered() {
+        String token = jwtUtil.generateToken(userDetails);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> jwtUtil.verifyToken(tampered))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void verifyToken_shouldThrow_whenTokenIsExpired() {
+        JwtUtil expiringJwtUtil = new JwtUtil(SECRET, -1000, 100);
+        String token = expiringJwtUtil.generateToken(userDetails);
+
+        assertThatThrownBy(() -> expiringJwtUtil.verifyToken(token))
+                .isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    void generateToken_shouldEmbedIdentityClaims_whenPrincipalIsAuthenticatedUser() {
+        User user = new User("TestUsername", "encoded", "test@example.com", "Jane", "Doe", null);
+        user.setId("user-id");
+        user.setRoles(Set.of(Role.PATIENT, Role.ADMIN));
+        user.setTokenVersion(3);
+
+        JwtClaims claims = jwtUtil.verifyToken(jwtUtil.generateToken(new AuthenticatedUser(user)));
+
+        assertThat(claims.hasIdentityClaims()).isTrue();
+        assertThat(claims.getUserId()).isEqualTo("user-id");
+        assertThat(claims.getRoles()).containsExactlyInAnyOrder(Role.PATIENT, Role.ADMIN);
+        assertThat(claims.getTokenVersion()).isEqualTo(3L);
+    }
+
+    @Test
+    void verifyToken_shouldReportMissingIdentityClaims_forPlainUserDetails() {
+        JwtClaims claims = jwtUtil.verifyToken(jwtUtil.generateToken(userDetails));
+
+        assertThat(claims.hasIdentityClaims()).isFalse();
+    }
+
+    @Test
+    void validateToken_shouldReturnFalse_whenUsernameDoesNotMatch() {
+        String token = jwtUtil.generateToken(userDetails);
+        UserDetails otherUser = org.springframework.security.core.userdetails.User.builder()
+                .username("OtherUsername")
+                .password("encoded")
+                .authorities("ROLE_PATIENT")
+                .build();
+
+        assertThat(jwtUtil.validateToken(token, userDetails)).isTrue();
+        assertThat(jwtUtil.validateToken(token, otherUser)).isFalse();
+    }
+}
@@ -0,0 +1,72 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+class RateLimiterTest {
+
+    private AtomicLong nanos;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    }
+
+    @Test
+    void tryAcquire_shouldAllowBurst_thenRejectUntilTokenRefills() {
+        RateLimiter limiter = new RateLimiter("test", 5, Duration.ofMinutes(1), 100, nanos::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("client")).isZero();
+        }
+        long waitNanos = limiter.tryAcquire("client");
+
+        assertThat(waitNanos).isEqualTo(TimeUnit.SECONDS.toNanos(12));
+        assertThat(limiter.tryAcquire("other")).isZero();
+
+        nanos.addAndGet(waitNanos);
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isPositive();
+        assertThat(limiter.getAllowed()).isEqualTo(7);
+        assertThat(limiter.getRejected()).isEqualTo(2);
+    }
+
+    @Test
+    void evictIdle_shouldOnlyDropBucketsThatHaveRefilled() {
+        RateLimiter limiter = new RateLimiter("test", 5, Duration.ofMinutes(1), 100, nanos::get);
+        limiter.tryAcquire("idle");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("busy");
+        }
+
+        assertThat(limiter.evictIdle()).isEqualTo(1);
+        assertThat(limiter.trackedKeys()).isEqualTo(1);
+        assertThat(limiter.tryAcquire("busy")).isPositive();
+    }
+
+    @Test
+    void tryAcquire_shouldStayWithinMaxKeys_andShareOverflowBucket() {
+        RateLimiter limiter = new RateLimiter("test", 2, Duration.ofMinutes(1), 3, nanos::get);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("client-" + i);
+        }
+
+        assertThat(limiter.tryAcquire("new-1")).isZero();
+        assertThat(limiter.tryAcquire("new-2")).isZero();
+        assertThat(limiter.tryAcquire("new-3")).isPositive();
+        assertThat(limiter.trackedKeys()).isEqualTo(3);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertThat(limiter.tryAcquire("new-3")).isZero();
+        assertThat(limiter.trackedKeys()).isEqualTo(1);
+    }
+}
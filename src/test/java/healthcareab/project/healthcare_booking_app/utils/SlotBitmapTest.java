@@ -0,0 +1,88 @@
+package healthcareab.project.healthcare_booking_app.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+class SlotBitmapTest {
+
+    @Test
+    void isFree_shouldRequireEverySlotOfTheRange() {
+        SlotBitmap bitmap = new SlotBitmap();
+        bitmap.markFree(minutes(9, 0), minutes(11, 0));
+
+        assertThat(bitmap.isFree(minutes(9, 0), minutes(11, 0))).isTrue();
+        assertThat(bitmap.isFree(minutes(9, 30), minutes(10, 30))).isTrue();
+        assertThat(bitmap.isFree(minutes(8, 55), minutes(9, 30))).isFalse();
+        assertThat(bitmap.isFree(minutes(10, 30), minutes(11, 5))).isFalse();
+        assertThat(bitmap.freeSlotCount()).isEqualTo(24);
+    }
+
+    @Test
+    void isFree_shouldRejectRangeSpanningAdjacentBlocks() {
+        SlotBitmap bitmap = new SlotBitmap();
+        bitmap.markFree(minutes(9, 0), minutes(10, 0));
+        bitmap.markFree(minutes(10, 0), minutes(11, 0));
+
+        assertThat(bitmap.isFree(minutes(9, 0), minutes(10, 0))).isTrue();
+        assertThat(bitmap.isFree(minutes(10, 0), minutes(11, 0))).isTrue();
+        assertThat(bitmap.isFree(minutes(9, 30), minutes(10, 30))).isFalse();
+        assertThat(bitmap.isFree(minutes(9, 0), minutes(11, 0))).isFalse();
+        assertThat(bitmap.freeRanges()).containsExactly(
+                minutes(9, 0), minutes(10, 0),
+                minutes(10, 0), minutes(11, 0)
+        );
+    }
+
+    @Test
+    void isFree_shouldWorkAcrossWordBoundary_andRejectRangesOutsideWorkingDay() {
+        SlotBitmap bitmap = new SlotBitmap();
+        bitmap.markFree(minutes(8, 0), minutes(17, 0));
+
+        // slot 64 starts at 13:20, where the first long ends
+        assertThat(bitmap.isFree(minutes(13, 0), minutes(13, 40))).isTrue();
+        assertThat(bitmap.isFree(minutes(8, 0), minutes(17, 0))).isTrue();
+        assertThat(bitmap.isFree(minutes(7, 55), minutes(9, 0))).isFalse();
+        assertThat(bitmap.isFree(minutes(16, 0), minutes(17, 5))).isFalse();
+        assertThat(bitmap.freeSlotCount()).isEqualTo(SlotBitmap.SLOT_COUNT);
+    }
+
+    @Test
+    void markFree_shouldOnlyMarkSlotsCompletelyInsideTheBlock() {
+        SlotBitmap bitmap = new SlotBitmap();
+        bitmap.markFree(minutes(9, 3), minutes(9, 58));
+
+        assertThat(bitmap.freeRanges()).containsExactly(minutes(9, 5), minutes(9, 55));
+        assertThat(bitmap.isFree(minutes(9, 0), minutes(9, 5))).isFalse();
+    }
+
+    @Test
+    void freeRanges_shouldReturnEveryContiguousRange() {
+        SlotBitmap bitmap = new SlotBitmap();
+        bitmap.markFree(minutes(8, 0), minutes(9, 0));
+        bitmap.markFree(minutes(13, 0), minutes(14, 0));
+        bitmap.markFree(minutes(16, 30), minutes(17, 0));
+
+        assertThat(bitmap.freeRanges()).containsExactly(
+                minutes(8, 0), minutes(9, 0),
+                minutes(13, 0), minutes(14, 0),
+                minutes(16, 30), minutes(17, 0)
+        );
+        assertThat(new SlotBitmap().freeRanges()).isEmpty();
+    }
+
+    @Test
+    void isAligned_shouldOnlyAcceptFiveMinuteBoundaries() {
+        assertThat(SlotBitmap.isAligned(LocalTime.of(9, 15))).isTrue();
+        assertThat(SlotBitmap.isAligned(LocalTime.of(9, 12))).isFalse();
+        assertThat(SlotBitmap.isAligned(LocalTime.of(9, 15, 30))).isFalse();
+    }
+
+    private static int minutes(int hour, int minute) {
+        return hour * 60 + minute;
+    }
+}